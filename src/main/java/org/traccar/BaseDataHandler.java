@@ -17,14 +17,25 @@ package org.traccar;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.database.StatisticsManager;
 import org.traccar.model.Position;
 
 public abstract class BaseDataHandler extends ChannelInboundHandlerAdapter {
 
+    private final StatisticsManager statisticsManager;
+    private final String handlerName;
+
+    public BaseDataHandler() {
+        statisticsManager = Main.getInjector() != null ? Main.getInjector().getInstance(StatisticsManager.class) : null;
+        handlerName = getClass().getSimpleName();
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof Position) {
+            long startTime = System.nanoTime();
             Position position = handlePosition((Position) msg);
+            registerHandlerTime(startTime);
             if (position != null) {
                 ctx.fireChannelRead(position);
             }
@@ -33,6 +44,15 @@ public abstract class BaseDataHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * Record handler time for positions that complete asynchronously.
+     */
+    protected void registerHandlerTime(long startTime) {
+        if (statisticsManager != null) {
+            statisticsManager.registerHandlerTime(handlerName, System.nanoTime() - startTime);
+        }
+    }
+
     protected abstract Position handlePosition(Position position);
 
 }
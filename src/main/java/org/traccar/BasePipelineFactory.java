@@ -22,6 +22,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Keys;
@@ -46,6 +47,7 @@ import org.traccar.handler.GeolocationHandler;
 import org.traccar.handler.HemisphereHandler;
 import org.traccar.handler.MotionHandler;
 import org.traccar.handler.NetworkMessageHandler;
+import org.traccar.handler.OrderedExecutionHandler;
 import org.traccar.handler.OpenChannelHandler;
 import org.traccar.handler.RemoteAddressHandler;
 import org.traccar.handler.StandardLoggingHandler;
@@ -75,9 +77,15 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
 
     @SafeVarargs
     private final void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelHandler>... handlerClasses) {
+        addHandlers(pipeline, null, handlerClasses);
+    }
+
+    @SafeVarargs
+    private final void addHandlers(
+            ChannelPipeline pipeline, EventExecutorGroup group, Class<? extends ChannelHandler>... handlerClasses) {
         for (Class<? extends ChannelHandler> handlerClass : handlerClasses) {
             if (handlerClass != null) {
-                pipeline.addLast(Main.getInjector().getInstance(handlerClass));
+                pipeline.addLast(group, null, Main.getInjector().getInstance(handlerClass));
             }
         }
     }
@@ -129,8 +137,15 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
 
         addDynamicHandlers(pipeline);
 
+        EventExecutorGroup handlerGroup = EventLoopGroupFactory.getHandlerGroup();
+        StripedExecutor deviceExecutor = EventLoopGroupFactory.getDeviceExecutor();
+        if (deviceExecutor != null) {
+            pipeline.addLast(new OrderedExecutionHandler(deviceExecutor));
+        }
+
         addHandlers(
                 pipeline,
+                handlerGroup,
                 FilterHandler.class,
                 GeocoderHandler.class,
                 MotionHandler.class,
@@ -143,6 +158,7 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
         if (eventsEnabled) {
             addHandlers(
                     pipeline,
+                    handlerGroup,
                     CommandResultEventHandler.class,
                     OverspeedEventHandler.class,
                     FuelDropEventHandler.class,
@@ -154,7 +170,7 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
                     DriverEventHandler.class);
         }
 
-        pipeline.addLast(new MainEventHandler());
+        pipeline.addLast(handlerGroup, null, new MainEventHandler());
     }
 
     private void addDynamicHandlers(ChannelPipeline pipeline) {
@@ -190,6 +190,17 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         }
     }
 
+    /**
+     * Returns session of already identified device without looking up or creating a new one.
+     */
+    public DeviceSession findDeviceSession(Channel channel, SocketAddress remoteAddress) {
+        if (channel instanceof DatagramChannel) {
+            return addressDeviceSessions.get(remoteAddress);
+        } else {
+            return channelDeviceSession;
+        }
+    }
+
     public void getLastLocation(Position position, Date deviceTime) {
         if (position.getDeviceId() != 0) {
             position.setOutdated(true);
@@ -218,9 +229,11 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
 
     @Override
     protected void onMessageEvent(
-            Channel channel, SocketAddress remoteAddress, Object originalMessage, Object decodedMessage) {
+            Channel channel, SocketAddress remoteAddress, Object originalMessage, Object decodedMessage,
+            long decodeTime) {
         if (statisticsManager != null) {
-            statisticsManager.registerMessageReceived();
+            statisticsManager.registerMessageReceived(getProtocolName());
+            statisticsManager.registerDecodeTime(getProtocolName(), decodeTime);
         }
         Position position = null;
         if (decodedMessage != null) {
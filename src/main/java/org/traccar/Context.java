@@ -373,7 +373,32 @@ public final class Context {
         velocityEngine.init(velocityProperties);
     }
 
+    /**
+     * Minimal context for tests. Managers created by a previous full initialization are removed.
+     */
     public static void init(IdentityManager testIdentityManager, MediaManager testMediaManager) {
+        dataManager = null;
+        ldapProvider = null;
+        mailManager = null;
+        usersManager = null;
+        groupsManager = null;
+        deviceManager = null;
+        connectionManager = null;
+        permissionsManager = null;
+        webServer = null;
+        serverManager = null;
+        geofenceManager = null;
+        calendarManager = null;
+        notificationManager = null;
+        notificatorManager = null;
+        velocityEngine = null;
+        eventForwarder = null;
+        attributesManager = null;
+        driversManager = null;
+        commandsManager = null;
+        maintenancesManager = null;
+        smsManager = null;
+        tripsConfig = null;
         config = new Config();
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JSR353Module());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,22 +16,171 @@
 package org.traccar;
 
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class EventLoopGroupFactory {
 
-    private static EventLoopGroup bossGroup = new NioEventLoopGroup();
-    private static EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopGroupFactory.class);
+
+    private static boolean initialized;
+    private static boolean epoll;
+    private static int listeners = 1;
+
+    private static EventLoopGroup bossGroup;
+    private static EventLoopGroup workerGroup;
+    private static EventExecutorGroup handlerGroup;
+    private static StripedExecutor deviceExecutor;
+
+    private static final Map<String, EventLoopGroup> PROTOCOL_GROUPS = new ConcurrentHashMap<>();
 
     private EventLoopGroupFactory() {
     }
 
+    private static synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+
+        Config config = Context.getConfig();
+        int bossThreads = 0;
+        int workerThreads = 0;
+        int handlerThreads = 0;
+        int deviceThreads = 0;
+        int deviceQueueSize = 0;
+        if (config != null) {
+            if (config.getBoolean(Keys.SERVER_EPOLL)) {
+                epoll = Epoll.isAvailable();
+                if (!epoll) {
+                    LOGGER.warn("Native epoll transport is not available", Epoll.unavailabilityCause());
+                }
+            }
+            bossThreads = config.getInteger(Keys.SERVER_BOSS_THREADS);
+            workerThreads = config.getInteger(Keys.SERVER_WORKER_THREADS);
+            handlerThreads = config.getInteger(Keys.SERVER_HANDLER_THREADS);
+            deviceThreads = config.getInteger(Keys.SERVER_DEVICE_THREADS);
+            deviceQueueSize = config.getInteger(Keys.SERVER_DEVICE_QUEUE_SIZE, 10000);
+            if (epoll) {
+                listeners = Math.max(config.getInteger(Keys.SERVER_LISTENERS, 1), 1);
+            }
+        }
+
+        bossGroup = createGroup(bossThreads, "boss");
+        workerGroup = createGroup(workerThreads, "worker");
+        if (deviceThreads > 0) {
+            deviceExecutor = new StripedExecutor("device", deviceThreads, deviceQueueSize);
+            handlerGroup = ImmediateEventExecutor.INSTANCE;
+        } else if (handlerThreads > 0) {
+            handlerGroup = new DefaultEventExecutorGroup(handlerThreads, new DefaultThreadFactory("handler"));
+        }
+    }
+
+    private static EventLoopGroup createGroup(int threads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name);
+        if (epoll) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        } else {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+    }
+
+    public static boolean isEpoll() {
+        initialize();
+        return epoll;
+    }
+
+    /**
+     * Number of sockets bound to each port. More than one requires native transport with SO_REUSEPORT.
+     */
+    public static int getListeners() {
+        initialize();
+        return listeners;
+    }
+
     public static EventLoopGroup getBossGroup() {
+        initialize();
         return bossGroup;
     }
 
     public static EventLoopGroup getWorkerGroup() {
+        initialize();
         return workerGroup;
     }
 
+    /**
+     * Worker group for the protocol. Protocols with configured worker threads get a dedicated group, others share the
+     * default one.
+     */
+    public static EventLoopGroup getWorkerGroup(String protocol) {
+        initialize();
+        Config config = Context.getConfig();
+        if (config != null) {
+            int threads = config.getInteger(Keys.PROTOCOL_WORKER_THREADS.withPrefix(protocol));
+            if (threads > 0) {
+                return PROTOCOL_GROUPS.computeIfAbsent(protocol, key -> createGroup(threads, protocol));
+            }
+        }
+        return workerGroup;
+    }
+
+    /**
+     * Executor for handlers following protocol decoding, striped by device, or null if it is not enabled. When it is
+     * enabled, the handler group runs handlers on the calling thread.
+     */
+    public static StripedExecutor getDeviceExecutor() {
+        initialize();
+        return deviceExecutor;
+    }
+
+    /**
+     * Executor group for blocking pipeline handlers, or null if they should run on the channel event loop.
+     */
+    public static EventExecutorGroup getHandlerGroup() {
+        initialize();
+        return handlerGroup;
+    }
+
+    public static Class<? extends ServerChannel> getServerChannelClass() {
+        return isEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return isEpoll() ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    public static synchronized void release() {
+        if (initialized) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+            for (EventLoopGroup group : PROTOCOL_GROUPS.values()) {
+                group.shutdownGracefully();
+            }
+            PROTOCOL_GROUPS.clear();
+            if (deviceExecutor != null) {
+                deviceExecutor.stop();
+            } else if (handlerGroup != null) {
+                handlerGroup.shutdownGracefully();
+            }
+        }
+    }
+
 }
@@ -48,8 +48,11 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
         NetworkMessage networkMessage = (NetworkMessage) msg;
         Object originalMessage = networkMessage.getMessage();
         try {
+            long startTime = System.nanoTime();
             Object decodedMessage = decode(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
-            onMessageEvent(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage, decodedMessage);
+            onMessageEvent(
+                    ctx.channel(), networkMessage.getRemoteAddress(), originalMessage, decodedMessage,
+                    System.nanoTime() - startTime);
             if (decodedMessage == null) {
                 decodedMessage = handleEmptyMessage(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
             }
@@ -70,7 +73,8 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
     }
 
     protected void onMessageEvent(
-            Channel channel, SocketAddress remoteAddress, Object originalMessage, Object decodedMessage) {
+            Channel channel, SocketAddress remoteAddress, Object originalMessage, Object decodedMessage,
+            long decodeTime) {
     }
 
     protected Object handleEmptyMessage(Channel channel, SocketAddress remoteAddress, Object msg) {
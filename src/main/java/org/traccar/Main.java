@@ -19,6 +19,12 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.database.DailySummaryManager;
+import org.traccar.database.PositionBatchWriter;
+import org.traccar.database.PositionJournal;
+import org.traccar.geocoder.GeocoderCache;
+import org.traccar.helper.FrameLogger;
+import org.traccar.reports.TripsAndStopsRecorder;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
@@ -145,6 +151,48 @@ public final class Main {
                         Context.getWebServer().stop();
                     }
                     Context.getServerManager().stop();
+
+                    if (Context.getNotificationManager() != null) {
+                        Context.getNotificationManager().stop();
+                    }
+
+                    PositionBatchWriter positionBatchWriter = injector.getInstance(PositionBatchWriter.class);
+                    if (positionBatchWriter != null) {
+                        positionBatchWriter.stop();
+                    }
+
+                    EventLoopGroupFactory.release();
+
+                    WebDataQueue webDataQueue = injector.getInstance(WebDataQueue.class);
+                    if (webDataQueue != null) {
+                        webDataQueue.stop();
+                    }
+
+                    PositionJournal positionJournal = injector.getInstance(PositionJournal.class);
+                    if (positionJournal != null) {
+                        positionJournal.stop();
+                    }
+
+                    DailySummaryManager dailySummaryManager = injector.getInstance(DailySummaryManager.class);
+                    if (dailySummaryManager != null) {
+                        dailySummaryManager.stop();
+                    }
+
+                    injector.getInstance(FrameLogger.class).stop();
+
+                    GeocoderCache geocoderCache = injector.getInstance(GeocoderCache.class);
+                    if (geocoderCache != null) {
+                        geocoderCache.close();
+                    }
+
+                    TripsAndStopsRecorder tripsAndStopsRecorder = injector.getInstance(TripsAndStopsRecorder.class);
+                    if (tripsAndStopsRecorder != null) {
+                        tripsAndStopsRecorder.stop();
+                    }
+
+                    if (Context.getDeviceManager() != null) {
+                        Context.getDeviceManager().stop();
+                    }
                 }
             });
         } catch (Exception e) {
@@ -23,9 +23,12 @@ import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.database.DailySummaryManager;
 import org.traccar.database.StatisticsManager;
+import org.traccar.handler.OrderedExecutionHandler;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Position;
+import org.traccar.reports.TripsAndStopsRecorder;
 
 import java.sql.SQLException;
 import java.util.Arrays;
@@ -41,6 +44,8 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
 
     private final Set<String> connectionlessProtocols = new HashSet<>();
     private final Set<String> logAttributes = new LinkedHashSet<>();
+    private final DailySummaryManager dailySummaryManager;
+    private final TripsAndStopsRecorder tripsAndStopsRecorder;
 
     public MainEventHandler() {
         String connectionlessProtocolList = Context.getConfig().getString("status.ignoreOffline");
@@ -49,6 +54,10 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
         }
         logAttributes.addAll(Arrays.asList(
                 Context.getConfig().getString("logger.attributes", DEFAULT_LOGGER_ATTRIBUTES).split("[, ]")));
+        dailySummaryManager = Main.getInjector() != null
+                ? Main.getInjector().getInstance(DailySummaryManager.class) : null;
+        tripsAndStopsRecorder = Main.getInjector() != null
+                ? Main.getInjector().getInstance(TripsAndStopsRecorder.class) : null;
     }
 
     @Override
@@ -62,6 +71,14 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
                 LOGGER.warn("Failed to update device", error);
             }
 
+            if (dailySummaryManager != null) {
+                dailySummaryManager.update(position);
+            }
+
+            if (tripsAndStopsRecorder != null) {
+                tripsAndStopsRecorder.update(position);
+            }
+
             String uniqueId = Context.getIdentityManager().getById(position.getDeviceId()).getUniqueId();
 
             StringBuilder builder = new StringBuilder();
@@ -131,7 +148,9 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
 
         if (BasePipelineFactory.getHandler(ctx.pipeline(), HttpRequestDecoder.class) == null
                 && !connectionlessProtocols.contains(ctx.pipeline().get(BaseProtocolDecoder.class).getProtocolName())) {
-            Context.getConnectionManager().removeActiveDevice(ctx.channel());
+            Channel channel = ctx.channel();
+            OrderedExecutionHandler.execute(
+                    ctx, null, () -> Context.getConnectionManager().removeActiveDevice(channel));
         }
     }
 
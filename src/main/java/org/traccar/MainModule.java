@@ -23,11 +23,14 @@ import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.database.AttributesManager;
 import org.traccar.database.CalendarManager;
+import org.traccar.database.DailySummaryManager;
 import org.traccar.database.DataManager;
 import org.traccar.database.DeviceManager;
 import org.traccar.database.GeofenceManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.database.MaintenancesManager;
+import org.traccar.database.PositionBatchWriter;
+import org.traccar.database.PositionJournal;
 import org.traccar.database.StatisticsManager;
 import org.traccar.geocoder.AddressFormat;
 import org.traccar.geocoder.BanGeocoder;
@@ -36,9 +39,12 @@ import org.traccar.geocoder.FactualGeocoder;
 import org.traccar.geocoder.GeocodeFarmGeocoder;
 import org.traccar.geocoder.GeocodeXyzGeocoder;
 import org.traccar.geocoder.Geocoder;
+import org.traccar.geocoder.GeocoderCache;
+import org.traccar.geocoder.GeocoderRateLimiter;
 import org.traccar.geocoder.GisgraphyGeocoder;
 import org.traccar.geocoder.GoogleGeocoder;
 import org.traccar.geocoder.HereGeocoder;
+import org.traccar.geocoder.JsonGeocoder;
 import org.traccar.geocoder.MapQuestGeocoder;
 import org.traccar.geocoder.MapmyIndiaGeocoder;
 import org.traccar.geocoder.NominatimGeocoder;
@@ -69,10 +75,13 @@ import org.traccar.handler.events.IgnitionEventHandler;
 import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
+import org.traccar.helper.FrameLogger;
+import org.traccar.reports.TripsAndStopsRecorder;
 import org.traccar.reports.model.TripsConfig;
 
 import javax.annotation.Nullable;
 import javax.ws.rs.client.Client;
+import java.io.IOException;
 
 public class MainModule extends AbstractModule {
 
@@ -139,7 +148,19 @@ public class MainModule extends AbstractModule {
 
     @Singleton
     @Provides
-    public static Geocoder provideGeocoder(Config config) {
+    public static GeocoderCache provideGeocoderCache(Config config, StatisticsManager statisticsManager) {
+        int cacheSize = config.getInteger(Keys.GEOCODER_CACHE_SIZE);
+        if (config.getBoolean(Keys.GEOCODER_ENABLE) && cacheSize > 0) {
+            return new GeocoderCache(
+                    cacheSize, config.getInteger(Keys.GEOCODER_CACHE_PRECISION, GeocoderCache.DEFAULT_PRECISION),
+                    config.getString(Keys.GEOCODER_CACHE_FILE), statisticsManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static Geocoder provideGeocoder(Config config, @Nullable GeocoderCache geocoderCache) {
         if (config.getBoolean(Keys.GEOCODER_ENABLE)) {
             String type = config.getString(Keys.GEOCODER_TYPE, "google");
             String url = config.getString(Keys.GEOCODER_URL);
@@ -149,33 +170,52 @@ public class MainModule extends AbstractModule {
             String formatString = config.getString(Keys.GEOCODER_FORMAT);
             AddressFormat addressFormat = formatString != null ? new AddressFormat(formatString) : new AddressFormat();
 
-            int cacheSize = config.getInteger(Keys.GEOCODER_CACHE_SIZE);
+            JsonGeocoder geocoder;
             switch (type) {
                 case "nominatim":
-                    return new NominatimGeocoder(url, key, language, cacheSize, addressFormat);
+                    geocoder = new NominatimGeocoder(url, key, language, addressFormat);
+                    break;
                 case "gisgraphy":
-                    return new GisgraphyGeocoder(url, cacheSize, addressFormat);
+                    geocoder = new GisgraphyGeocoder(url, addressFormat);
+                    break;
                 case "mapquest":
-                    return new MapQuestGeocoder(url, key, cacheSize, addressFormat);
+                    geocoder = new MapQuestGeocoder(url, key, addressFormat);
+                    break;
                 case "opencage":
-                    return new OpenCageGeocoder(url, key, cacheSize, addressFormat);
+                    geocoder = new OpenCageGeocoder(url, key, addressFormat);
+                    break;
                 case "bingmaps":
-                    return new BingMapsGeocoder(url, key, cacheSize, addressFormat);
+                    geocoder = new BingMapsGeocoder(url, key, addressFormat);
+                    break;
                 case "factual":
-                    return new FactualGeocoder(url, key, cacheSize, addressFormat);
+                    geocoder = new FactualGeocoder(url, key, addressFormat);
+                    break;
                 case "geocodefarm":
-                    return new GeocodeFarmGeocoder(key, language, cacheSize, addressFormat);
+                    geocoder = new GeocodeFarmGeocoder(key, language, addressFormat);
+                    break;
                 case "geocodexyz":
-                    return new GeocodeXyzGeocoder(key, cacheSize, addressFormat);
+                    geocoder = new GeocodeXyzGeocoder(key, addressFormat);
+                    break;
                 case "ban":
-                    return new BanGeocoder(cacheSize, addressFormat);
+                    geocoder = new BanGeocoder(addressFormat);
+                    break;
                 case "here":
-                    return new HereGeocoder(id, key, language, cacheSize, addressFormat);
+                    geocoder = new HereGeocoder(id, key, language, addressFormat);
+                    break;
                 case "mapmyindia":
-                    return new MapmyIndiaGeocoder(url, key, cacheSize, addressFormat);
+                    geocoder = new MapmyIndiaGeocoder(url, key, addressFormat);
+                    break;
                 default:
-                    return new GoogleGeocoder(key, language, cacheSize, addressFormat);
+                    geocoder = new GoogleGeocoder(key, language, addressFormat);
+                    break;
             }
+            geocoder.setCache(geocoderCache);
+            double rateLimit = config.getDouble(Keys.GEOCODER_RATE_LIMIT, 0);
+            if (rateLimit > 0) {
+                geocoder.setRateLimiter(new GeocoderRateLimiter(
+                        rateLimit, config.getInteger(Keys.GEOCODER_RATE_LIMIT_QUEUE, 1000)));
+            }
+            return geocoder;
         }
         return null;
     }
@@ -234,12 +274,23 @@ public class MainModule extends AbstractModule {
         return null;
     }
 
+    @Singleton
+    @Provides
+    public static WebDataQueue provideWebDataQueue(
+            Config config, ObjectMapper objectMapper, Client client, StatisticsManager statisticsManager) {
+        if (config.getBoolean(Keys.FORWARD_ENABLE) && config.getBoolean(Keys.FORWARD_QUEUE_ENABLE)) {
+            return new WebDataQueue(config, client, objectMapper, statisticsManager);
+        }
+        return null;
+    }
+
     @Singleton
     @Provides
     public static WebDataHandler provideWebDataHandler(
-            Config config, IdentityManager identityManager, ObjectMapper objectMapper, Client client) {
+            Config config, IdentityManager identityManager, ObjectMapper objectMapper, Client client,
+            @Nullable WebDataQueue webDataQueue) {
         if (config.getBoolean(Keys.FORWARD_ENABLE)) {
-            return new WebDataHandler(config, identityManager, objectMapper, client);
+            return new WebDataHandler(config, identityManager, objectMapper, client, webDataQueue);
         }
         return null;
     }
@@ -310,9 +361,62 @@ public class MainModule extends AbstractModule {
 
     @Singleton
     @Provides
-    public static DefaultDataHandler provideDefaultDataHandler(@Nullable DataManager dataManager) {
+    public static PositionBatchWriter providePositionBatchWriter(
+            Config config, @Nullable DataManager dataManager, StatisticsManager statisticsManager) {
+        if (dataManager != null && config.getBoolean(Keys.DATABASE_BATCH_ENABLE)) {
+            return new PositionBatchWriter(config, dataManager, statisticsManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static DailySummaryManager provideDailySummaryManager(Config config, @Nullable DataManager dataManager) {
+        if (dataManager != null && config.getBoolean(Keys.DATABASE_DAILY_SUMMARY)) {
+            return new DailySummaryManager(config, dataManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static FrameLogger provideFrameLogger(Config config, IdentityManager identityManager) {
+        return new FrameLogger(config, identityManager);
+    }
+
+    @Singleton
+    @Provides
+    public static TripsAndStopsRecorder provideTripsAndStopsRecorder(
+            Config config, @Nullable DataManager dataManager, IdentityManager identityManager,
+            DeviceManager deviceManager, TripsConfig tripsConfig) {
+        if (dataManager != null && config.getBoolean(Keys.DATABASE_TRIPS_AND_STOPS)) {
+            return new TripsAndStopsRecorder(config, dataManager, identityManager, deviceManager, tripsConfig);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static PositionJournal providePositionJournal(
+            Config config, @Nullable DataManager dataManager, ObjectMapper objectMapper,
+            @Nullable DailySummaryManager dailySummaryManager) {
+        if (dataManager != null && config.hasKey(Keys.DATABASE_JOURNAL_DIRECTORY)) {
+            try {
+                return new PositionJournal(config, dataManager, objectMapper, dailySummaryManager);
+            } catch (IOException error) {
+                throw new RuntimeException(error);
+            }
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static DefaultDataHandler provideDefaultDataHandler(
+            @Nullable DataManager dataManager, @Nullable PositionBatchWriter positionBatchWriter,
+            @Nullable PositionJournal positionJournal) {
         if (dataManager != null) {
-            return new DefaultDataHandler(dataManager);
+            return new DefaultDataHandler(dataManager, positionBatchWriter, positionJournal);
         }
         return null;
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes tasks on a fixed set of threads, selected by key. Tasks with the same key run sequentially in submission
+ * order, while tasks with different keys can run in parallel.
+ */
+public class StripedExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedExecutor.class);
+
+    private static final long POLL_TIMEOUT = 100;
+    private static final long STOP_TIMEOUT = 10000;
+
+    private static final class Stripe {
+
+        private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        private final Semaphore capacity;
+
+        private Stripe(int capacity) {
+            this.capacity = new Semaphore(capacity);
+        }
+
+    }
+
+    private final List<Stripe> stripes = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    public StripedExecutor(String name, int threadCount, int queueSize) {
+        for (int i = 0; i < threadCount; i++) {
+            final Stripe stripe = new Stripe(Math.max(queueSize / threadCount, 1));
+            stripes.add(stripe);
+            Thread thread = new Thread(() -> process(stripe.queue), name + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    private Stripe selectStripe(long key) {
+        return stripes.get((int) Math.abs(key % stripes.size()));
+    }
+
+    /**
+     * Queue task for execution. If the queue is full, the calling thread waits, which slows down reading from the
+     * network. After the executor is stopped, tasks are executed by the calling thread.
+     */
+    public void execute(long key, Runnable task) {
+        if (running) {
+            final Stripe stripe = selectStripe(key);
+            try {
+                stripe.capacity.acquire();
+                stripe.queue.add(() -> {
+                    stripe.capacity.release();
+                    task.run();
+                });
+                return;
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        run(task);
+    }
+
+    /**
+     * Queue continuation of a task that is already in progress, like a callback of an asynchronous request. It never
+     * waits for queue space, so that threads completing requests can't be blocked by the tasks waiting for them.
+     */
+    public void resume(long key, Runnable task) {
+        if (running) {
+            selectStripe(key).queue.add(task);
+        } else {
+            run(task);
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception error) {
+            LOGGER.warn("Task execution error", error);
+        }
+    }
+
+    private void process(BlockingQueue<Runnable> queue) {
+        while (running || !queue.isEmpty()) {
+            try {
+                Runnable task = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    run(task);
+                }
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
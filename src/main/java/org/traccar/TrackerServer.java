@@ -21,8 +21,7 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.util.concurrent.GlobalEventExecutor;
 
 import java.net.InetSocketAddress;
@@ -52,18 +51,22 @@ public abstract class TrackerServer {
         if (datagram) {
 
             this.bootstrap = new Bootstrap()
-                    .group(EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioDatagramChannel.class)
+                    .group(EventLoopGroupFactory.getWorkerGroup(protocol))
+                    .channel(EventLoopGroupFactory.getDatagramChannelClass())
                     .handler(pipelineFactory);
 
         } else {
 
             this.bootstrap = new ServerBootstrap()
-                    .group(EventLoopGroupFactory.getBossGroup(), EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioServerSocketChannel.class)
+                    .group(EventLoopGroupFactory.getBossGroup(), EventLoopGroupFactory.getWorkerGroup(protocol))
+                    .channel(EventLoopGroupFactory.getServerChannelClass())
                     .childHandler(pipelineFactory);
 
         }
+
+        if (EventLoopGroupFactory.getListeners() > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
     }
 
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
@@ -102,9 +105,11 @@ public abstract class TrackerServer {
             endpoint = new InetSocketAddress(address, port);
         }
 
-        Channel channel = bootstrap.bind(endpoint).sync().channel();
-        if (channel != null) {
-            getChannelGroup().add(channel);
+        for (int i = 0; i < EventLoopGroupFactory.getListeners(); i++) {
+            Channel channel = bootstrap.bind(endpoint).sync().channel();
+            if (channel != null) {
+                getChannelGroup().add(channel);
+            }
         }
     }
 
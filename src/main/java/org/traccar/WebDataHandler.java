@@ -30,7 +30,9 @@ import javax.inject.Inject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -49,18 +51,28 @@ public class WebDataHandler extends BaseDataHandler {
     private final IdentityManager identityManager;
     private final ObjectMapper objectMapper;
     private final Client client;
+    private final WebDataQueue queue;
 
     private final String url;
+    private final List<String> template;
     private final String header;
     private final boolean json;
 
-    @Inject
     public WebDataHandler(
             Config config, IdentityManager identityManager, ObjectMapper objectMapper, Client client) {
+        this(config, identityManager, objectMapper, client, null);
+    }
+
+    @Inject
+    public WebDataHandler(
+            Config config, IdentityManager identityManager, ObjectMapper objectMapper, Client client,
+            WebDataQueue queue) {
         this.identityManager = identityManager;
         this.objectMapper = objectMapper;
         this.client = client;
+        this.queue = queue;
         this.url = config.getString(Keys.FORWARD_URL);
+        this.template = compileTemplate(url);
         this.header = config.getString(Keys.FORWARD_HEADER);
         this.json = config.getBoolean(Keys.FORWARD_JSON);
     }
@@ -101,55 +113,114 @@ public class WebDataHandler extends BaseDataHandler {
         }
     }
 
-    public String formatRequest(Position position) throws UnsupportedEncodingException, JsonProcessingException {
+    private static List<String> compileTemplate(String url) {
+        List<String> segments = new ArrayList<>();
+        if (url == null) {
+            return segments;
+        }
+        int literalStart = 0;
+        int index = 0;
+        while (index < url.length()) {
+            int open = url.indexOf('{', index);
+            if (open < 0) {
+                break;
+            }
+            int close = url.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            if (url.lastIndexOf('{', close) == open) {
+                if (open > literalStart) {
+                    segments.add(url.substring(literalStart, open));
+                }
+                segments.add(url.substring(open, close + 1));
+                literalStart = close + 1;
+                index = close + 1;
+            } else {
+                index = url.lastIndexOf('{', close);
+            }
+        }
+        if (literalStart < url.length()) {
+            segments.add(url.substring(literalStart));
+        }
+        return segments;
+    }
 
-        Device device = identityManager.getById(position.getDeviceId());
+    private static boolean isPlaceholder(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
 
-        String request = url
-                .replace("{name}", URLEncoder.encode(device.getName(), StandardCharsets.UTF_8.name()))
-                .replace("{uniqueId}", device.getUniqueId())
-                .replace("{status}", device.getStatus())
-                .replace("{deviceId}", String.valueOf(position.getDeviceId()))
-                .replace("{protocol}", String.valueOf(position.getProtocol()))
-                .replace("{deviceTime}", String.valueOf(position.getDeviceTime().getTime()))
-                .replace("{fixTime}", String.valueOf(position.getFixTime().getTime()))
-                .replace("{valid}", String.valueOf(position.getValid()))
-                .replace("{latitude}", String.valueOf(position.getLatitude()))
-                .replace("{longitude}", String.valueOf(position.getLongitude()))
-                .replace("{altitude}", String.valueOf(position.getAltitude()))
-                .replace("{speed}", String.valueOf(position.getSpeed()))
-                .replace("{course}", String.valueOf(position.getCourse()))
-                .replace("{accuracy}", String.valueOf(position.getAccuracy()))
-                .replace("{statusCode}", calculateStatus(position));
-
-        if (position.getAddress() != null) {
-            request = request.replace(
-                    "{address}", URLEncoder.encode(position.getAddress(), StandardCharsets.UTF_8.name()));
+    private String formatPlaceholder(String name, Device device, Position position)
+            throws UnsupportedEncodingException, JsonProcessingException {
+        switch (name) {
+            case "name":
+                return URLEncoder.encode(device.getName(), StandardCharsets.UTF_8.name());
+            case "uniqueId":
+                return device.getUniqueId();
+            case "status":
+                return device.getStatus();
+            case "deviceId":
+                return String.valueOf(position.getDeviceId());
+            case "protocol":
+                return String.valueOf(position.getProtocol());
+            case "deviceTime":
+                return String.valueOf(position.getDeviceTime().getTime());
+            case "fixTime":
+                return String.valueOf(position.getFixTime().getTime());
+            case "valid":
+                return String.valueOf(position.getValid());
+            case "latitude":
+                return String.valueOf(position.getLatitude());
+            case "longitude":
+                return String.valueOf(position.getLongitude());
+            case "altitude":
+                return String.valueOf(position.getAltitude());
+            case "speed":
+                return String.valueOf(position.getSpeed());
+            case "course":
+                return String.valueOf(position.getCourse());
+            case "accuracy":
+                return String.valueOf(position.getAccuracy());
+            case "statusCode":
+                return calculateStatus(position);
+            case "address":
+                if (position.getAddress() != null) {
+                    return URLEncoder.encode(position.getAddress(), StandardCharsets.UTF_8.name());
+                }
+                return null;
+            case "attributes":
+                String attributes = objectMapper.writeValueAsString(position.getAttributes());
+                return URLEncoder.encode(attributes, StandardCharsets.UTF_8.name());
+            case "gprmc":
+                return formatSentence(position);
+            case "group":
+                String deviceGroupName = "";
+                if (device.getGroupId() != 0) {
+                    Group group = Context.getGroupsManager().getById(device.getGroupId());
+                    if (group != null) {
+                        deviceGroupName = group.getName();
+                    }
+                }
+                return URLEncoder.encode(deviceGroupName, StandardCharsets.UTF_8.name());
+            default:
+                return null;
         }
+    }
 
-        if (request.contains("{attributes}")) {
-            String attributes = objectMapper.writeValueAsString(position.getAttributes());
-            request = request.replace(
-                    "{attributes}", URLEncoder.encode(attributes, StandardCharsets.UTF_8.name()));
-        }
+    public String formatRequest(Position position) throws UnsupportedEncodingException, JsonProcessingException {
 
-        if (request.contains("{gprmc}")) {
-            request = request.replace("{gprmc}", formatSentence(position));
-        }
+        Device device = identityManager.getById(position.getDeviceId());
 
-        if (request.contains("{group}")) {
-            String deviceGroupName = "";
-            if (device.getGroupId() != 0) {
-                Group group = Context.getGroupsManager().getById(device.getGroupId());
-                if (group != null) {
-                    deviceGroupName = group.getName();
-                }
+        StringBuilder request = new StringBuilder(url.length() + 64);
+        for (String segment : template) {
+            String value = null;
+            if (isPlaceholder(segment)) {
+                value = formatPlaceholder(segment.substring(1, segment.length() - 1), device, position);
             }
-
-            request = request.replace("{group}", URLEncoder.encode(deviceGroupName, StandardCharsets.UTF_8.name()));
+            request.append(value != null ? value : segment);
         }
 
-        return request;
+        return request.toString();
     }
 
     @Override
@@ -166,6 +237,19 @@ public class WebDataHandler extends BaseDataHandler {
             }
         }
 
+        if (queue != null) {
+            String body = null;
+            if (json) {
+                try {
+                    body = objectMapper.writeValueAsString(prepareJsonPayload(position));
+                } catch (JsonProcessingException e) {
+                    throw new RuntimeException("Forwarding formatting error", e);
+                }
+            }
+            queue.add(url, body);
+            return position;
+        }
+
         Invocation.Builder requestBuilder = client.target(url).request();
 
         if (header != null && !header.isEmpty()) {
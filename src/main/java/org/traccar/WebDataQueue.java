@@ -0,0 +1,305 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+
+import javax.ws.rs.client.AsyncInvoker;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.Response;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends forwarding requests with limited concurrency. Requests that fail because of network or server errors are
+ * retried after a delay. Unsent requests can be kept in a file between restarts.
+ */
+public class WebDataQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebDataQueue.class);
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_BODY = "body";
+
+    private static final class Request {
+
+        private final String url;
+        private final String body;
+        private final boolean batch;
+
+        private Request(String url, String body, boolean batch) {
+            this.url = url;
+            this.body = body;
+            this.batch = batch;
+        }
+
+    }
+
+    private final Client client;
+    private final ObjectMapper objectMapper;
+    private final StatisticsManager statisticsManager;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+
+    private final int maxSize;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final long retryDelay;
+    private final String file;
+
+    private final Deque<Request> queue = new ArrayDeque<>();
+    private final Deque<Request> retryQueue = new ArrayDeque<>();
+    private final Set<Request> inFlightRequests = new HashSet<>();
+    private int inFlight;
+    private Timeout retryTimeout;
+    private boolean stopped;
+
+    public WebDataQueue(
+            Config config, Client client, ObjectMapper objectMapper, StatisticsManager statisticsManager) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.statisticsManager = statisticsManager;
+        maxSize = Math.max(config.getInteger(Keys.FORWARD_QUEUE_SIZE, 10000), 1);
+        maxInFlight = Math.max(config.getInteger(Keys.FORWARD_QUEUE_MAX_IN_FLIGHT, 32), 1);
+        batchSize = Math.max(config.getInteger(Keys.FORWARD_QUEUE_BATCH_SIZE, 1), 1);
+        retryDelay = config.getLong(Keys.FORWARD_QUEUE_RETRY_DELAY, 10000);
+        file = config.getString(Keys.FORWARD_QUEUE_FILE);
+
+        String header = config.getString(Keys.FORWARD_HEADER);
+        if (header != null && !header.isEmpty()) {
+            for (String line: header.split("\\r?\\n")) {
+                String[] values = line.split(":", 2);
+                headers.put(values[0].trim(), values[1].trim());
+            }
+        }
+
+        if (file != null) {
+            load();
+            dispatch();
+        }
+    }
+
+    /**
+     * Queue request for sending. Body is a JSON object for POST requests or null for GET requests.
+     */
+    public void add(String url, String body) {
+        synchronized (this) {
+            offer(queue, new Request(url, body, false));
+        }
+        dispatch();
+    }
+
+    private void offer(Deque<Request> target, Request request) {
+        if (queue.size() + retryQueue.size() >= maxSize) {
+            if (!retryQueue.isEmpty()) {
+                retryQueue.poll();
+            } else {
+                queue.poll();
+            }
+            if (statisticsManager != null) {
+                statisticsManager.registerForwardDrop();
+            }
+        }
+        target.add(request);
+    }
+
+    private Request nextRequest() {
+        Request first = queue.poll();
+        if (batchSize == 1 || first.body == null || first.batch) {
+            return first;
+        }
+        StringBuilder body = new StringBuilder("[").append(first.body);
+        int count = 1;
+        while (count < batchSize && !queue.isEmpty()) {
+            Request next = queue.peek();
+            if (next.body == null || next.batch || !next.url.equals(first.url)) {
+                break;
+            }
+            body.append(',').append(queue.poll().body);
+            count += 1;
+        }
+        return new Request(first.url, body.append(']').toString(), true);
+    }
+
+    private void dispatch() {
+        List<Request> requests = new ArrayList<>();
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            while (inFlight < maxInFlight && !queue.isEmpty()) {
+                Request request = nextRequest();
+                requests.add(request);
+                inFlightRequests.add(request);
+                inFlight += 1;
+            }
+            if (statisticsManager != null) {
+                statisticsManager.registerForwardInFlight(inFlight);
+            }
+        }
+        for (Request request : requests) {
+            send(request);
+        }
+    }
+
+    private void send(final Request request) {
+        InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                int status = response.getStatus();
+                response.close();
+                if (status >= 500) {
+                    retry(request);
+                } else if (status >= 400) {
+                    LOGGER.warn("Forwarding request rejected with status {}", status);
+                    if (statisticsManager != null) {
+                        statisticsManager.registerForwardDrop();
+                    }
+                }
+                complete(request);
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                retry(request);
+                complete(request);
+            }
+        };
+
+        try {
+            Invocation.Builder requestBuilder = client.target(request.url).request();
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                requestBuilder.header(header.getKey(), header.getValue());
+            }
+            AsyncInvoker invoker = requestBuilder.async();
+            if (request.body != null) {
+                invoker.post(Entity.json(request.body), callback);
+            } else {
+                invoker.get(callback);
+            }
+        } catch (RuntimeException error) {
+            LOGGER.warn("Forwarding request error", error);
+            if (statisticsManager != null) {
+                statisticsManager.registerForwardDrop();
+            }
+            complete(request);
+        }
+    }
+
+    private void complete(Request request) {
+        synchronized (this) {
+            inFlightRequests.remove(request);
+            inFlight -= 1;
+        }
+        dispatch();
+    }
+
+    private synchronized void retry(Request request) {
+        if (stopped) {
+            return;
+        }
+        if (statisticsManager != null) {
+            statisticsManager.registerForwardRetry();
+        }
+        offer(retryQueue, request);
+        if (retryTimeout == null) {
+            retryTimeout = GlobalTimer.getTimer().newTimeout(timeout -> {
+                synchronized (WebDataQueue.this) {
+                    retryTimeout = null;
+                    if (stopped) {
+                        return;
+                    }
+                    while (!retryQueue.isEmpty()) {
+                        queue.addFirst(retryQueue.pollLast());
+                    }
+                }
+                dispatch();
+            }, retryDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void load() {
+        File source = new File(file);
+        if (!source.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<?, ?> values = objectMapper.readValue(line, Map.class);
+                String body = (String) values.get(KEY_BODY);
+                offer(queue, new Request(
+                        (String) values.get(KEY_URL), body, body != null && body.startsWith("[")));
+            }
+        } catch (IOException | RuntimeException error) {
+            LOGGER.warn("Forwarding queue loading error", error);
+        }
+        if (!source.delete()) {
+            LOGGER.warn("Failed to delete forwarding queue file");
+        }
+    }
+
+    /**
+     * Stop sending and retrying and save unsent requests if queue file is configured. Requests that are still in
+     * flight are saved as well, so they can be sent again after restart.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (retryTimeout != null) {
+            retryTimeout.cancel();
+            retryTimeout = null;
+        }
+        if (file != null && (!queue.isEmpty() || !retryQueue.isEmpty() || !inFlightRequests.isEmpty())) {
+            List<Request> requests = new ArrayList<>(inFlightRequests);
+            requests.addAll(retryQueue);
+            requests.addAll(queue);
+            try (BufferedWriter writer = Files.newBufferedWriter(new File(file).toPath(), StandardCharsets.UTF_8)) {
+                for (Request request : requests) {
+                    Map<String, String> values = new HashMap<>();
+                    values.put(KEY_URL, request.url);
+                    values.put(KEY_BODY, request.body);
+                    writer.write(objectMapper.writeValueAsString(values));
+                    writer.newLine();
+                }
+            } catch (IOException error) {
+                LOGGER.warn("Forwarding queue saving error", error);
+            }
+        }
+    }
+
+}
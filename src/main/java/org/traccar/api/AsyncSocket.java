@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.traccar.api;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
@@ -26,9 +27,12 @@ import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.UpdateListener {
@@ -39,10 +43,19 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
     private static final String KEY_POSITIONS = "positions";
     private static final String KEY_EVENTS = "events";
 
-    private long userId;
+    private static final int MAX_PENDING_EVENTS = 1000;
 
-    public AsyncSocket(long userId) {
+    private final long userId;
+    private final AsyncSocketDispatcher dispatcher;
+
+    private final Map<Long, Device> pendingDevices = new LinkedHashMap<>();
+    private final Map<Long, Position> pendingPositions = new LinkedHashMap<>();
+    private final Deque<Event> pendingEvents = new ArrayDeque<>();
+    private boolean sending;
+
+    public AsyncSocket(long userId, AsyncSocketDispatcher dispatcher) {
         this.userId = userId;
+        this.dispatcher = dispatcher;
     }
 
     @Override
@@ -65,23 +78,105 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
 
     @Override
     public void onUpdateDevice(Device device) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_DEVICES, Collections.singletonList(device));
-        sendData(data);
+        synchronized (this) {
+            pendingDevices.put(device.getId(), device);
+        }
+        dispatcher.schedule(this);
     }
 
     @Override
     public void onUpdatePosition(Position position) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_POSITIONS, Collections.singletonList(position));
-        sendData(data);
+        synchronized (this) {
+            pendingPositions.put(position.getDeviceId(), position);
+        }
+        dispatcher.schedule(this);
     }
 
     @Override
     public void onUpdateEvent(Event event) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_EVENTS, Collections.singletonList(event));
-        sendData(data);
+        synchronized (this) {
+            if (pendingEvents.size() >= MAX_PENDING_EVENTS) {
+                pendingEvents.poll();
+            }
+            pendingEvents.add(event);
+        }
+        dispatcher.schedule(this);
+    }
+
+    private boolean hasPendingData() {
+        return !pendingDevices.isEmpty() || !pendingPositions.isEmpty() || !pendingEvents.isEmpty();
+    }
+
+    private static void appendArray(
+            StringBuilder frame, String key, Collection<?> items, AsyncSocketDispatcher.Serializer serializer) {
+        if (!items.isEmpty()) {
+            frame.append(frame.length() > 1 ? "," : "").append('"').append(key).append("\":[");
+            boolean first = true;
+            for (Object item : items) {
+                String json = serializer.serialize(item);
+                if (json != null) {
+                    frame.append(first ? "" : ",").append(json);
+                    first = false;
+                }
+            }
+            frame.append(']');
+        }
+    }
+
+    /**
+     * Send all updates collected since the previous call. If the previous frame is still being written, updates stay
+     * pending and positions keep getting replaced with newer ones, so slow clients receive fewer frames.
+     */
+    void flush(AsyncSocketDispatcher.Serializer serializer) {
+        if (!isConnected()) {
+            return;
+        }
+
+        Collection<Device> devices;
+        Collection<Position> positions;
+        Collection<Event> events;
+        synchronized (this) {
+            if (sending || !hasPendingData()) {
+                return;
+            }
+            devices = new ArrayList<>(pendingDevices.values());
+            positions = new ArrayList<>(pendingPositions.values());
+            events = new ArrayList<>(pendingEvents);
+            pendingDevices.clear();
+            pendingPositions.clear();
+            pendingEvents.clear();
+            sending = true;
+        }
+
+        StringBuilder frame = new StringBuilder("{");
+        appendArray(frame, KEY_DEVICES, devices, serializer);
+        appendArray(frame, KEY_POSITIONS, positions, serializer);
+        appendArray(frame, KEY_EVENTS, events, serializer);
+        frame.append('}');
+
+        getRemote().sendString(frame.toString(), new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable error) {
+                LOGGER.debug("Socket write error", error);
+                completeSending();
+            }
+
+            @Override
+            public void writeSuccess() {
+                completeSending();
+            }
+        });
+    }
+
+    private void completeSending() {
+        boolean pending;
+        synchronized (this) {
+            sending = false;
+            pending = hasPendingData();
+        }
+        if (pending) {
+            dispatcher.schedule(this);
+        }
     }
 
     private void sendData(Map<String, Collection<?>> data) {
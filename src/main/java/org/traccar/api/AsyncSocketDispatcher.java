@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends collected updates to web sockets periodically from a separate thread. Objects are serialized once per cycle
+ * and the resulting JSON is shared by all sockets receiving the same update.
+ */
+public class AsyncSocketDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSocketDispatcher.class);
+
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService executor;
+    private final Set<AsyncSocket> pendingSockets = ConcurrentHashMap.newKeySet();
+
+    public AsyncSocketDispatcher(ObjectMapper objectMapper, long period) {
+        this.objectMapper = objectMapper;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socket-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::dispatch, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void schedule(AsyncSocket socket) {
+        pendingSockets.add(socket);
+    }
+
+    public final class Serializer {
+
+        private final Map<Object, String> cache = new IdentityHashMap<>();
+
+        /**
+         * Returns JSON for the object or null if it can't be serialized.
+         */
+        public String serialize(Object object) {
+            String json = cache.get(object);
+            if (json == null) {
+                try {
+                    json = objectMapper.writeValueAsString(object);
+                    cache.put(object, json);
+                } catch (JsonProcessingException e) {
+                    LOGGER.warn("Socket JSON formatting error", e);
+                }
+            }
+            return json;
+        }
+
+    }
+
+    private void dispatch() {
+        Serializer serializer = new Serializer();
+        Iterator<AsyncSocket> iterator = pendingSockets.iterator();
+        while (iterator.hasNext()) {
+            AsyncSocket socket = iterator.next();
+            iterator.remove();
+            try {
+                socket.flush(serializer);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Socket dispatch error", e);
+            }
+        }
+    }
+
+    public void stop() {
+        executor.shutdown();
+    }
+
+}
@@ -22,20 +22,25 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.traccar.Context;
 import org.traccar.api.resource.SessionResource;
+import org.traccar.config.Keys;
 
 public class AsyncSocketServlet extends WebSocketServlet {
 
     private static final long ASYNC_TIMEOUT = 10 * 60 * 1000;
 
+    private AsyncSocketDispatcher dispatcher;
+
     @Override
     public void configure(WebSocketServletFactory factory) {
+        dispatcher = new AsyncSocketDispatcher(
+                Context.getObjectMapper(), Context.getConfig().getLong(Keys.WEB_SOCKET_PERIOD, 200));
         factory.getPolicy().setIdleTimeout(Context.getConfig().getLong("web.timeout", ASYNC_TIMEOUT));
         factory.setCreator(new WebSocketCreator() {
             @Override
             public Object createWebSocket(ServletUpgradeRequest req, ServletUpgradeResponse resp) {
                 if (req.getSession() != null) {
                     long userId = (Long) req.getSession().getAttribute(SessionResource.USER_ID_KEY);
-                    return new AsyncSocket(userId);
+                    return new AsyncSocket(userId, dispatcher);
                 } else {
                     return null;
                 }
@@ -43,4 +48,12 @@ public class AsyncSocketServlet extends WebSocketServlet {
         });
     }
 
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
 }
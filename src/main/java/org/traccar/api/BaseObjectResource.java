@@ -30,6 +30,7 @@ import org.traccar.Context;
 import org.traccar.database.BaseObjectManager;
 import org.traccar.database.ExtendedObjectManager;
 import org.traccar.database.ManagableObjects;
+import org.traccar.database.NotificationManager;
 import org.traccar.database.SimpleObjectManager;
 import org.traccar.helper.LogAction;
 import org.traccar.model.BaseModel;
@@ -97,6 +98,9 @@ public abstract class BaseObjectResource<T extends BaseModel> extends BaseResour
 
         if (manager instanceof SimpleObjectManager) {
             ((SimpleObjectManager<T>) manager).refreshUserItems();
+            if (manager instanceof NotificationManager) {
+                ((NotificationManager) manager).invalidateUserRoutes(getUserId());
+            }
         } else if (baseClass.equals(Group.class) || baseClass.equals(Device.class)) {
             Context.getPermissionsManager().refreshDeviceAndGroupPermissions();
             Context.getPermissionsManager().refreshAllExtendedPermissions();
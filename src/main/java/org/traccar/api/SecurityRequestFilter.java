@@ -20,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import org.traccar.Context;
 import org.traccar.Main;
 import org.traccar.api.resource.SessionResource;
+import org.traccar.database.LoginCache;
 import org.traccar.database.StatisticsManager;
 import org.traccar.helper.DataConverter;
 import org.traccar.model.User;
@@ -43,6 +44,7 @@ public class SecurityRequestFilter implements ContainerRequestFilter {
     public static final String AUTHORIZATION_HEADER = "Authorization";
     public static final String WWW_AUTHENTICATE = "WWW-Authenticate";
     public static final String BASIC_REALM = "Basic realm=\"api\"";
+    public static final String BEARER_PREFIX = "Bearer ";
     public static final String X_REQUESTED_WITH = "X-Requested-With";
     public static final String XML_HTTP_REQUEST = "XMLHttpRequest";
 
@@ -55,6 +57,32 @@ public class SecurityRequestFilter implements ContainerRequestFilter {
         return null;
     }
 
+    private static User login(String email, String password) throws SQLException {
+        LoginCache loginCache = Context.getUsersManager().getLoginCache();
+        if (!loginCache.isEnabled()) {
+            return Context.getPermissionsManager().login(email, password);
+        }
+        Long userId = loginCache.get(email, password);
+        if (userId != null) {
+            Context.getPermissionsManager().checkUserEnabled(userId);
+            return Context.getPermissionsManager().getUser(userId);
+        }
+        long version = loginCache.getVersion();
+        User user = Context.getPermissionsManager().login(email, password);
+        if (user != null) {
+            loginCache.put(email, password, user.getId(), version);
+        }
+        return user;
+    }
+
+    private static User loginToken(String token) {
+        User user = Context.getUsersManager().getUserByToken(token);
+        if (user != null) {
+            Context.getPermissionsManager().checkUserEnabled(user.getId());
+        }
+        return user;
+    }
+
     @javax.ws.rs.core.Context
     private HttpServletRequest request;
 
@@ -76,8 +104,13 @@ public class SecurityRequestFilter implements ContainerRequestFilter {
             if (authHeader != null) {
 
                 try {
-                    String[] auth = decodeBasicAuth(authHeader);
-                    User user = Context.getPermissionsManager().login(auth[0], auth[1]);
+                    User user;
+                    if (authHeader.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+                        user = loginToken(authHeader.substring(BEARER_PREFIX.length()).trim());
+                    } else {
+                        String[] auth = decodeBasicAuth(authHeader);
+                        user = login(auth[0], auth[1]);
+                    }
                     if (user != null) {
                         Main.getInjector().getInstance(StatisticsManager.class).registerRequest(user.getId());
                         securityContext = new UserSecurityContext(new UserPrincipal(user.getId()));
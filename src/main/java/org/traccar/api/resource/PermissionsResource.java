@@ -64,7 +64,7 @@ public class PermissionsResource  extends BaseResource {
                 permission.getPropertyClass(), permission.getPropertyId(), true);
         LogAction.link(getUserId(), permission.getOwnerClass(), permission.getOwnerId(),
                 permission.getPropertyClass(), permission.getPropertyId());
-        Context.getPermissionsManager().refreshPermissions(permission);
+        Context.getPermissionsManager().refreshPermissions(permission, true);
         return Response.noContent().build();
     }
 
@@ -77,7 +77,7 @@ public class PermissionsResource  extends BaseResource {
                 permission.getPropertyClass(), permission.getPropertyId(), false);
         LogAction.unlink(getUserId(), permission.getOwnerClass(), permission.getOwnerId(),
                 permission.getPropertyClass(), permission.getPropertyId());
-        Context.getPermissionsManager().refreshPermissions(permission);
+        Context.getPermissionsManager().refreshPermissions(permission, false);
         return Response.noContent().build();
     }
 
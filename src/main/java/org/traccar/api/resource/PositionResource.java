@@ -27,14 +27,24 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Path("positions")
 @Produces(MediaType.APPLICATION_JSON)
@@ -68,6 +78,32 @@ public class PositionResource extends BaseResource {
         }
     }
 
+    private interface PositionWriter {
+        void write(Position position, Writer writer) throws IOException;
+    }
+
+    private static StreamingOutput streamPositions(
+            long deviceId, Date from, Date to, PositionWriter positionWriter, Supplier<String> footer) {
+        return stream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            try {
+                Context.getDataManager().getPositions(deviceId, from, to, position -> {
+                    try {
+                        positionWriter.write(position, writer);
+                    } catch (IOException error) {
+                        throw new UncheckedIOException(error);
+                    }
+                });
+            } catch (UncheckedIOException error) {
+                throw error.getCause();
+            } catch (SQLException error) {
+                throw new WebApplicationException(error);
+            }
+            writer.write(footer.get());
+            writer.flush();
+        };
+    }
+
     @GET
     @Produces(TEXT_CSV)
     public Response getCsv(
@@ -76,9 +112,12 @@ public class PositionResource extends BaseResource {
         Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
         CsvBuilder csv = new CsvBuilder();
         csv.addHeaderLine(new Position());
-        csv.addArray(Context.getDataManager().getPositions(
-                deviceId, DateUtil.parseDate(from), DateUtil.parseDate(to)));
-        return Response.ok(csv.build()).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_CSV).build();
+        StreamingOutput output = streamPositions(deviceId, DateUtil.parseDate(from), DateUtil.parseDate(to),
+                (position, writer) -> {
+                    csv.addLine(position);
+                    csv.writeTo(writer);
+                }, csv::build);
+        return Response.ok(output).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_CSV).build();
     }
 
     @GET
@@ -88,9 +127,12 @@ public class PositionResource extends BaseResource {
             throws SQLException {
         Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
         GpxBuilder gpx = new GpxBuilder(Context.getIdentityManager().getById(deviceId).getName());
-        gpx.addPositions(Context.getDataManager().getPositions(
-                deviceId, DateUtil.parseDate(from), DateUtil.parseDate(to)));
-        return Response.ok(gpx.build()).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_GPX).build();
+        StreamingOutput output = streamPositions(deviceId, DateUtil.parseDate(from), DateUtil.parseDate(to),
+                (position, writer) -> {
+                    gpx.addPosition(position);
+                    gpx.writeTo(writer);
+                }, gpx::build);
+        return Response.ok(output).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_GPX).build();
     }
 
 }
@@ -18,8 +18,10 @@ package org.traccar.api.resource;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import javax.activation.DataHandler;
@@ -31,9 +33,15 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +49,6 @@ import org.traccar.Context;
 import org.traccar.api.BaseResource;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Event;
-import org.traccar.model.Position;
 import org.traccar.reports.Events;
 import org.traccar.reports.Summary;
 import org.traccar.reports.Trips;
@@ -95,11 +102,33 @@ public class ReportResource extends BaseResource {
 
     @Path("route")
     @GET
-    public Collection<Position> getRoute(
+    public StreamingOutput getRoute(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
-            @QueryParam("from") String from, @QueryParam("to") String to) throws SQLException {
-        return Route.getObjects(getUserId(), deviceIds, groupIds,
-                DateUtil.parseDate(from), DateUtil.parseDate(to));
+            @QueryParam("from") String from, @QueryParam("to") String to) {
+        Date fromDate = DateUtil.parseDate(from);
+        Date toDate = DateUtil.parseDate(to);
+        Collection<Long> devices = Route.getDevices(getUserId(), deviceIds, groupIds, fromDate, toDate);
+        return stream -> {
+            ObjectWriter writer = Context.getObjectMapper().writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            JsonGenerator generator = Context.getObjectMapper().getFactory().createGenerator(stream);
+            generator.writeStartArray();
+            try {
+                Route.getObjects(devices, fromDate, toDate, position -> {
+                    try {
+                        writer.writeValue(generator, position);
+                    } catch (IOException error) {
+                        throw new UncheckedIOException(error);
+                    }
+                });
+            } catch (UncheckedIOException error) {
+                throw error.getCause();
+            } catch (SQLException error) {
+                throw new WebApplicationException(error);
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
     }
 
     @Path("route")
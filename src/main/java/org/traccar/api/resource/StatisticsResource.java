@@ -16,7 +16,9 @@
 package org.traccar.api.resource;
 
 import org.traccar.Context;
+import org.traccar.Main;
 import org.traccar.api.BaseResource;
+import org.traccar.database.StatisticsManager;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Statistics;
 
@@ -41,4 +43,11 @@ public class StatisticsResource extends BaseResource {
         return Context.getDataManager().getStatistics(DateUtil.parseDate(from), DateUtil.parseDate(to));
     }
 
+    @Path("live")
+    @GET
+    public Statistics getLive() {
+        Context.getPermissionsManager().checkAdmin(getUserId());
+        return Main.getInjector().getInstance(StatisticsManager.class).getLiveStatistics();
+    }
+
 }
@@ -26,6 +26,13 @@ public final class Keys {
     public static final ConfigSuffix PROTOCOL_TIMEOUT = new ConfigSuffix(
             ".timeout", Integer.class);
 
+    /**
+     * Number of event loop threads dedicated to the protocol. By default all protocols share the server worker
+     * group. A dedicated group prevents a busy protocol from delaying others.
+     */
+    public static final ConfigSuffix PROTOCOL_WORKER_THREADS = new ConfigSuffix(
+            ".workerThreads", Integer.class);
+
     /**
      * Server wide connection timeout value in seconds. See protocol timeout for more information.
      */
@@ -39,6 +46,55 @@ public final class Keys {
     public static final ConfigKey SERVER_STATISTICS = new ConfigKey(
             "server.statistics", Boolean.class);
 
+    /**
+     * Use native epoll transport on Linux if it is available. Falls back to standard Java NIO transport otherwise.
+     */
+    public static final ConfigKey SERVER_EPOLL = new ConfigKey(
+            "server.epoll", Boolean.class);
+
+    /**
+     * Number of sockets bound to each protocol port using SO_REUSEPORT, so that connections and datagrams are
+     * accepted by several threads in parallel. Requires native epoll transport. Default value is 1.
+     */
+    public static final ConfigKey SERVER_LISTENERS = new ConfigKey(
+            "server.listeners", Integer.class);
+
+    /**
+     * Number of threads accepting incoming connections. By default Netty uses twice the number of processors.
+     */
+    public static final ConfigKey SERVER_BOSS_THREADS = new ConfigKey(
+            "server.bossThreads", Integer.class);
+
+    /**
+     * Number of threads handling network input and output for all protocols. By default Netty uses twice the number
+     * of processors.
+     */
+    public static final ConfigKey SERVER_WORKER_THREADS = new ConfigKey(
+            "server.workerThreads", Integer.class);
+
+    /**
+     * Number of threads for pipeline handlers that follow protocol decoding. They can block on database or network
+     * requests, so running them separately keeps network threads responsive. By default the handlers run on network
+     * threads.
+     */
+    public static final ConfigKey SERVER_HANDLER_THREADS = new ConfigKey(
+            "server.handlerThreads", Integer.class);
+
+    /**
+     * Number of threads for pipeline handlers following protocol decoding, with positions distributed between
+     * threads by device. Unlike handler threads, a single channel can use all of them, which matters for UDP ports
+     * carrying many devices, while positions of each device stay in order. Takes precedence over handler threads.
+     */
+    public static final ConfigKey SERVER_DEVICE_THREADS = new ConfigKey(
+            "server.deviceThreads", Integer.class);
+
+    /**
+     * Maximum number of messages waiting for device threads. When the queue is full, network threads wait. Default
+     * value is 10000.
+     */
+    public static final ConfigKey SERVER_DEVICE_QUEUE_SIZE = new ConfigKey(
+            "server.deviceQueueSize", Integer.class);
+
     /**
      * Enable events subsystem. Flag to enable all events handlers.
      */
@@ -69,6 +125,175 @@ public final class Keys {
     public static final ConfigKey EVENT_IGNORE_DUPLICATE_ALERTS = new ConfigKey(
             "event.ignoreDuplicateAlerts", Boolean.class);
 
+    /**
+     * Store events and dispatch notifications from dedicated worker threads instead of network threads. Events are
+     * stored in batches and geocoding for notifications does not block processing. Default value is false.
+     */
+    public static final ConfigKey EVENT_ASYNC_ENABLE = new ConfigKey(
+            "event.async.enable", Boolean.class);
+
+    /**
+     * Maximum number of events waiting to be processed. When the queue is full, threads adding events wait for space.
+     * Default value is 10000.
+     */
+    public static final ConfigKey EVENT_ASYNC_QUEUE_SIZE = new ConfigKey(
+            "event.async.queueSize", Integer.class);
+
+    /**
+     * Number of event processing threads. Events are distributed between workers by device, so the order of events
+     * for each device is preserved. Default value is 2.
+     */
+    public static final ConfigKey EVENT_ASYNC_WORKERS = new ConfigKey(
+            "event.async.workers", Integer.class);
+
+    /**
+     * Maximum number of events in a single insert batch. Default value is 100.
+     */
+    public static final ConfigKey EVENT_ASYNC_BATCH_SIZE = new ConfigKey(
+            "event.async.batchSize", Integer.class);
+
+    /**
+     * Period in milliseconds for collecting live updates before sending them to web socket clients. Only the latest
+     * position and device state within the period is sent. Default value is 200.
+     */
+    public static final ConfigKey WEB_SOCKET_PERIOD = new ConfigKey(
+            "web.socketPeriod", Long.class);
+
+    /**
+     * Time in milliseconds for which successful logins with the same credentials are accepted without a database
+     * query and password verification. Applies to API requests with basic authentication. Entries of a user are
+     * removed when the user is updated. Default value is 60000, zero disables the cache.
+     */
+    public static final ConfigKey WEB_LOGIN_CACHE_TIMEOUT = new ConfigKey(
+            "web.loginCacheTimeout", Long.class);
+
+    /**
+     * Number of rows fetched from the database at once when reading positions for reports and exports. Large reports
+     * are processed in a single pass, so memory use depends on this value rather than on the report period. Default
+     * value is 1000. MySQL requires 'useCursorFetch=true' in the connection URL for this to take effect.
+     */
+    public static final ConfigKey DATABASE_FETCH_SIZE = new ConfigKey(
+            "database.fetchSize", Integer.class);
+
+    /**
+     * Enable asynchronous batched storage of positions. Positions are grouped into JDBC batches on dedicated writer
+     * threads instead of being inserted one by one on the network threads.
+     */
+    public static final ConfigKey DATABASE_BATCH_ENABLE = new ConfigKey(
+            "database.batch.enable", Boolean.class);
+
+    /**
+     * Maximum number of positions in a single insert batch. Default value is 100.
+     */
+    public static final ConfigKey DATABASE_BATCH_SIZE = new ConfigKey(
+            "database.batch.size", Integer.class);
+
+    /**
+     * Maximum time in milliseconds a position can wait in the queue before the batch is flushed. Default value is 100.
+     */
+    public static final ConfigKey DATABASE_BATCH_PERIOD = new ConfigKey(
+            "database.batch.period", Long.class);
+
+    /**
+     * Maximum number of positions waiting to be stored. When the queue is full, network threads wait for the writers
+     * to catch up. Default value is 10000.
+     */
+    public static final ConfigKey DATABASE_BATCH_QUEUE_SIZE = new ConfigKey(
+            "database.batch.queueSize", Integer.class);
+
+    /**
+     * Number of batch writer threads. Positions are distributed between writers by device, so the order of positions
+     * for each device is preserved. Default value is 2.
+     */
+    public static final ConfigKey DATABASE_BATCH_WRITERS = new ConfigKey(
+            "database.batch.writers", Integer.class);
+
+    /**
+     * Store position attributes in compact binary form instead of JSON. Common attribute keys are stored as dictionary
+     * indexes and values keep their types. Other tables always use JSON. API still uses JSON.
+     *
+     * <p>No migration is provided. Positions stored before the option was enabled are never converted and stay in
+     * JSON. Both forms are read, so the option can be enabled or disabled at any time.
+     *
+     * <p>The binary form is stored as Base64 text in the existing attributes column, which is a third larger than the
+     * raw binary form, so part of the size saving is lost.
+     */
+    public static final ConfigKey DATABASE_BINARY_ATTRIBUTES = new ConfigKey(
+            "database.binaryAttributes", Boolean.class);
+
+    /**
+     * Period in milliseconds for collecting latest position updates of devices before storing them in a single
+     * batch. Latest positions in memory are always up to date. If the server is not stopped cleanly, latest positions
+     * are recovered from stored positions on the next start. By default each update is stored immediately.
+     */
+    public static final ConfigKey DATABASE_LATEST_POSITION_PERIOD = new ConfigKey(
+            "database.latestPositionPeriod", Long.class);
+
+    /**
+     * Marker file created when latest positions are stored on a clean shutdown. If the file exists on start, it is
+     * removed and latest position recovery is skipped. Without the marker, recovery runs on every start.
+     */
+    public static final ConfigKey DATABASE_LATEST_POSITION_MARKER = new ConfigKey(
+            "database.latestPositionMarker", String.class);
+
+    /**
+     * Maintain daily summaries of positions for each device. Summary reports use them for whole days instead of
+     * reading all positions. Only days that started while the server was running are used, so summaries become
+     * effective from the day after the option is enabled.
+     */
+    public static final ConfigKey DATABASE_DAILY_SUMMARY = new ConfigKey(
+            "database.dailySummary", Boolean.class);
+
+    /**
+     * Period in milliseconds for writing daily summaries to the database. Default value is 60000.
+     */
+    public static final ConfigKey DATABASE_DAILY_SUMMARY_PERIOD = new ConfigKey(
+            "database.dailySummaryPeriod", Long.class);
+
+    /**
+     * Marker file created when all daily summaries are written on a clean shutdown. If the file exists on start, it is
+     * removed and summaries are used as they are. Otherwise summaries of the last days are marked as not complete,
+     * because positions aggregated in memory could be lost.
+     */
+    public static final ConfigKey DATABASE_DAILY_SUMMARY_MARKER = new ConfigKey(
+            "database.dailySummaryMarker", String.class);
+
+    /**
+     * Detect trips and stops when positions are received and store closed segments, so that trips and stops reports
+     * read stored rows instead of processing all positions. Open segments are kept in memory. Parts of the report
+     * period that are not covered by stored rows are still calculated from positions.
+     */
+    public static final ConfigKey DATABASE_TRIPS_AND_STOPS = new ConfigKey(
+            "database.tripsAndStops", Boolean.class);
+
+    /**
+     * Number of days of history to process on startup to store trips and stops received before the option was
+     * enabled. Backfill runs in background and only fills the time before the first stored segment of each device. A
+     * device is always backfilled before its live positions are recorded.
+     */
+    public static final ConfigKey DATABASE_TRIPS_AND_STOPS_BACKFILL_DAYS = new ConfigKey(
+            "database.tripsAndStopsBackfillDays", Integer.class);
+
+    /**
+     * Directory for the position journal. If set, positions are written to the journal before storage and positions
+     * that fail to store are retried from the journal, so that database outages don't lose data.
+     */
+    public static final ConfigKey DATABASE_JOURNAL_DIRECTORY = new ConfigKey(
+            "database.journal.directory", String.class);
+
+    /**
+     * Size of journal segment files in bytes. Default value is 16 MB.
+     */
+    public static final ConfigKey DATABASE_JOURNAL_SEGMENT_SIZE = new ConfigKey(
+            "database.journal.segmentSize", Integer.class);
+
+    /**
+     * Period in milliseconds for syncing the journal to disk, removing stored segments and retrying failed positions.
+     * Default value is 1000.
+     */
+    public static final ConfigKey DATABASE_JOURNAL_PERIOD = new ConfigKey(
+            "database.journal.period", Long.class);
+
     /**
      * List of external handler classes to use in Netty pipeline.
      */
@@ -100,6 +325,47 @@ public final class Keys {
     public static final ConfigKey FORWARD_JSON = new ConfigKey(
             "forward.json", Boolean.class);
 
+    /**
+     * Send forwarding requests through a bounded queue with a limited number of concurrent requests. Failed requests
+     * are retried later instead of being lost.
+     */
+    public static final ConfigKey FORWARD_QUEUE_ENABLE = new ConfigKey(
+            "forward.queue.enable", Boolean.class);
+
+    /**
+     * Maximum number of forwarding requests waiting to be sent, including requests waiting for retry. When the queue
+     * is full, the oldest requests are dropped. Default value is 10000.
+     */
+    public static final ConfigKey FORWARD_QUEUE_SIZE = new ConfigKey(
+            "forward.queue.size", Integer.class);
+
+    /**
+     * Maximum number of concurrent forwarding requests. Default value is 32.
+     */
+    public static final ConfigKey FORWARD_QUEUE_MAX_IN_FLIGHT = new ConfigKey(
+            "forward.queue.maxInFlight", Integer.class);
+
+    /**
+     * Maximum number of positions sent as a JSON array in a single request. Only used with JSON forwarding. Default
+     * value is 1, which sends each position as a separate object.
+     */
+    public static final ConfigKey FORWARD_QUEUE_BATCH_SIZE = new ConfigKey(
+            "forward.queue.batchSize", Integer.class);
+
+    /**
+     * Delay in milliseconds before failed forwarding requests are retried. Default value is 10000.
+     */
+    public static final ConfigKey FORWARD_QUEUE_RETRY_DELAY = new ConfigKey(
+            "forward.queue.retryDelay", Long.class);
+
+    /**
+     * Optional file for keeping unsent forwarding requests between restarts. The file is only written on a clean
+     * shutdown, so requests waiting in the queue are lost if the server crashes. Requests in flight during shutdown
+     * are saved too and can be delivered twice.
+     */
+    public static final ConfigKey FORWARD_QUEUE_FILE = new ConfigKey(
+            "forward.queue.file", String.class);
+
     /**
      * Boolean flag to enable or disable position filtering.
      */
@@ -297,6 +563,19 @@ public final class Keys {
     public static final ConfigKey GEOCODER_CACHE_SIZE = new ConfigKey(
             "geocoder.cacheSize", Integer.class);
 
+    /**
+     * Number of decimal places coordinates are rounded to before looking up geocoder cache. Default value is 4, which
+     * is roughly 10 meters.
+     */
+    public static final ConfigKey GEOCODER_CACHE_PRECISION = new ConfigKey(
+            "geocoder.cachePrecision", Integer.class);
+
+    /**
+     * Path to the file for storing geocoder cache between restarts. By default cache is kept only in memory.
+     */
+    public static final ConfigKey GEOCODER_CACHE_FILE = new ConfigKey(
+            "geocoder.cacheFile", String.class);
+
     /**
      * Disable automatic reverse geocoding requests for all positions.
      */
@@ -316,6 +595,19 @@ public final class Keys {
     public static final ConfigKey GEOCODER_REUSE_DISTANCE = new ConfigKey(
             "geocoder.reuseDistance", Integer.class);
 
+    /**
+     * Maximum number of geocoder provider requests per second. By default rate is not limited.
+     */
+    public static final ConfigKey GEOCODER_RATE_LIMIT = new ConfigKey(
+            "geocoder.rateLimit", Double.class);
+
+    /**
+     * Number of requests that can wait for rate limit. When the queue is full, positions are processed without
+     * address. Default value is 1000.
+     */
+    public static final ConfigKey GEOCODER_RATE_LIMIT_QUEUE = new ConfigKey(
+            "geocoder.rateLimitQueue", Integer.class);
+
     /**
      * Boolean flag to enable LBS location resolution. Some devices send cell towers information and WiFi point when GPS
      * location is not available. Traccar can determine coordinates based on that information using third party
@@ -364,6 +656,59 @@ public final class Keys {
     public static final ConfigKey LOCATION_LONGITUDE_HEMISPHERE = new ConfigKey(
             "location.longitudeHemisphere", Boolean.class);
 
+    /**
+     * Number of threads shared by all reports for processing devices in parallel. Default is the number of available
+     * processors. Database connection pool should be large enough for these threads.
+     */
+    public static final ConfigKey REPORT_THREADS = new ConfigKey(
+            "report.threads", Integer.class);
+
+    /**
+     * Maximum number of devices processed in parallel for a single report request. Default value is 4. Set to 1 to
+     * process devices sequentially.
+     */
+    public static final ConfigKey REPORT_PARALLELISM = new ConfigKey(
+            "report.parallelism", Integer.class);
+
+    /**
+     * Log raw frames as HEX at INFO level. Default value is true. Disable to keep only the binary capture.
+     */
+    public static final ConfigKey LOGGER_FRAMES_TEXT = new ConfigKey(
+            "logger.frames.text", Boolean.class);
+
+    /**
+     * Comma separated list of protocols to log raw frames for. By default frames of all protocols are logged.
+     */
+    public static final ConfigKey LOGGER_FRAMES_PROTOCOLS = new ConfigKey(
+            "logger.frames.protocols", String.class);
+
+    /**
+     * Comma separated list of device unique identifiers to log raw frames for. Only frames of connections where the
+     * device is already identified are logged. By default frames of all connections are logged.
+     */
+    public static final ConfigKey LOGGER_FRAMES_DEVICES = new ConfigKey(
+            "logger.frames.devices", String.class);
+
+    /**
+     * Log only one of every N frames of each connection. Default value is 1, which logs every frame.
+     */
+    public static final ConfigKey LOGGER_FRAMES_SAMPLING = new ConfigKey(
+            "logger.frames.sampling", Integer.class);
+
+    /**
+     * Maximum number of frames waiting to be written. Frames are formatted and written by a separate thread. When
+     * the queue is full, the oldest frames are dropped. Default value is 10000.
+     */
+    public static final ConfigKey LOGGER_FRAMES_QUEUE_SIZE = new ConfigKey(
+            "logger.frames.queueSize", Integer.class);
+
+    /**
+     * File for binary capture of raw frames. Captured frames can be read with FrameCapture.Reader and passed to a
+     * protocol decoder for debugging. Capture is appended to an existing file.
+     */
+    public static final ConfigKey LOGGER_FRAMES_CAPTURE_FILE = new ConfigKey(
+            "logger.frames.captureFile", String.class);
+
     private Keys() {
     }
 
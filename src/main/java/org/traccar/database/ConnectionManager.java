@@ -35,7 +35,6 @@ import java.net.SocketAddress;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -165,31 +164,34 @@ public class ConnectionManager {
         return result;
     }
 
-    public synchronized void updateDevice(Device device) {
+    public void updateDevice(Device device) {
         for (long userId : Context.getPermissionsManager().getDeviceUsers(device.getId())) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
+            Set<UpdateListener> userListeners = listeners.get(userId);
+            if (userListeners != null) {
+                for (UpdateListener listener : userListeners) {
                     listener.onUpdateDevice(device);
                 }
             }
         }
     }
 
-    public synchronized void updatePosition(Position position) {
+    public void updatePosition(Position position) {
         long deviceId = position.getDeviceId();
 
         for (long userId : Context.getPermissionsManager().getDeviceUsers(deviceId)) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
+            Set<UpdateListener> userListeners = listeners.get(userId);
+            if (userListeners != null) {
+                for (UpdateListener listener : userListeners) {
                     listener.onUpdatePosition(position);
                 }
             }
         }
     }
 
-    public synchronized void updateEvent(long userId, Event event) {
-        if (listeners.containsKey(userId)) {
-            for (UpdateListener listener : listeners.get(userId)) {
+    public void updateEvent(long userId, Event event) {
+        Set<UpdateListener> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            for (UpdateListener listener : userListeners) {
                 listener.onUpdateEvent(event);
             }
         }
@@ -201,18 +203,15 @@ public class ConnectionManager {
         void onUpdateEvent(Event event);
     }
 
-    public synchronized void addListener(long userId, UpdateListener listener) {
-        if (!listeners.containsKey(userId)) {
-            listeners.put(userId, new HashSet<UpdateListener>());
-        }
-        listeners.get(userId).add(listener);
+    public void addListener(long userId, UpdateListener listener) {
+        listeners.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(listener);
     }
 
-    public synchronized void removeListener(long userId, UpdateListener listener) {
-        if (!listeners.containsKey(userId)) {
-            listeners.put(userId, new HashSet<UpdateListener>());
+    public void removeListener(long userId, UpdateListener listener) {
+        Set<UpdateListener> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            userListeners.remove(listener);
         }
-        listeners.get(userId).remove(listener);
     }
 
 }
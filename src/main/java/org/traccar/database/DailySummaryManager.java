@@ -0,0 +1,247 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+import org.traccar.model.PositionAggregate;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains daily summaries of stored positions per device, so that summaries of long periods don't need to read all
+ * positions. Positions are aggregated in memory and written to the database periodically. Days are in UTC. Summaries
+ * of days that started before the server was started are not complete and are not used by reports. Reports merge
+ * summaries that are not written yet, so summaries of the current day are used as well.
+ *
+ * <p>If the server was not stopped cleanly, aggregated positions that were not written are lost. In that case
+ * summaries of the last two days before the latest stored summary are marked as not complete on start, because they
+ * can't be proven to include all positions.
+ */
+public class DailySummaryManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailySummaryManager.class);
+
+    public static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final long STOP_TIMEOUT = 10000;
+
+    private final DataManager dataManager;
+    private final long startTime = System.currentTimeMillis();
+
+    private final ScheduledExecutorService executor;
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final File marker;
+
+    private Map<Long, Map<Long, PositionAggregate>> pending = new HashMap<>();
+
+    public DailySummaryManager(Config config, DataManager dataManager) {
+        this.dataManager = dataManager;
+
+        String markerFile = config.getString(Keys.DATABASE_DAILY_SUMMARY_MARKER);
+        marker = markerFile != null ? new File(markerFile) : null;
+        if (marker == null || !marker.delete()) {
+            resetRecentSummaries();
+        }
+
+        long period = config.getLong(Keys.DATABASE_DAILY_SUMMARY_PERIOD, 60000);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daily-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static long getDayStart(long time) {
+        return time - Math.floorMod(time, DAY);
+    }
+
+    private void resetRecentSummaries() {
+        try {
+            Date lastTime = dataManager.getDailySummaryLastTime();
+            if (lastTime != null) {
+                long from = getDayStart(Math.min(lastTime.getTime(), startTime)) - DAY;
+                dataManager.resetDailySummaries(new Date(from));
+            }
+        } catch (SQLException error) {
+            LOGGER.warn("Daily summary reset error", error);
+        }
+    }
+
+    private static PositionAggregate createSummary(long deviceId, long dayStart, boolean complete) {
+        PositionAggregate summary = new PositionAggregate();
+        summary.setDeviceId(deviceId);
+        summary.setDayStart(new Date(dayStart));
+        summary.setComplete(complete);
+        return summary;
+    }
+
+    /**
+     * Add stored position to the summary of its day.
+     */
+    public void update(Position position) {
+        if (position.getId() == 0 || position.getFixTime() == null) {
+            return;
+        }
+        long dayStart = getDayStart(position.getFixTime().getTime());
+        synchronized (this) {
+            pending.computeIfAbsent(position.getDeviceId(), key -> new HashMap<>())
+                    .computeIfAbsent(dayStart, key -> createSummary(position.getDeviceId(), key, key >= startTime))
+                    .add(position);
+        }
+    }
+
+    /**
+     * Write pending summaries to the database. Reports wait for the write to finish, so that summaries that are
+     * neither pending nor stored are never read.
+     */
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            Map<Long, Map<Long, PositionAggregate>> summaries;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                summaries = pending;
+                pending = new HashMap<>();
+            }
+            List<PositionAggregate> failed = new ArrayList<>();
+            for (Map<Long, PositionAggregate> deviceSummaries : summaries.values()) {
+                for (PositionAggregate summary : deviceSummaries.values()) {
+                    if (!failed.isEmpty()) {
+                        failed.add(summary);
+                        continue;
+                    }
+                    try {
+                        dataManager.updateDailySummary(summary);
+                    } catch (SQLException error) {
+                        LOGGER.warn("Daily summary update error", error);
+                        failed.add(summary);
+                    }
+                }
+            }
+            if (!failed.isEmpty()) {
+                synchronized (this) {
+                    for (PositionAggregate summary : failed) {
+                        long dayStart = summary.getDayStart().getTime();
+                        pending.computeIfAbsent(summary.getDeviceId(), key -> new HashMap<>())
+                                .computeIfAbsent(dayStart, key -> createSummary(
+                                        summary.getDeviceId(), key, summary.getComplete()))
+                                .merge(summary);
+                    }
+                }
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aggregate positions with fix time from the start (inclusive) to the end (exclusive) of the period. Complete
+     * daily summaries are used for whole days and remaining time is aggregated by the database. Pending summaries are
+     * merged with the stored ones, so that positions that are not written yet are included.
+     */
+    public PositionAggregate getAggregate(long deviceId, long from, long to) throws SQLException {
+        PositionAggregate result = new PositionAggregate();
+        long firstDay = getDayStart(from + DAY - 1);
+        long lastDay = getDayStart(to);
+        long current = from;
+        if (firstDay < lastDay) {
+            Map<Long, PositionAggregate> summaries = new TreeMap<>();
+            flushLock.readLock().lock();
+            try {
+                for (PositionAggregate summary : dataManager.getDailySummaries(
+                        deviceId, new Date(firstDay), new Date(lastDay))) {
+                    summaries.put(summary.getDayStart().getTime(), summary);
+                }
+                synchronized (this) {
+                    Map<Long, PositionAggregate> deviceSummaries = pending.get(deviceId);
+                    if (deviceSummaries != null) {
+                        for (PositionAggregate summary : deviceSummaries.values()) {
+                            long dayStart = summary.getDayStart().getTime();
+                            if (dayStart >= firstDay && dayStart < lastDay) {
+                                summaries.computeIfAbsent(dayStart, key -> createSummary(
+                                        deviceId, key, summary.getComplete())).merge(summary);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                flushLock.readLock().unlock();
+            }
+            for (PositionAggregate summary : summaries.values()) {
+                long dayStart = summary.getDayStart().getTime();
+                if (summary.getComplete() && dayStart >= current) {
+                    if (dayStart > current) {
+                        result.merge(dataManager.getPositionAggregate(deviceId, new Date(current), new Date(dayStart)));
+                    }
+                    result.merge(summary);
+                    current = dayStart + DAY;
+                }
+            }
+        }
+        if (current < to) {
+            result.merge(dataManager.getPositionAggregate(deviceId, new Date(current), new Date(to)));
+        }
+        return result;
+    }
+
+    /**
+     * Write pending summaries and stop. If all summaries are written, the marker file is created, so that recent
+     * summaries are not reset on the next start.
+     */
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (marker != null) {
+            boolean written;
+            synchronized (this) {
+                written = pending.isEmpty();
+            }
+            if (written) {
+                try {
+                    marker.createNewFile();
+                } catch (IOException error) {
+                    LOGGER.warn("Daily summary marker error", error);
+                }
+            }
+        }
+    }
+
+}
@@ -24,7 +24,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
@@ -40,6 +42,7 @@ import liquibase.resource.ResourceAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.Context;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Attribute;
@@ -56,9 +59,12 @@ import org.traccar.model.BaseModel;
 import org.traccar.model.Calendar;
 import org.traccar.model.Command;
 import org.traccar.model.Position;
+import org.traccar.model.PositionAggregate;
 import org.traccar.model.Server;
 import org.traccar.model.Statistics;
 import org.traccar.model.User;
+import org.traccar.reports.model.StopReport;
+import org.traccar.reports.model.TripReport;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -81,10 +87,13 @@ public class DataManager {
 
     private boolean forceLdap;
 
+    private int fetchSize;
+
     public DataManager(Config config) throws Exception {
         this.config = config;
 
         forceLdap = config.getBoolean("ldap.force");
+        fetchSize = config.getInteger(Keys.DATABASE_FETCH_SIZE, 1000);
 
         initDatabase();
         initDatabaseSchema();
@@ -347,6 +356,106 @@ public class DataManager {
                 .executeQuery(Position.class);
     }
 
+    public void getPositions(long deviceId, Date from, Date to, Consumer<Position> consumer) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.selectPositions"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQueryStreamed(Position.class, fetchSize, consumer);
+    }
+
+    public Collection<Position> getPositions(long deviceId, Date fixTime) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectPositionsAtTime"))
+                .setLong("deviceId", deviceId)
+                .setDate("fixTime", fixTime)
+                .executeQuery(Position.class);
+    }
+
+    /**
+     * Aggregate positions with fix time from the start (inclusive) to the end (exclusive) of the period.
+     */
+    public PositionAggregate getPositionAggregate(long deviceId, Date from, Date to) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectPositionAggregate"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuerySingle(PositionAggregate.class);
+    }
+
+    public Collection<PositionAggregate> getDailySummaries(long deviceId, Date from, Date to) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectDailySummaries"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuery(PositionAggregate.class);
+    }
+
+    public void updateDailySummary(PositionAggregate summary) throws SQLException {
+        long updated = QueryBuilder.create(dataSource, getQuery("database.updateDailySummary"))
+                .setObject(summary)
+                .executeUpdate();
+        if (updated == 0) {
+            QueryBuilder.create(dataSource, getQuery("database.insertDailySummary"))
+                    .setObject(summary)
+                    .executeUpdate();
+        }
+    }
+
+    public Date getDailySummaryLastTime() throws SQLException {
+        PositionAggregate result = QueryBuilder.create(dataSource, getQuery("database.selectDailySummaryLastTime"))
+                .executeQuerySingle(PositionAggregate.class);
+        return result != null ? result.getLastTime() : null;
+    }
+
+    /**
+     * Mark summaries of days from the given day as not complete.
+     */
+    public void resetDailySummaries(Date from) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.resetDailySummaries"))
+                .setDate("from", from)
+                .executeUpdate();
+    }
+
+    public Collection<TripReport> getTrips(long deviceId, Date from, Date to) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectTrips"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuery(TripReport.class);
+    }
+
+    public TripReport getLastTrip(long deviceId) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectLastTrip"))
+                .setLong("deviceId", deviceId)
+                .executeQuerySingle(TripReport.class);
+    }
+
+    public void addTrip(TripReport trip) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.insertTrip"))
+                .setObject(trip)
+                .executeUpdate();
+    }
+
+    public Collection<StopReport> getStops(long deviceId, Date from, Date to) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectStops"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuery(StopReport.class);
+    }
+
+    public StopReport getLastStop(long deviceId) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectLastStop"))
+                .setLong("deviceId", deviceId)
+                .executeQuerySingle(StopReport.class);
+    }
+
+    public void addStop(StopReport stop) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.insertStop"))
+                .setObject(stop)
+                .executeUpdate();
+    }
+
     public void updateLatestPosition(Position position) throws SQLException {
         QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"))
                 .setDate("now", new Date())
@@ -354,6 +463,22 @@ public class DataManager {
                 .executeUpdate();
     }
 
+    public void updateLatestPositions(Collection<Position> positions) throws SQLException {
+        if (!positions.isEmpty()) {
+            QueryBuilder builder = QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"));
+            Date now = new Date();
+            for (Position position : positions) {
+                builder.setDate("now", now).setObject(position).addBatch();
+            }
+            builder.executeBatch();
+        }
+    }
+
+    public void recoverLatestPositions() throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.recoverLatestPositions"))
+                .executeUpdate();
+    }
+
     public Collection<Position> getLatestPositions() throws SQLException {
         return QueryBuilder.create(dataSource, getQuery("database.selectLatestPositions"))
                 .executeQuery(Position.class);
@@ -458,6 +583,23 @@ public class DataManager {
                 .executeUpdate());
     }
 
+    public void addObjects(List<? extends BaseModel> entities) throws SQLException {
+        if (!entities.isEmpty()) {
+            QueryBuilder builder = QueryBuilder.create(
+                    dataSource, getQuery(ACTION_INSERT, entities.get(0).getClass()), true);
+            for (BaseModel entity : entities) {
+                builder.setObject(entity).addBatch();
+            }
+            long[] keys = builder.executeBatch();
+            if (keys.length != entities.size()) {
+                LOGGER.warn("Batch insert returned {} generated keys for {} rows", keys.length, entities.size());
+            }
+            for (int i = 0; i < keys.length && i < entities.size(); i++) {
+                entities.get(i).setId(keys[i]);
+            }
+        }
+    }
+
     public void updateObject(BaseModel entity) throws SQLException {
         QueryBuilder.create(dataSource, getQuery(ACTION_UPDATE, entity.getClass()))
                 .setObject(entity)
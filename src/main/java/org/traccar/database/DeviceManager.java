@@ -15,6 +15,8 @@
  */
 package org.traccar.database;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashSet;
@@ -23,12 +25,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
 import org.traccar.Context;
+import org.traccar.config.Keys;
 import org.traccar.model.Command;
 import org.traccar.model.Device;
 import org.traccar.model.DeviceState;
@@ -43,6 +49,8 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
 
     public static final long DEFAULT_REFRESH_DELAY = 300;
 
+    private static final long STOP_TIMEOUT = 10000;
+
     private final Config config;
     private final long dataRefreshDelay;
     private boolean lookupGroupsAttribute;
@@ -55,6 +63,10 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
 
     private final Map<Long, DeviceState> deviceStates = new ConcurrentHashMap<>();
 
+    private final Map<Long, Position> pendingPositions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService positionExecutor;
+    private File latestPositionMarker;
+
     public DeviceManager(DataManager dataManager) {
         super(dataManager, Device.class);
         this.config = Context.getConfig();
@@ -66,6 +78,25 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
         }
         dataRefreshDelay = config.getLong("database.refreshDelay", DEFAULT_REFRESH_DELAY) * 1000;
         lookupGroupsAttribute = config.getBoolean("deviceManager.lookupGroupsAttribute");
+        long latestPositionPeriod = config.getLong(Keys.DATABASE_LATEST_POSITION_PERIOD);
+        if (latestPositionPeriod > 0 && dataManager != null) {
+            String marker = config.getString(Keys.DATABASE_LATEST_POSITION_MARKER);
+            latestPositionMarker = marker != null ? new File(marker) : null;
+            if (latestPositionMarker == null || !latestPositionMarker.delete()) {
+                try {
+                    dataManager.recoverLatestPositions();
+                } catch (SQLException error) {
+                    LOGGER.warn("Recover latest positions error", error);
+                }
+            }
+            positionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "latest-position-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            positionExecutor.scheduleWithFixedDelay(
+                    this::flushLatestPositions, latestPositionPeriod, latestPositionPeriod, TimeUnit.MILLISECONDS);
+        }
         refreshLastPositions();
     }
 
@@ -293,7 +324,11 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
 
         if (isLatestPosition(position)) {
 
-            getDataManager().updateLatestPosition(position);
+            if (positionExecutor != null) {
+                pendingPositions.put(position.getDeviceId(), position);
+            } else {
+                getDataManager().updateLatestPosition(position);
+            }
 
             Device device = getById(position.getDeviceId());
             if (device != null) {
@@ -308,6 +343,48 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
         }
     }
 
+    private void flushLatestPositions() {
+        List<Position> batch = new LinkedList<>();
+        for (Long deviceId : pendingPositions.keySet()) {
+            Position position = pendingPositions.remove(deviceId);
+            if (position != null) {
+                batch.add(position);
+            }
+        }
+        try {
+            getDataManager().updateLatestPositions(batch);
+        } catch (SQLException error) {
+            LOGGER.warn("Update latest positions error", error);
+            for (Position position : batch) {
+                pendingPositions.putIfAbsent(position.getDeviceId(), position);
+            }
+        }
+    }
+
+    /**
+     * Store pending latest positions and stop collecting updates, so that further updates are stored immediately. If
+     * all positions are stored, the marker file is created, so that recovery is skipped on the next start.
+     */
+    public void stop() {
+        if (positionExecutor != null) {
+            positionExecutor.shutdown();
+            try {
+                positionExecutor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            positionExecutor = null;
+            flushLatestPositions();
+            if (latestPositionMarker != null && pendingPositions.isEmpty()) {
+                try {
+                    latestPositionMarker.createNewFile();
+                } catch (IOException error) {
+                    LOGGER.warn("Latest position marker error", error);
+                }
+            }
+        }
+    }
+
     @Override
     public Position getLastPosition(long deviceId) {
         return positions.get(deviceId);
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores events in batches from worker threads and passes them on for notification processing. Events of the same
+ * device are handled by the same worker, so their order is preserved.
+ */
+public class EventProcessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventProcessor.class);
+
+    private static final long POLL_TIMEOUT = 100;
+    private static final long STOP_TIMEOUT = 10000;
+
+    public interface Callback {
+        void onStored(Event event, Position position);
+    }
+
+    private static final class Entry {
+
+        private final Event event;
+        private final Position position;
+
+        private Entry(Event event, Position position) {
+            this.event = event;
+            this.position = position;
+        }
+
+    }
+
+    private final DataManager dataManager;
+    private final Callback callback;
+    private final int batchSize;
+
+    private final List<BlockingQueue<Entry>> queues = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    public EventProcessor(Config config, DataManager dataManager, Callback callback) {
+        this.dataManager = dataManager;
+        this.callback = callback;
+        batchSize = Math.max(config.getInteger(Keys.EVENT_ASYNC_BATCH_SIZE, 100), 1);
+        int workerCount = Math.max(config.getInteger(Keys.EVENT_ASYNC_WORKERS, 2), 1);
+        int queueSize = Math.max(config.getInteger(Keys.EVENT_ASYNC_QUEUE_SIZE, 10000) / workerCount, batchSize);
+
+        for (int i = 0; i < workerCount; i++) {
+            final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(queueSize);
+            queues.add(queue);
+            Thread worker = new Thread(() -> process(queue), "event-processor-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queue event for processing. If the queue is full, the calling thread waits, so events are delayed rather than
+     * lost and events of a device are never processed out of order. After the processor is stopped, events are handled
+     * by the calling thread.
+     */
+    public void add(Event event, Position position) {
+        Entry entry = new Entry(event, position);
+        if (running) {
+            try {
+                queues.get((int) Math.abs(event.getDeviceId() % queues.size())).put(entry);
+                return;
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Entry> batch = new ArrayList<>(1);
+        batch.add(entry);
+        flush(batch);
+    }
+
+    private void process(BlockingQueue<Entry> queue) {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<Event> events = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            events.add(entry.event);
+        }
+
+        try {
+            dataManager.addObjects(events);
+        } catch (Exception error) {
+            LOGGER.warn("Failed to store events batch", error);
+            for (Event event : events) {
+                try {
+                    dataManager.addObject(event);
+                } catch (Exception e) {
+                    LOGGER.warn("Event save error", e);
+                }
+            }
+        }
+
+        for (Entry entry : batch) {
+            try {
+                callback.onStored(entry.event, entry.position);
+            } catch (Exception error) {
+                LOGGER.warn("Event processing error", error);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(STOP_TIMEOUT);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        for (BlockingQueue<Entry> queue : queues) {
+            List<Entry> batch = new ArrayList<>();
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,18 +17,48 @@ package org.traccar.database;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.traccar.Context;
+import org.traccar.geofence.GeofenceIndex;
 import org.traccar.model.Device;
 import org.traccar.model.Geofence;
 import org.traccar.model.Position;
 
 public class GeofenceManager extends ExtendedObjectManager<Geofence> {
 
+    private GeofenceIndex index;
+
     public GeofenceManager(DataManager dataManager) {
         super(dataManager, Geofence.class);
     }
 
+    private GeofenceIndex getIndex() {
+        // items are loaded from the parent constructor, before fields are initialized
+        if (index == null) {
+            index = new GeofenceIndex();
+        }
+        return index;
+    }
+
+    @Override
+    protected void addNewItem(Geofence geofence) {
+        super.addNewItem(geofence);
+        getIndex().put(geofence.getId(), geofence.getGeometry());
+    }
+
+    @Override
+    protected void updateCachedItem(Geofence geofence) {
+        super.updateCachedItem(geofence);
+        getIndex().put(geofence.getId(), geofence.getGeometry());
+    }
+
+    @Override
+    protected void removeCachedItem(long geofenceId) {
+        super.removeCachedItem(geofenceId);
+        getIndex().remove(geofenceId);
+    }
+
     @Override
     public final void refreshExtendedPermissions() {
         super.refreshExtendedPermissions();
@@ -37,11 +67,26 @@ public class GeofenceManager extends ExtendedObjectManager<Geofence> {
 
     public List<Long> getCurrentDeviceGeofences(Position position) {
         List<Long> result = new ArrayList<>();
-        for (long geofenceId : getAllDeviceItems(position.getDeviceId())) {
-            Geofence geofence = getById(geofenceId);
-            if (geofence != null && geofence.getGeometry()
-                    .containsPoint(position.getLatitude(), position.getLongitude())) {
-                result.add(geofenceId);
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        Set<Long> deviceGeofenceIds = getAllDeviceItems(position.getDeviceId());
+        if (getIndex().getCandidateCount(latitude, longitude) < deviceGeofenceIds.size()) {
+            for (long geofenceId : getIndex().getCandidates(latitude, longitude)) {
+                if (deviceGeofenceIds.contains(geofenceId)) {
+                    Geofence geofence = getById(geofenceId);
+                    if (geofence != null && geofence.getGeometry().containsPoint(latitude, longitude)) {
+                        result.add(geofenceId);
+                    }
+                }
+            }
+        } else {
+            for (long geofenceId : deviceGeofenceIds) {
+                Geofence geofence = getById(geofenceId);
+                if (geofence != null && geofence.getGeometry() != null
+                        && geofence.getGeometry().boundsContain(latitude, longitude)
+                        && geofence.getGeometry().containsPoint(latitude, longitude)) {
+                    result.add(geofenceId);
+                }
             }
         }
         return result;
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records stored in memory-mapped segment files. Each record gets a sequence number.
+ * Records up to the committed sequence are no longer needed, and segments containing only such records are deleted.
+ * <p>
+ * Record format is length, sequence, payload and CRC32 of the payload. The length is written last, so a partially
+ * written record is never visible to readers, and records with invalid checksum end the segment.
+ */
+public class JournalLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String OFFSET_FILE = "offset";
+    private static final int HEADER_SIZE = 4 + 8;
+    private static final int TRAILER_SIZE = 4;
+
+    public interface Consumer {
+        /**
+         * Returns false to stop reading.
+         */
+        boolean accept(long sequence, byte[] payload);
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final boolean trackPending;
+
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private final NavigableSet<Long> pending = new ConcurrentSkipListSet<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long lastSequence;
+    private long recoveredSequence;
+    private volatile long committedSequence;
+
+    /**
+     * If pending records are tracked, records can be committed in any order and the committed sequence is the one
+     * before the oldest uncommitted record. Otherwise the consumer commits records in order.
+     */
+    public JournalLog(File directory, int segmentSize, boolean trackPending) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.trackPending = trackPending;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create journal directory " + directory);
+        }
+
+        File offsetFile = new File(directory, OFFSET_FILE);
+        if (offsetFile.exists()) {
+            String offset = new String(Files.readAllBytes(offsetFile.toPath()), StandardCharsets.US_ASCII).trim();
+            committedSequence = Long.parseLong(offset);
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+
+        lastSequence = committedSequence;
+        if (!segments.isEmpty()) {
+            lastSequence = Math.max(lastSequence, segments.lastKey() - 1);
+            read(segments.lastKey() - 1, (sequence, payload) -> {
+                lastSequence = Math.max(lastSequence, sequence);
+                return true;
+            });
+        }
+        recoveredSequence = lastSequence;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Records left uncommitted from the previous run keep the committed sequence until they are handled and committed
+     * with {@link #commitUpTo(long)}.
+     */
+    public long getCommittedSequence() {
+        if (trackPending && committedSequence >= recoveredSequence) {
+            synchronized (this) {
+                return pending.isEmpty() ? lastSequence : pending.first() - 1;
+            }
+        }
+        return committedSequence;
+    }
+
+    public synchronized long append(byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length + TRAILER_SIZE;
+        if (buffer == null || buffer.remaining() < recordSize + 4) {
+            openSegment(lastSequence + 1, Math.max(segmentSize, recordSize + 4));
+        }
+
+        long sequence = lastSequence + 1;
+        CRC32 checksum = new CRC32();
+        checksum.update(payload, 0, payload.length);
+
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putLong(sequence);
+        buffer.put(payload);
+        buffer.putInt((int) checksum.getValue());
+        buffer.putInt(start, payload.length);
+
+        lastSequence = sequence;
+        if (trackPending) {
+            pending.add(sequence);
+        }
+        return sequence;
+    }
+
+    private void openSegment(long firstSequence, int size) throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+        }
+        File file = new File(directory, String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segments.put(firstSequence, file);
+    }
+
+    /**
+     * Mark record as stored. Only used when pending records are tracked.
+     */
+    public void commit(long sequence) {
+        pending.remove(sequence);
+    }
+
+    /**
+     * Mark all records up to the sequence as stored. When pending records are tracked, only used for records from the
+     * previous run.
+     */
+    public void commitUpTo(long sequence) {
+        committedSequence = Math.max(committedSequence, sequence);
+    }
+
+    /**
+     * Read records with sequence after the given one, in order.
+     */
+    public void read(long afterSequence, Consumer consumer) throws IOException {
+        List<File> files;
+        synchronized (this) {
+            Long first = segments.floorKey(afterSequence + 1);
+            files = new ArrayList<>(segments.tailMap(first != null ? first : afterSequence + 1).values());
+        }
+        for (File file : files) {
+            if (!readSegment(file, afterSequence, consumer)) {
+                return;
+            }
+        }
+    }
+
+    private boolean readSegment(File file, long afterSequence, Consumer consumer) throws IOException {
+        if (!file.exists()) {
+            return true;
+        }
+        try (FileChannel readChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer readBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            while (readBuffer.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+                int length = readBuffer.getInt();
+                if (length <= 0 || readBuffer.remaining() < 8 + length + TRAILER_SIZE) {
+                    break;
+                }
+                long sequence = readBuffer.getLong();
+                byte[] payload = new byte[length];
+                readBuffer.get(payload);
+                CRC32 checksum = new CRC32();
+                checksum.update(payload, 0, payload.length);
+                if (readBuffer.getInt() != (int) checksum.getValue()) {
+                    LOGGER.warn("Journal record {} is corrupted", sequence);
+                    break;
+                }
+                if (sequence > afterSequence && !consumer.accept(sequence, payload)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Force written records to disk, save committed sequence and delete segments that are no longer needed.
+     */
+    public void flush() throws IOException {
+        long committed = getCommittedSequence();
+        List<File> obsolete = new ArrayList<>();
+        synchronized (this) {
+            if (buffer != null) {
+                buffer.force();
+            }
+            Long previous = null;
+            for (Map.Entry<Long, File> entry : segments.entrySet()) {
+                if (previous != null && entry.getKey() - 1 <= committed) {
+                    obsolete.add(segments.get(previous));
+                }
+                previous = entry.getKey();
+            }
+            if (buffer == null && previous != null && lastSequence <= committed) {
+                obsolete.add(segments.get(previous));
+            }
+            segments.values().removeAll(obsolete);
+        }
+
+        File offsetFile = new File(directory, OFFSET_FILE);
+        File temporaryFile = new File(directory, OFFSET_FILE + ".tmp");
+        Files.write(temporaryFile.toPath(), String.valueOf(committed).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temporaryFile.toPath(), offsetFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (File file : obsolete) {
+            if (!file.delete()) {
+                LOGGER.warn("Failed to delete journal segment {}", file);
+            }
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.traccar.helper.DataConverter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recently verified credentials, so that repeated logins with the same credentials don't need a database query and
+ * password hashing. Credentials are not stored, entries are keyed by HMAC of email and password with a random key
+ * generated on startup. Only successful logins are cached and entries of a user are removed when the user is updated.
+ */
+public class LoginCache {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAX_SIZE = 10000;
+
+    private static final class Entry {
+
+        private final long userId;
+        private final long expirationTime;
+
+        private Entry(long userId, long expirationTime) {
+            this.userId = userId;
+            this.expirationTime = expirationTime;
+        }
+
+    }
+
+    private final long timeout;
+    private final SecretKeySpec key;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public LoginCache(long timeout) {
+        this.timeout = timeout;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    private String digest(String email, String password) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(email.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return DataConverter.printHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    public boolean isEnabled() {
+        return timeout > 0;
+    }
+
+    /**
+     * Returns id of the user verified with the same credentials or null if there is no valid entry.
+     */
+    public Long get(String email, String password) {
+        String digest = digest(email, password);
+        Entry entry = entries.get(digest);
+        if (entry != null) {
+            if (entry.expirationTime > System.currentTimeMillis()) {
+                return entry.userId;
+            }
+            entries.remove(digest, entry);
+        }
+        return null;
+    }
+
+    /**
+     * Version changes with every invalidation. Login result is only cached if the version didn't change during the
+     * verification, so that a concurrent user update is not missed.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void put(String email, String password, long userId, long expectedVersion) {
+        long currentTime = System.currentTimeMillis();
+        if (entries.size() >= MAX_SIZE) {
+            entries.values().removeIf(entry -> entry.expirationTime <= currentTime);
+            if (entries.size() >= MAX_SIZE) {
+                return;
+            }
+        }
+        String digest = digest(email, password);
+        entries.put(digest, new Entry(userId, currentTime + timeout));
+        if (version.get() != expectedVersion) {
+            entries.remove(digest);
+        }
+    }
+
+    public void invalidate(long userId) {
+        version.incrementAndGet();
+        entries.values().removeIf(entry -> entry.userId == userId);
+    }
+
+}
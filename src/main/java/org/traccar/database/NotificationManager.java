@@ -19,15 +19,22 @@ package org.traccar.database;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.sql.SQLException;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.config.Keys;
+import org.traccar.geocoder.Geocoder;
 import org.traccar.model.Calendar;
 import org.traccar.model.Event;
 import org.traccar.model.Notification;
@@ -40,27 +47,122 @@ public class NotificationManager extends ExtendedObjectManager<Notification> {
 
     private boolean geocodeOnRequest;
 
+    private EventProcessor eventProcessor;
+
     public NotificationManager(DataManager dataManager) {
         super(dataManager, Notification.class);
         geocodeOnRequest = Context.getConfig().getBoolean("geocoder.onRequest");
+        if (Context.getConfig().getBoolean(Keys.EVENT_ASYNC_ENABLE)) {
+            eventProcessor = new EventProcessor(Context.getConfig(), dataManager, this::onEventStored);
+        }
+    }
+
+    public void stop() {
+        if (eventProcessor != null) {
+            eventProcessor.stop();
+        }
     }
 
-    private Set<Long> getEffectiveNotifications(long userId, long deviceId, Date time) {
-        Set<Long> result = new HashSet<>();
+    static final class Route {
+
+        private final long userId;
+        private final long notificationId;
+
+        private Route(long userId, long notificationId) {
+            this.userId = userId;
+            this.notificationId = notificationId;
+        }
+
+        long getUserId() {
+            return userId;
+        }
+
+        long getNotificationId() {
+            return notificationId;
+        }
+
+    }
+
+    private Map<Long, Map<String, List<Route>>> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Drop all cached notification routes, so they are rebuilt from current permissions on the next event. Only used
+     * after a full permissions refresh, when the set of affected devices is not known.
+     */
+    public void invalidateRoutes() {
+        if (routes != null) {
+            routes.clear();
+        }
+    }
+
+    public void invalidateDeviceRoutes(long deviceId) {
+        if (routes != null) {
+            routes.remove(deviceId);
+        }
+    }
+
+    public void invalidateGroupRoutes(long groupId) {
+        for (long deviceId : Context.getPermissionsManager().getGroupDevices(groupId)) {
+            invalidateDeviceRoutes(deviceId);
+        }
+    }
+
+    public void invalidateUserRoutes(long userId) {
+        for (long deviceId : Context.getPermissionsManager().getDevicePermissions(userId)) {
+            invalidateDeviceRoutes(deviceId);
+        }
+    }
+
+    private void invalidateNotificationRoutes(long notificationId) {
+        for (long userId : Context.getUsersManager().getAllItems()) {
+            if (getUserItems(userId).contains(notificationId)) {
+                invalidateUserRoutes(userId);
+            }
+        }
+    }
+
+    private Map<String, List<Route>> buildRoutes(long deviceId) {
+        Map<String, List<Route>> result = new HashMap<>();
         Set<Long> deviceNotifications = getAllDeviceItems(deviceId);
-        for (long itemId : getUserItems(userId)) {
-            if (getById(itemId).getAlways() || deviceNotifications.contains(itemId)) {
-                long calendarId = getById(itemId).getCalendarId();
-                Calendar calendar = calendarId != 0 ? Context.getCalendarManager().getById(calendarId) : null;
-                if (calendar == null || calendar.checkMoment(time)) {
-                    result.add(itemId);
+        for (long userId : Context.getPermissionsManager().getAllDeviceUsers(deviceId)) {
+            for (long itemId : getUserItems(userId)) {
+                Notification notification = getById(itemId);
+                if (notification != null && (notification.getAlways() || deviceNotifications.contains(itemId))) {
+                    result.computeIfAbsent(notification.getType(), key -> new ArrayList<>())
+                            .add(new Route(userId, itemId));
                 }
             }
         }
         return result;
     }
 
+    List<Route> getRoutes(long deviceId, String type) {
+        List<Route> result = routes.computeIfAbsent(deviceId, this::buildRoutes).get(type);
+        return result != null ? result : Collections.emptyList();
+    }
+
+    /**
+     * Routes only depend on the type and the always flag of a notification, other fields are read when an event is
+     * processed. New and removed notifications are handled by permission changes and lookups.
+     */
+    @Override
+    protected void updateCachedItem(Notification notification) {
+        Notification cachedNotification = getById(notification.getId());
+        boolean changed = cachedNotification == null
+                || !Objects.equals(cachedNotification.getType(), notification.getType())
+                || cachedNotification.getAlways() != notification.getAlways();
+        super.updateCachedItem(notification);
+        if (changed && routes != null) {
+            invalidateNotificationRoutes(notification.getId());
+        }
+    }
+
     public void updateEvent(Event event, Position position) {
+        if (eventProcessor != null) {
+            eventProcessor.add(event, position);
+            return;
+        }
+
         try {
             getDataManager().addObject(event);
         } catch (SQLException error) {
@@ -72,42 +174,84 @@ public class NotificationManager extends ExtendedObjectManager<Notification> {
                     .getAddress(position.getLatitude(), position.getLongitude(), null));
         }
 
-        long deviceId = event.getDeviceId();
-        Set<Long> users = Context.getPermissionsManager().getDeviceUsers(deviceId);
-        Set<Long> usersToForward = null;
-        if (Context.getEventForwarder() != null) {
-            usersToForward = new HashSet<>();
-        }
-        for (long userId : users) {
-            if ((event.getGeofenceId() == 0
-                    || Context.getGeofenceManager().checkItemPermission(userId, event.getGeofenceId()))
-                    && (event.getMaintenanceId() == 0
-                    || Context.getMaintenancesManager().checkItemPermission(userId, event.getMaintenanceId()))) {
-                if (usersToForward != null) {
-                    usersToForward.add(userId);
-                }
-                final Set<String> notificators = new HashSet<>();
-                for (long notificationId : getEffectiveNotifications(userId, deviceId, event.getServerTime())) {
-                    Notification notification = getById(notificationId);
-                    if (getById(notificationId).getType().equals(event.getType())) {
-                        boolean filter = false;
-                        if (event.getType().equals(Event.TYPE_ALARM)) {
-                            String alarms = notification.getString("alarms");
-                            if (alarms == null || !alarms.contains(event.getString(Position.KEY_ALARM))) {
-                                filter = true;
-                            }
+        notifyEvent(event, position);
+    }
+
+    /**
+     * Address is resolved into a copy of the position, because the original can still be used by other threads.
+     */
+    private void onEventStored(final Event event, final Position position) {
+        if (position != null && geocodeOnRequest && Context.getGeocoder() != null && position.getAddress() == null) {
+            final Position geocodedPosition = Context.getObjectMapper().convertValue(position, Position.class);
+            Context.getGeocoder().getAddress(position.getLatitude(), position.getLongitude(),
+                    new Geocoder.ReverseGeocoderCallback() {
+                        @Override
+                        public void onSuccess(String address) {
+                            geocodedPosition.setAddress(address);
+                            notifyEvent(event, geocodedPosition);
                         }
-                        if (!filter) {
-                            notificators.addAll(notification.getNotificatorsTypes());
+
+                        @Override
+                        public void onFailure(Throwable e) {
+                            LOGGER.warn("Geocoding failed", e);
+                            notifyEvent(event, geocodedPosition);
                         }
-                    }
+                    });
+        } else {
+            notifyEvent(event, position);
+        }
+    }
+
+    private boolean checkEventPermission(long userId, Event event) {
+        return (event.getGeofenceId() == 0
+                || Context.getGeofenceManager().checkItemPermission(userId, event.getGeofenceId()))
+                && (event.getMaintenanceId() == 0
+                || Context.getMaintenancesManager().checkItemPermission(userId, event.getMaintenanceId()));
+    }
+
+    private void notifyEvent(Event event, Position position) {
+        long deviceId = event.getDeviceId();
+        Set<Long> users = Context.getPermissionsManager().getDeviceUsers(deviceId);
+
+        Map<Long, Set<String>> userNotificators = new HashMap<>();
+        for (Route route : getRoutes(deviceId, event.getType())) {
+            if (!users.contains(route.userId) || !checkEventPermission(route.userId, event)) {
+                continue;
+            }
+            Notification notification = getById(route.notificationId);
+            if (notification == null) {
+                continue;
+            }
+            long calendarId = notification.getCalendarId();
+            if (calendarId != 0) {
+                Calendar calendar = Context.getCalendarManager().getById(calendarId);
+                if (calendar != null && !calendar.checkMoment(event.getServerTime())) {
+                    continue;
                 }
-                for (String notificator : notificators) {
-                    Context.getNotificatorManager().getNotificator(notificator).sendAsync(userId, event, position);
+            }
+            if (event.getType().equals(Event.TYPE_ALARM)) {
+                String alarms = notification.getString("alarms");
+                if (alarms == null || !alarms.contains(event.getString(Position.KEY_ALARM))) {
+                    continue;
                 }
             }
+            userNotificators.computeIfAbsent(route.userId, key -> new HashSet<>())
+                    .addAll(notification.getNotificatorsTypes());
+        }
+        for (Entry<Long, Set<String>> entry : userNotificators.entrySet()) {
+            for (String notificator : entry.getValue()) {
+                Context.getNotificatorManager().getNotificator(notificator)
+                        .sendAsync(entry.getKey(), event, position);
+            }
         }
+
         if (Context.getEventForwarder() != null) {
+            Set<Long> usersToForward = new HashSet<>();
+            for (long userId : users) {
+                if (checkEventPermission(userId, event)) {
+                    usersToForward.add(userId);
+                }
+            }
             Context.getEventForwarder().forwardEvent(event, position, usersToForward);
         }
     }
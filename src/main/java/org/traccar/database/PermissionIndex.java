@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relation between owner and property ids, for example users and devices, indexed in both directions. Ids are kept in
+ * sorted primitive arrays per owner and per property. Arrays are never modified after they are published, updates
+ * replace them, so lookups don't need locking.
+ */
+public class PermissionIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, long[]> forward;
+    private final Map<Long, long[]> reverse;
+
+    public PermissionIndex() {
+        this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private PermissionIndex(Map<Long, long[]> forward, Map<Long, long[]> reverse) {
+        this.forward = forward;
+        this.reverse = reverse;
+    }
+
+    private static final class LongList {
+
+        private long[] values = new long[4];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            int count = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[i - 1]) {
+                    result[count++] = result[i];
+                }
+            }
+            return count < result.length ? Arrays.copyOf(result, count) : result;
+        }
+
+    }
+
+    /**
+     * Collects pairs for a full rebuild, which is then published at once.
+     */
+    public static class Builder {
+
+        private final Map<Long, LongList> items = new HashMap<>();
+
+        public void add(long ownerId, long propertyId) {
+            items.computeIfAbsent(ownerId, key -> new LongList()).add(propertyId);
+        }
+
+        public PermissionIndex build() {
+            Map<Long, long[]> forward = new ConcurrentHashMap<>(items.size() * 2);
+            Map<Long, LongList> reverseItems = new HashMap<>();
+            for (Map.Entry<Long, LongList> entry : items.entrySet()) {
+                long[] values = entry.getValue().toSortedArray();
+                forward.put(entry.getKey(), values);
+                for (long value : values) {
+                    reverseItems.computeIfAbsent(value, key -> new LongList()).add(entry.getKey());
+                }
+            }
+            Map<Long, long[]> reverse = new ConcurrentHashMap<>(reverseItems.size() * 2);
+            for (Map.Entry<Long, LongList> entry : reverseItems.entrySet()) {
+                reverse.put(entry.getKey(), entry.getValue().toSortedArray());
+            }
+            return new PermissionIndex(forward, reverse);
+        }
+
+    }
+
+    /**
+     * Read-only set view of a sorted id array.
+     */
+    private static final class LongArraySet extends AbstractSet<Long> {
+
+        private final long[] values;
+
+        private LongArraySet(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Long && Arrays.binarySearch(values, (Long) o) >= 0;
+        }
+
+        @Override
+        public Iterator<Long> iterator() {
+            return new Iterator<Long>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < values.length;
+                }
+
+                @Override
+                public Long next() {
+                    if (index >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return values[index++];
+                }
+            };
+        }
+
+    }
+
+    public Set<Long> getOwnerIds() {
+        return Collections.unmodifiableSet(forward.keySet());
+    }
+
+    public long[] getArray(long ownerId) {
+        return forward.getOrDefault(ownerId, EMPTY);
+    }
+
+    public Set<Long> get(long ownerId) {
+        return new LongArraySet(getArray(ownerId));
+    }
+
+    public Set<Long> getOwners(long propertyId) {
+        return new LongArraySet(reverse.getOrDefault(propertyId, EMPTY));
+    }
+
+    public boolean contains(long ownerId, long propertyId) {
+        return Arrays.binarySearch(getArray(ownerId), propertyId) >= 0;
+    }
+
+    private static long[] insert(long[] values, long value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return values;
+        }
+        index = -index - 1;
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static long[] delete(long[] values, long value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return values;
+        }
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    private static void update(Map<Long, long[]> map, long key, long[] values) {
+        if (values.length > 0) {
+            map.put(key, values);
+        } else {
+            map.remove(key);
+        }
+    }
+
+    public synchronized void add(long ownerId, long propertyId) {
+        update(forward, ownerId, insert(getArray(ownerId), propertyId));
+        update(reverse, propertyId, insert(reverse.getOrDefault(propertyId, EMPTY), ownerId));
+    }
+
+    public synchronized void remove(long ownerId, long propertyId) {
+        update(forward, ownerId, delete(getArray(ownerId), propertyId));
+        update(reverse, propertyId, delete(reverse.getOrDefault(propertyId, EMPTY), ownerId));
+    }
+
+    /**
+     * Replace all properties of the owner. Only the difference is applied to the reverse index.
+     */
+    public synchronized void set(long ownerId, long[] propertyIds) {
+        LongList list = new LongList();
+        for (long propertyId : propertyIds) {
+            list.add(propertyId);
+        }
+        long[] values = list.toSortedArray();
+        long[] previous = getArray(ownerId);
+        for (long propertyId : previous) {
+            if (Arrays.binarySearch(values, propertyId) < 0) {
+                update(reverse, propertyId, delete(reverse.getOrDefault(propertyId, EMPTY), ownerId));
+            }
+        }
+        for (long propertyId : values) {
+            if (Arrays.binarySearch(previous, propertyId) < 0) {
+                update(reverse, propertyId, insert(reverse.getOrDefault(propertyId, EMPTY), ownerId));
+            }
+        }
+        update(forward, ownerId, values);
+    }
+
+}
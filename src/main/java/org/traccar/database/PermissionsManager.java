@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,9 +34,8 @@ import org.traccar.model.Server;
 import org.traccar.model.User;
 
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 public class PermissionsManager {
@@ -48,10 +47,12 @@ public class PermissionsManager {
 
     private volatile Server server;
 
-    private final Map<Long, Set<Long>> groupPermissions = new HashMap<>();
-    private final Map<Long, Set<Long>> devicePermissions = new HashMap<>();
-    private final Map<Long, Set<Long>> deviceUsers = new HashMap<>();
-    private final Map<Long, Set<Long>> groupDevices = new HashMap<>();
+    private volatile PermissionIndex userGroups = new PermissionIndex();
+    private volatile PermissionIndex userDevices = new PermissionIndex();
+    private volatile PermissionIndex groupSubgroups = new PermissionIndex();
+    private volatile PermissionIndex groupDevices = new PermissionIndex();
+    private volatile PermissionIndex groupPermissions = new PermissionIndex();
+    private volatile PermissionIndex devicePermissions = new PermissionIndex();
 
     public PermissionsManager(DataManager dataManager, UsersManager usersManager) {
         this.dataManager = dataManager;
@@ -65,24 +66,15 @@ public class PermissionsManager {
     }
 
     public Set<Long> getGroupPermissions(long userId) {
-        if (!groupPermissions.containsKey(userId)) {
-            groupPermissions.put(userId, new HashSet<>());
-        }
         return groupPermissions.get(userId);
     }
 
     public Set<Long> getDevicePermissions(long userId) {
-        if (!devicePermissions.containsKey(userId)) {
-            devicePermissions.put(userId, new HashSet<>());
-        }
         return devicePermissions.get(userId);
     }
 
-    private Set<Long> getAllDeviceUsers(long deviceId) {
-        if (!deviceUsers.containsKey(deviceId)) {
-            deviceUsers.put(deviceId, new HashSet<>());
-        }
-        return deviceUsers.get(deviceId);
+    public Set<Long> getAllDeviceUsers(long deviceId) {
+        return devicePermissions.getOwners(deviceId);
     }
 
     public Set<Long> getDeviceUsers(long deviceId) {
@@ -101,9 +93,6 @@ public class PermissionsManager {
     }
 
     public Set<Long> getGroupDevices(long groupId) {
-        if (!groupDevices.containsKey(groupId)) {
-            groupDevices.put(groupId, new HashSet<>());
-        }
         return groupDevices.get(groupId);
     }
 
@@ -115,44 +104,108 @@ public class PermissionsManager {
         }
     }
 
-    public final void refreshDeviceAndGroupPermissions() {
-        groupPermissions.clear();
-        devicePermissions.clear();
+    public final synchronized void refreshDeviceAndGroupPermissions() {
+        PermissionIndex.Builder userGroupsBuilder = new PermissionIndex.Builder();
+        PermissionIndex.Builder userDevicesBuilder = new PermissionIndex.Builder();
+        PermissionIndex.Builder groupSubgroupsBuilder = new PermissionIndex.Builder();
+        PermissionIndex.Builder groupDevicesBuilder = new PermissionIndex.Builder();
         try {
             GroupTree groupTree = new GroupTree(Context.getGroupsManager().getItems(
                     Context.getGroupsManager().getAllItems()),
                     Context.getDeviceManager().getAllDevices());
-            for (Permission groupPermission : dataManager.getPermissions(User.class, Group.class)) {
-                Set<Long> userGroupPermissions = getGroupPermissions(groupPermission.getOwnerId());
-                Set<Long> userDevicePermissions = getDevicePermissions(groupPermission.getOwnerId());
-                userGroupPermissions.add(groupPermission.getPropertyId());
-                for (Group group : groupTree.getGroups(groupPermission.getPropertyId())) {
-                    userGroupPermissions.add(group.getId());
+            for (long groupId : Context.getGroupsManager().getAllItems()) {
+                for (Group group : groupTree.getGroups(groupId)) {
+                    groupSubgroupsBuilder.add(groupId, group.getId());
                 }
-                for (Device device : groupTree.getDevices(groupPermission.getPropertyId())) {
-                    userDevicePermissions.add(device.getId());
+                for (Device device : groupTree.getDevices(groupId)) {
+                    groupDevicesBuilder.add(groupId, device.getId());
                 }
             }
-
+            for (Permission groupPermission : dataManager.getPermissions(User.class, Group.class)) {
+                userGroupsBuilder.add(groupPermission.getOwnerId(), groupPermission.getPropertyId());
+            }
             for (Permission devicePermission : dataManager.getPermissions(User.class, Device.class)) {
-                getDevicePermissions(devicePermission.getOwnerId()).add(devicePermission.getPropertyId());
+                userDevicesBuilder.add(devicePermission.getOwnerId(), devicePermission.getPropertyId());
             }
+        } catch (SQLException | ClassNotFoundException error) {
+            LOGGER.warn("Refresh device permissions error", error);
+        }
 
-            groupDevices.clear();
-            for (long groupId : Context.getGroupsManager().getAllItems()) {
-                for (Device device : groupTree.getDevices(groupId)) {
-                    getGroupDevices(groupId).add(device.getId());
-                }
+        userGroups = userGroupsBuilder.build();
+        userDevices = userDevicesBuilder.build();
+        groupSubgroups = groupSubgroupsBuilder.build();
+        groupDevices = groupDevicesBuilder.build();
+
+        PermissionIndex.Builder groupPermissionsBuilder = new PermissionIndex.Builder();
+        PermissionIndex.Builder devicePermissionsBuilder = new PermissionIndex.Builder();
+        Set<Long> userIds = new HashSet<>();
+        userIds.addAll(userGroups.getOwnerIds());
+        userIds.addAll(userDevices.getOwnerIds());
+        for (long userId : userIds) {
+            for (long groupId : getUserGroups(userId)) {
+                groupPermissionsBuilder.add(userId, groupId);
+            }
+            for (long deviceId : getUserDevices(userId)) {
+                devicePermissionsBuilder.add(userId, deviceId);
             }
+        }
+        groupPermissions = groupPermissionsBuilder.build();
+        devicePermissions = devicePermissionsBuilder.build();
 
-        } catch (SQLException | ClassNotFoundException error) {
-            LOGGER.warn("Refresh device permissions error", error);
+        if (Context.getNotificationManager() != null) {
+            Context.getNotificationManager().invalidateRoutes();
+        }
+    }
+
+    private long[] getUserGroups(long userId) {
+        long[] directGroups = userGroups.getArray(userId);
+        int length = directGroups.length;
+        for (long groupId : directGroups) {
+            length += groupSubgroups.getArray(groupId).length;
+        }
+        long[] result = Arrays.copyOf(directGroups, length);
+        int offset = directGroups.length;
+        for (long groupId : directGroups) {
+            long[] subgroups = groupSubgroups.getArray(groupId);
+            System.arraycopy(subgroups, 0, result, offset, subgroups.length);
+            offset += subgroups.length;
+        }
+        return result;
+    }
+
+    private long[] getUserDevices(long userId) {
+        long[] directDevices = userDevices.getArray(userId);
+        long[] directGroups = userGroups.getArray(userId);
+        int length = directDevices.length;
+        for (long groupId : directGroups) {
+            length += groupDevices.getArray(groupId).length;
+        }
+        long[] result = Arrays.copyOf(directDevices, length);
+        int offset = directDevices.length;
+        for (long groupId : directGroups) {
+            long[] devices = groupDevices.getArray(groupId);
+            System.arraycopy(devices, 0, result, offset, devices.length);
+            offset += devices.length;
         }
+        return result;
+    }
 
-        deviceUsers.clear();
-        for (Map.Entry<Long, Set<Long>> entry : devicePermissions.entrySet()) {
-            for (long deviceId : entry.getValue()) {
-                getAllDeviceUsers(deviceId).add(entry.getKey());
+    private synchronized void updateUserPermissions(Permission permission, boolean link) {
+        long userId = permission.getOwnerId();
+        PermissionIndex index = permission.getPropertyClass().equals(Device.class) ? userDevices : userGroups;
+        if (link) {
+            index.add(userId, permission.getPropertyId());
+        } else {
+            index.remove(userId, permission.getPropertyId());
+        }
+        groupPermissions.set(userId, getUserGroups(userId));
+        devicePermissions.set(userId, getUserDevices(userId));
+
+        if (Context.getNotificationManager() != null) {
+            if (permission.getPropertyClass().equals(Device.class)) {
+                Context.getNotificationManager().invalidateDeviceRoutes(permission.getPropertyId());
+            } else {
+                Context.getNotificationManager().invalidateGroupRoutes(permission.getPropertyId());
             }
         }
     }
@@ -303,11 +356,19 @@ public class PermissionsManager {
         }
     }
 
+    private boolean checkDevicePermission(long userId, long deviceId) {
+        if (devicePermissions.contains(userId, deviceId)) {
+            Device device = Context.getDeviceManager().getById(deviceId);
+            return device != null && !device.getDisabled();
+        }
+        return false;
+    }
+
     public void checkDevice(long userId, long deviceId) throws SecurityException {
-        if (!Context.getDeviceManager().getUserItems(userId).contains(deviceId) && !getUserAdmin(userId)) {
+        if (!checkDevicePermission(userId, deviceId) && !getUserAdmin(userId)) {
             checkManager(userId);
             for (long managedUserId : usersManager.getUserItems(userId)) {
-                if (Context.getDeviceManager().getUserItems(managedUserId).contains(deviceId)) {
+                if (checkDevicePermission(managedUserId, deviceId)) {
                     return;
                 }
             }
@@ -371,6 +432,7 @@ public class PermissionsManager {
         Context.getMaintenancesManager().refreshUserItems();
         if (Context.getNotificationManager() != null) {
             Context.getNotificationManager().refreshUserItems();
+            Context.getNotificationManager().invalidateRoutes();
         }
     }
 
@@ -384,11 +446,11 @@ public class PermissionsManager {
         Context.getMaintenancesManager().refreshExtendedPermissions();
     }
 
-    public void refreshPermissions(Permission permission) {
+    public void refreshPermissions(Permission permission, boolean link) {
         if (permission.getOwnerClass().equals(User.class)) {
             if (permission.getPropertyClass().equals(Device.class)
                     || permission.getPropertyClass().equals(Group.class)) {
-                refreshDeviceAndGroupPermissions();
+                updateUserPermissions(permission, link);
                 refreshAllExtendedPermissions();
             } else if (permission.getPropertyClass().equals(ManagedUser.class)) {
                 usersManager.refreshUserItems();
@@ -407,6 +469,7 @@ public class PermissionsManager {
             } else if (permission.getPropertyClass().equals(Notification.class)
                     && Context.getNotificationManager() != null) {
                 Context.getNotificationManager().refreshUserItems();
+                Context.getNotificationManager().invalidateUserRoutes(permission.getOwnerId());
             }
         } else if (permission.getOwnerClass().equals(Device.class) || permission.getOwnerClass().equals(Group.class)) {
             if (permission.getPropertyClass().equals(Geofence.class) && Context.getGeofenceManager() != null) {
@@ -422,6 +485,11 @@ public class PermissionsManager {
             } else if (permission.getPropertyClass().equals(Notification.class)
                     && Context.getNotificationManager() != null) {
                 Context.getNotificationManager().refreshExtendedPermissions();
+                if (permission.getOwnerClass().equals(Device.class)) {
+                    Context.getNotificationManager().invalidateDeviceRoutes(permission.getOwnerId());
+                } else {
+                    Context.getNotificationManager().invalidateGroupRoutes(permission.getOwnerId());
+                }
             }
         }
     }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PositionBatchWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionBatchWriter.class);
+
+    private static final long STOP_TIMEOUT = 10000;
+
+    public interface Callback {
+        void onStored(Position position);
+    }
+
+    private static final class Entry {
+
+        private final Position position;
+        private final Callback callback;
+        private final long time;
+
+        private Entry(Position position, Callback callback) {
+            this.position = position;
+            this.callback = callback;
+            this.time = System.currentTimeMillis();
+        }
+
+    }
+
+    private final DataManager dataManager;
+    private final StatisticsManager statisticsManager;
+    private final int batchSize;
+    private final long batchPeriod;
+
+    private final List<BlockingQueue<Entry>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    public PositionBatchWriter(Config config, DataManager dataManager, StatisticsManager statisticsManager) {
+        this.dataManager = dataManager;
+        this.statisticsManager = statisticsManager;
+        batchSize = Math.max(config.getInteger(Keys.DATABASE_BATCH_SIZE, 100), 1);
+        batchPeriod = Math.max(config.getLong(Keys.DATABASE_BATCH_PERIOD, 100), 1);
+        int writerCount = Math.max(config.getInteger(Keys.DATABASE_BATCH_WRITERS, 2), 1);
+        int queueSize = Math.max(config.getInteger(Keys.DATABASE_BATCH_QUEUE_SIZE, 10000) / writerCount, batchSize);
+
+        for (int i = 0; i < writerCount; i++) {
+            final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(queueSize);
+            queues.add(queue);
+            Thread writer = new Thread(() -> process(queue), "position-writer-" + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    private BlockingQueue<Entry> selectQueue(long deviceId) {
+        return queues.get((int) Math.abs(deviceId % queues.size()));
+    }
+
+    public int getQueueSize() {
+        int size = 0;
+        for (BlockingQueue<Entry> queue : queues) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Queue position for storage. Callback is invoked from the writer thread after position gets its id. If the queue
+     * is full, the calling thread waits, which slows down reading from the network.
+     */
+    public void write(Position position, Callback callback) {
+        if (running) {
+            try {
+                selectQueue(position.getDeviceId()).put(new Entry(position, callback));
+                return;
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            dataManager.addObject(position);
+        } catch (Exception error) {
+            LOGGER.warn("Failed to store position", error);
+        }
+        callback.onStored(position);
+    }
+
+    private void process(BlockingQueue<Entry> queue) {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(batchPeriod, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.time + batchPeriod;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    Entry entry = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (entry == null) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<Position> positions = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            positions.add(entry.position);
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            dataManager.addObjects(positions);
+        } catch (Exception error) {
+            LOGGER.warn("Failed to store positions batch", error);
+            for (Position position : positions) {
+                try {
+                    dataManager.addObject(position);
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to store position", e);
+                }
+            }
+        }
+        if (statisticsManager != null) {
+            statisticsManager.registerStorageFlush(getQueueSize(), System.currentTimeMillis() - startTime);
+        }
+
+        for (Entry entry : batch) {
+            try {
+                entry.callback.onStored(entry.position);
+            } catch (Exception error) {
+                LOGGER.warn("Position callback error", error);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(STOP_TIMEOUT);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.helper.AttributesCodec;
+import org.traccar.model.Network;
+import org.traccar.model.Position;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable journal of positions on their way to the database. Positions are written to the journal before storage and
+ * committed after storage succeeds. Positions that fail to store are moved to a retry journal, which is written to the
+ * database in order once it is available again, so a database outage only grows files on disk. Positions that the
+ * database rejects for other reasons than connectivity are moved to the rejected journal and skipped. Positions that
+ * were not committed when the server stopped are retried on the next start. Delivery is at least once, so a crash right
+ * after storage can duplicate a few positions.
+ */
+public class PositionJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionJournal.class);
+
+    private static final long STOP_TIMEOUT = 10000;
+    private static final int RETRY_BATCH_SIZE = 1000;
+
+    private final DataManager dataManager;
+    private final ObjectMapper objectMapper;
+    private final DailySummaryManager dailySummaryManager;
+
+    private final JournalLog journal;
+    private final JournalLog retryJournal;
+    private final JournalLog rejectedJournal;
+    private final ScheduledExecutorService executor;
+
+    public PositionJournal(
+            Config config, DataManager dataManager, ObjectMapper objectMapper,
+            DailySummaryManager dailySummaryManager) throws IOException {
+        this.dataManager = dataManager;
+        this.objectMapper = objectMapper;
+        this.dailySummaryManager = dailySummaryManager;
+
+        File directory = new File(config.getString(Keys.DATABASE_JOURNAL_DIRECTORY));
+        int segmentSize = config.getInteger(Keys.DATABASE_JOURNAL_SEGMENT_SIZE, 16 * 1024 * 1024);
+        journal = new JournalLog(new File(directory, "positions"), segmentSize, true);
+        retryJournal = new JournalLog(new File(directory, "retry"), segmentSize, false);
+        rejectedJournal = new JournalLog(new File(directory, "rejected"), segmentSize, false);
+
+        journal.read(journal.getCommittedSequence(), (sequence, payload) -> {
+            try {
+                retryJournal.append(payload);
+            } catch (IOException error) {
+                LOGGER.warn("Journal recovery error", error);
+            }
+            return true;
+        });
+        journal.commitUpTo(journal.getLastSequence());
+        journal.flush();
+        retryJournal.flush();
+
+        long period = config.getLong(Keys.DATABASE_JOURNAL_PERIOD, 1000);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "position-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write position to the journal. Returns sequence number or 0 if the journal write failed.
+     */
+    public long append(Position position) {
+        try {
+            return journal.append(encode(position));
+        } catch (IOException error) {
+            LOGGER.warn("Journal write error", error);
+            return 0;
+        }
+    }
+
+    /**
+     * Complete journal entry after storage attempt. Positions without id failed to store and are retried later.
+     */
+    public void complete(long sequence, Position position) {
+        if (sequence == 0) {
+            return;
+        }
+        if (position.getId() == 0) {
+            try {
+                retryJournal.append(encode(position));
+            } catch (IOException error) {
+                LOGGER.warn("Journal write error", error);
+            }
+        }
+        journal.commit(sequence);
+    }
+
+    private void maintain() {
+        try {
+            retry();
+            journal.flush();
+            retryJournal.flush();
+            rejectedJournal.flush();
+        } catch (IOException | RuntimeException error) {
+            LOGGER.warn("Journal maintenance error", error);
+        }
+    }
+
+    private static final class RetryEntry {
+
+        private final long sequence;
+        private final byte[] payload;
+        private final Position position;
+
+        private RetryEntry(long sequence, byte[] payload, Position position) {
+            this.sequence = sequence;
+            this.payload = payload;
+            this.position = position;
+        }
+
+    }
+
+    /**
+     * Connection errors mean that the database is not available, so retry stops and continues later from the same
+     * record. Other errors are caused by the record itself.
+     */
+    private static boolean isConnectionError(Throwable error) {
+        while (error != null) {
+            if (error instanceof SQLTransientConnectionException
+                    || error instanceof SQLNonTransientConnectionException
+                    || error instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (error instanceof SQLException) {
+                String state = ((SQLException) error).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+            error = error.getCause();
+        }
+        return false;
+    }
+
+    private void reject(RetryEntry entry) {
+        try {
+            rejectedJournal.append(entry.payload);
+        } catch (IOException error) {
+            LOGGER.warn("Journal write error", error);
+        }
+    }
+
+    private void stored(Position position) {
+        if (dailySummaryManager != null) {
+            dailySummaryManager.update(position);
+        }
+    }
+
+    private void retry() throws IOException {
+        final List<RetryEntry> entries = new ArrayList<>();
+        while (retryJournal.getCommittedSequence() < retryJournal.getLastSequence()) {
+            entries.clear();
+            retryJournal.read(retryJournal.getCommittedSequence(), (sequence, payload) -> {
+                Position position = null;
+                try {
+                    position = decode(payload);
+                } catch (IOException error) {
+                    LOGGER.warn("Journal record {} decoding error", sequence, error);
+                }
+                entries.add(new RetryEntry(sequence, payload, position));
+                return entries.size() < RETRY_BATCH_SIZE;
+            });
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            List<Position> positions = new ArrayList<>(entries.size());
+            for (RetryEntry entry : entries) {
+                if (entry.position != null) {
+                    positions.add(entry.position);
+                } else {
+                    reject(entry);
+                }
+            }
+
+            try {
+                dataManager.addObjects(positions);
+                retryJournal.commitUpTo(entries.get(entries.size() - 1).sequence);
+                for (Position position : positions) {
+                    stored(position);
+                }
+                continue;
+            } catch (Exception error) {
+                LOGGER.warn("Journal retry error", error);
+                if (isConnectionError(error)) {
+                    return;
+                }
+            }
+
+            for (RetryEntry entry : entries) {
+                if (entry.position != null) {
+                    try {
+                        dataManager.addObject(entry.position);
+                        stored(entry.position);
+                    } catch (Exception error) {
+                        if (isConnectionError(error)) {
+                            LOGGER.warn("Journal retry error", error);
+                            return;
+                        }
+                        LOGGER.warn("Journal record {} rejected", entry.sequence, error);
+                        reject(entry);
+                    }
+                }
+                retryJournal.commitUpTo(entry.sequence);
+            }
+        }
+    }
+
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+            retryJournal.close();
+            rejectedJournal.close();
+        } catch (IOException error) {
+            LOGGER.warn("Journal closing error", error);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else {
+            output.writeInt(-1);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream output, Date value) throws IOException {
+        output.writeLong(value != null ? value.getTime() : Long.MIN_VALUE);
+    }
+
+    private static Date readDate(DataInputStream input) throws IOException {
+        long time = input.readLong();
+        return time != Long.MIN_VALUE ? new Date(time) : null;
+    }
+
+    byte[] encode(Position position) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (DataOutputStream output = new DataOutputStream(buffer)) {
+            output.writeLong(position.getDeviceId());
+            writeString(output, position.getProtocol());
+            writeDate(output, position.getServerTime());
+            writeDate(output, position.getDeviceTime());
+            writeDate(output, position.getFixTime());
+            output.writeBoolean(position.getOutdated());
+            output.writeBoolean(position.getValid());
+            output.writeDouble(position.getLatitude());
+            output.writeDouble(position.getLongitude());
+            output.writeDouble(position.getAltitude());
+            output.writeDouble(position.getSpeed());
+            output.writeDouble(position.getCourse());
+            writeString(output, position.getAddress());
+            output.writeDouble(position.getAccuracy());
+            writeString(output, position.getNetwork() != null
+                    ? objectMapper.writeValueAsString(position.getNetwork()) : null);
+            byte[] attributes = AttributesCodec.encode(position.getAttributes());
+            output.writeInt(attributes.length);
+            output.write(attributes);
+        }
+        return buffer.toByteArray();
+    }
+
+    Position decode(byte[] payload) throws IOException {
+        Position position = new Position();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+            position.setDeviceId(input.readLong());
+            position.setProtocol(readString(input));
+            position.setServerTime(readDate(input));
+            position.setDeviceTime(readDate(input));
+            position.setFixTime(readDate(input));
+            position.setOutdated(input.readBoolean());
+            position.setValid(input.readBoolean());
+            position.setLatitude(input.readDouble());
+            position.setLongitude(input.readDouble());
+            position.setAltitude(input.readDouble());
+            position.setSpeed(input.readDouble());
+            position.setCourse(input.readDouble());
+            position.setAddress(readString(input));
+            position.setAccuracy(input.readDouble());
+            String network = readString(input);
+            if (network != null) {
+                position.setNetwork(objectMapper.readValue(network, Network.class));
+            }
+            byte[] attributes = new byte[input.readInt()];
+            input.readFully(attributes);
+            try {
+                position.setAttributes(AttributesCodec.decode(attributes));
+            } catch (IllegalArgumentException error) {
+                throw new IOException(error);
+            }
+        }
+        return position;
+    }
+
+}
@@ -15,16 +15,19 @@
  */
 package org.traccar.database;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.config.Keys;
+import org.traccar.helper.AttributesCodec;
 import org.traccar.model.MiscFormatter;
 import org.traccar.model.Permission;
+import org.traccar.model.Position;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -34,6 +37,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -41,6 +46,8 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public final class QueryBuilder {
 
@@ -260,48 +267,107 @@ public final class QueryBuilder {
         return this;
     }
 
-    public QueryBuilder setObject(Object object) throws SQLException {
+    private interface PropertyBinder {
+        void bind(QueryBuilder builder, Object object) throws Throwable;
+    }
 
-        Method[] methods = object.getClass().getMethods();
+    private interface ResultSetProcessor<T> {
+        void process(T object, ResultSet resultSet) throws Throwable;
+    }
 
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
-                    && !method.isAnnotationPresent(QueryIgnore.class)) {
-                String name = method.getName().substring(3);
-                try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        setBoolean(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        setInteger(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        setLong(name, (Long) method.invoke(object), name.endsWith("Id"));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        setDouble(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        setString(name, (String) method.invoke(object));
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        setDate(name, (Date) method.invoke(object));
-                    } else if (method.getReturnType().equals(byte[].class)) {
-                        setBlob(name, (byte[]) method.invoke(object));
-                    } else {
-                        if (method.getReturnType().equals(Map.class)
-                                && Context.getConfig().getBoolean("database.xml")) {
-                            setString(name, MiscFormatter.toXmlString((Map) method.invoke(object)));
-                        } else {
-                            setString(name, Context.getObjectMapper().writeValueAsString(method.invoke(object)));
-                        }
+    private static final class ObjectMapper<T> {
+
+        private final MethodHandle constructor;
+        private final List<ResultSetProcessor<T>> processors;
+
+        private ObjectMapper(MethodHandle constructor, List<ResultSetProcessor<T>> processors) {
+            this.constructor = constructor;
+            this.processors = processors;
+        }
+
+    }
+
+    private static final Map<Class<?>, Map<String, PropertyBinder>> BINDERS = new ConcurrentHashMap<>();
+
+    private static final Map<String, ObjectMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private static Map<String, PropertyBinder> getBinders(Class<?> clazz) {
+        Map<String, PropertyBinder> binders = BINDERS.get(clazz);
+        if (binders == null) {
+            binders = new LinkedHashMap<>();
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
+                        && !method.isAnnotationPresent(QueryIgnore.class)) {
+                    String name = method.getName().substring(3);
+                    try {
+                        binders.put(name.toLowerCase(), createBinder(clazz, method, name));
+                    } catch (IllegalAccessException error) {
+                        LOGGER.warn("Get property error", error);
                     }
-                } catch (IllegalAccessException | InvocationTargetException | JsonProcessingException error) {
-                    LOGGER.warn("Get property error", error);
                 }
             }
+            BINDERS.put(clazz, binders);
         }
+        return binders;
+    }
 
-        return this;
+    private static PropertyBinder createBinder(
+            Class<?> clazz, Method method, final String name) throws IllegalAccessException {
+        Class<?> type = method.getReturnType();
+        MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+        if (type.isPrimitive()) {
+            final MethodHandle getter = handle.asType(MethodType.methodType(type, Object.class));
+            if (type.equals(boolean.class)) {
+                return (builder, object) -> builder.setBoolean(name, (boolean) getter.invokeExact(object));
+            } else if (type.equals(int.class)) {
+                return (builder, object) -> builder.setInteger(name, (int) getter.invokeExact(object));
+            } else if (type.equals(long.class)) {
+                final boolean nullIfZero = name.endsWith("Id");
+                return (builder, object) -> builder.setLong(name, (long) getter.invokeExact(object), nullIfZero);
+            } else if (type.equals(double.class)) {
+                return (builder, object) -> builder.setDouble(name, (double) getter.invokeExact(object));
+            }
+        }
+        final MethodHandle getter = handle.asType(MethodType.methodType(Object.class, Object.class));
+        if (type.equals(String.class)) {
+            return (builder, object) -> builder.setString(name, (String) (Object) getter.invokeExact(object));
+        } else if (type.equals(Date.class)) {
+            return (builder, object) -> builder.setDate(name, (Date) (Object) getter.invokeExact(object));
+        } else if (type.equals(byte[].class)) {
+            return (builder, object) -> builder.setBlob(name, (byte[]) (Object) getter.invokeExact(object));
+        } else if (type.equals(Map.class)) {
+            final boolean binaryAllowed = Position.class.isAssignableFrom(clazz);
+            return (builder, object) -> {
+                Object value = getter.invokeExact(object);
+                if (Context.getConfig().getBoolean("database.xml")) {
+                    builder.setString(name, MiscFormatter.toXmlString((Map) value));
+                } else if (binaryAllowed && Context.getConfig().getBoolean(Keys.DATABASE_BINARY_ATTRIBUTES)) {
+                    builder.setString(name, AttributesCodec.encodeText((Map) value));
+                } else {
+                    builder.setString(name, Context.getObjectMapper().writeValueAsString(value));
+                }
+            };
+        } else {
+            return (builder, object) -> builder.setString(
+                    name, Context.getObjectMapper().writeValueAsString(getter.invokeExact(object)));
+        }
     }
 
-    private interface ResultSetProcessor<T> {
-        void process(T object, ResultSet resultSet) throws SQLException;
+    public QueryBuilder setObject(Object object) throws SQLException {
+
+        for (Map.Entry<String, PropertyBinder> entry : getBinders(object.getClass()).entrySet()) {
+            if (indexMap.containsKey(entry.getKey())) {
+                try {
+                    entry.getValue().bind(this, object);
+                } catch (SQLException error) {
+                    throw error;
+                } catch (Throwable error) {
+                    LOGGER.warn("Get property error", error);
+                }
+            }
+        }
+
+        return this;
     }
 
     public <T> T executeQuerySingle(Class<T> clazz) throws SQLException {
@@ -313,109 +379,131 @@ public final class QueryBuilder {
         }
     }
 
-    private <T> void addProcessors(
-            List<ResultSetProcessor<T>> processors,
-            final Class<?> parameterType, final Method method, final String name) {
+    private static <T> ObjectMapper<T> getMapper(Class<T> clazz, ResultSetMetaData resultMetaData)
+            throws SQLException {
 
-        if (parameterType.equals(boolean.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getBoolean(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
-        } else if (parameterType.equals(int.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getInt(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
-        } else if (parameterType.equals(long.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getLong(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
+        int columnCount = resultMetaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        StringBuilder key = new StringBuilder(clazz.getName());
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = resultMetaData.getColumnLabel(i + 1);
+            key.append(':').append(labels[i]);
+        }
+
+        ObjectMapper<T> mapper = (ObjectMapper<T>) MAPPERS.get(key.toString());
+        if (mapper == null) {
+            mapper = createMapper(clazz, labels);
+            MAPPERS.put(key.toString(), mapper);
+        }
+        return mapper;
+    }
+
+    private static <T> ObjectMapper<T> createMapper(Class<T> clazz, String[] labels) {
+
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException error) {
+            throw new IllegalArgumentException(error);
+        }
+
+        List<ResultSetProcessor<T>> processors = new ArrayList<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().startsWith("set") && method.getParameterTypes().length == 1
+                    && !method.isAnnotationPresent(QueryIgnore.class)) {
+
+                String name = method.getName().substring(3);
+
+                // Check if column exists
+                int column = 0;
+                for (int i = 0; i < labels.length; i++) {
+                    if (name.equalsIgnoreCase(labels[i])) {
+                        column = i + 1;
+                        break;
                     }
                 }
-            });
-        } else if (parameterType.equals(double.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getDouble(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
+                if (column == 0) {
+                    continue;
                 }
-            });
-        } else if (parameterType.equals(String.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getString(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
+
+                try {
+                    processors.add(createProcessor(method, column));
+                } catch (IllegalAccessException error) {
+                    LOGGER.warn("Set property error", error);
                 }
-            });
+            }
+        }
+
+        return new ObjectMapper<>(constructor, processors);
+    }
+
+    private static <T> ResultSetProcessor<T> createProcessor(Method method, final int column)
+            throws IllegalAccessException {
+
+        final Class<?> parameterType = method.getParameterTypes()[0];
+        MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+        if (parameterType.isPrimitive()) {
+            final MethodHandle setter = handle.asType(
+                    MethodType.methodType(void.class, Object.class, parameterType));
+            if (parameterType.equals(boolean.class)) {
+                return (object, resultSet) -> {
+                    setter.invokeExact((Object) object, resultSet.getBoolean(column));
+                };
+            } else if (parameterType.equals(int.class)) {
+                return (object, resultSet) -> {
+                    setter.invokeExact((Object) object, resultSet.getInt(column));
+                };
+            } else if (parameterType.equals(long.class)) {
+                return (object, resultSet) -> {
+                    setter.invokeExact((Object) object, resultSet.getLong(column));
+                };
+            } else if (parameterType.equals(double.class)) {
+                return (object, resultSet) -> {
+                    setter.invokeExact((Object) object, resultSet.getDouble(column));
+                };
+            }
+        }
+        final MethodHandle setter = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        if (parameterType.equals(String.class)) {
+            return (object, resultSet) -> {
+                setter.invokeExact((Object) object, (Object) resultSet.getString(column));
+            };
         } else if (parameterType.equals(Date.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        Timestamp timestamp = resultSet.getTimestamp(name);
-                        if (timestamp != null) {
-                            method.invoke(object, new Date(timestamp.getTime()));
-                        }
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
+            return (object, resultSet) -> {
+                Timestamp timestamp = resultSet.getTimestamp(column);
+                if (timestamp != null) {
+                    setter.invokeExact((Object) object, (Object) new Date(timestamp.getTime()));
                 }
-            });
+            };
         } else if (parameterType.equals(byte[].class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getBytes(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
+            return (object, resultSet) -> {
+                setter.invokeExact((Object) object, (Object) resultSet.getBytes(column));
+            };
+        } else if (parameterType.equals(Map.class)) {
+            return (object, resultSet) -> {
+                String value = resultSet.getString(column);
+                if (AttributesCodec.isEncodedText(value)) {
+                    setter.invokeExact((Object) object, (Object) AttributesCodec.decodeText(value));
+                } else if (value != null && !value.isEmpty()) {
+                    setter.invokeExact(
+                            (Object) object, (Object) Context.getObjectMapper().readValue(value, parameterType));
                 }
-            });
+            };
         } else {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    String value = resultSet.getString(name);
-                    if (value != null && !value.isEmpty()) {
-                        try {
-                            method.invoke(object, Context.getObjectMapper().readValue(value, parameterType));
-                        } catch (InvocationTargetException | IllegalAccessException | IOException error) {
-                            LOGGER.warn("Set property error", error);
-                        }
-                    }
+            return (object, resultSet) -> {
+                String value = resultSet.getString(column);
+                if (value != null && !value.isEmpty()) {
+                    setter.invokeExact(
+                            (Object) object, (Object) Context.getObjectMapper().readValue(value, parameterType));
                 }
-            });
+            };
         }
     }
 
     public <T> Collection<T> executeQuery(Class<T> clazz) throws SQLException {
-        List<T> result = new LinkedList<>();
+        List<T> result = new ArrayList<>();
 
         if (query != null) {
 
@@ -423,45 +511,47 @@ public final class QueryBuilder {
 
                 try (ResultSet resultSet = statement.executeQuery()) {
 
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
+                    ObjectMapper<T> mapper = getMapper(clazz, resultSet.getMetaData());
 
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
+                    while (resultSet.next()) {
+                        result.add(readObject(mapper, resultSet));
+                    }
+                }
 
-                    Method[] methods = clazz.getMethods();
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
 
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1
-                                && !method.isAnnotationPresent(QueryIgnore.class)) {
+        return result;
+    }
 
-                            final String name = method.getName().substring(3);
+    /**
+     * Read query results one by one without collecting them in memory. Results are fetched from the database in
+     * chunks of the given size, so the driver can use a server-side cursor instead of loading the whole result set.
+     */
+    public <T> void executeQueryStreamed(Class<T> clazz, int fetchSize, Consumer<T> consumer) throws SQLException {
 
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
+        if (query != null) {
 
-                            addProcessors(processors, method.getParameterTypes()[0], method, name);
-                        }
-                    }
+            try {
 
-                    while (resultSet.next()) {
-                        try {
-                            T object = clazz.newInstance();
-                            for (ResultSetProcessor<T> processor : processors) {
-                                processor.process(object, resultSet);
-                            }
-                            result.add(object);
-                        } catch (InstantiationException | IllegalAccessException e) {
-                            throw new IllegalArgumentException();
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    statement.setFetchSize(fetchSize);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+
+                        ObjectMapper<T> mapper = getMapper(clazz, resultSet.getMetaData());
+
+                        while (resultSet.next()) {
+                            consumer.accept(readObject(mapper, resultSet));
                         }
                     }
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(autoCommit);
                 }
 
             } finally {
@@ -469,8 +559,25 @@ public final class QueryBuilder {
                 connection.close();
             }
         }
+    }
 
-        return result;
+    private static <T> T readObject(ObjectMapper<T> mapper, ResultSet resultSet) throws SQLException {
+        T object;
+        try {
+            object = (T) (Object) mapper.constructor.invokeExact();
+        } catch (Throwable error) {
+            throw new IllegalArgumentException(error);
+        }
+        for (ResultSetProcessor<T> processor : mapper.processors) {
+            try {
+                processor.process(object, resultSet);
+            } catch (SQLException error) {
+                throw error;
+            } catch (Throwable error) {
+                LOGGER.warn("Set property error", error);
+            }
+        }
+        return object;
     }
 
     public long executeUpdate() throws SQLException {
@@ -483,6 +590,8 @@ public final class QueryBuilder {
                     if (resultSet.next()) {
                         return resultSet.getLong(1);
                     }
+                } else {
+                    return Math.max(statement.getUpdateCount(), 0);
                 }
             } finally {
                 statement.close();
@@ -492,6 +601,51 @@ public final class QueryBuilder {
         return 0;
     }
 
+    public QueryBuilder addBatch() throws SQLException {
+        if (query != null) {
+            try {
+                statement.addBatch();
+            } catch (SQLException error) {
+                statement.close();
+                connection.close();
+                throw error;
+            }
+        }
+        return this;
+    }
+
+    public long[] executeBatch() throws SQLException {
+
+        if (query != null) {
+            try {
+                connection.setAutoCommit(false);
+                try {
+                    int[] counts = statement.executeBatch();
+                    long[] keys = new long[counts.length];
+                    int index = 0;
+                    if (returnGeneratedKeys) {
+                        try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                            while (index < keys.length && resultSet.next()) {
+                                keys[index++] = resultSet.getLong(1);
+                            }
+                        }
+                    }
+                    connection.commit();
+                    return index < keys.length ? Arrays.copyOf(keys, index) : keys;
+                } catch (SQLException error) {
+                    connection.rollback();
+                    throw error;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
+        return new long[0];
+    }
+
     public Collection<Permission> executePermissionsQuery() throws SQLException, ClassNotFoundException {
         List<Permission> result = new LinkedList<>();
         if (query != null) {
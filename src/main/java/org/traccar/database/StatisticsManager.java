@@ -20,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.helper.DateUtil;
+import org.traccar.helper.LatencyHistogram;
 import org.traccar.model.Statistics;
 
 import javax.inject.Inject;
@@ -29,9 +30,14 @@ import javax.ws.rs.core.Form;
 import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class StatisticsManager {
 
@@ -43,18 +49,34 @@ public class StatisticsManager {
     private final DataManager dataManager;
     private final Client client;
 
-    private AtomicInteger lastUpdate = new AtomicInteger(Calendar.getInstance().get(SPLIT_MODE));
+    private final AtomicLong nextSplit = new AtomicLong(getNextSplit());
 
-    private Set<Long> users = new HashSet<>();
-    private Set<Long> devices = new HashSet<>();
+    private final Set<Long> users = ConcurrentHashMap.newKeySet();
+    private final Set<Long> devices = ConcurrentHashMap.newKeySet();
 
-    private int requests;
-    private int messagesReceived;
-    private int messagesStored;
-    private int mailSent;
-    private int smsSent;
-    private int geocoderRequests;
-    private int geolocationRequests;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder messagesStored = new LongAdder();
+    private final LongAdder mailSent = new LongAdder();
+    private final LongAdder smsSent = new LongAdder();
+    private final LongAdder geocoderRequests = new LongAdder();
+    private final LongAdder geolocationRequests = new LongAdder();
+
+    private final AtomicInteger storageQueueSize = new AtomicInteger();
+    private final LatencyHistogram storageFlushTime = new LatencyHistogram();
+
+    private final LongAdder geocoderCacheHits = new LongAdder();
+    private final LongAdder geocoderCacheMisses = new LongAdder();
+    private final LongAdder geocoderCacheEvictions = new LongAdder();
+
+    private final AtomicInteger forwardInFlight = new AtomicInteger();
+    private final LongAdder forwardRetries = new LongAdder();
+    private final LongAdder forwardDrops = new LongAdder();
+
+    private final Map<String, LongAdder> protocolMessages = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> protocolDecodeTime = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> handlerTime = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> reportTime = new ConcurrentHashMap<>();
 
     @Inject
     public StatisticsManager(Config config, DataManager dataManager, Client client) {
@@ -63,20 +85,36 @@ public class StatisticsManager {
         this.client = client;
     }
 
+    private static int toInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    private static long getNextSplit() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(SPLIT_MODE, 1);
+        return calendar.getTimeInMillis();
+    }
+
     private void checkSplit() {
-        int currentUpdate = Calendar.getInstance().get(SPLIT_MODE);
-        if (lastUpdate.getAndSet(currentUpdate) != currentUpdate) {
+        long currentSplit = nextSplit.get();
+        if (System.currentTimeMillis() >= currentSplit && nextSplit.compareAndSet(currentSplit, getNextSplit())) {
             Statistics statistics = new Statistics();
             statistics.setCaptureTime(new Date());
             statistics.setActiveUsers(users.size());
             statistics.setActiveDevices(devices.size());
-            statistics.setRequests(requests);
-            statistics.setMessagesReceived(messagesReceived);
-            statistics.setMessagesStored(messagesStored);
-            statistics.setMailSent(mailSent);
-            statistics.setSmsSent(smsSent);
-            statistics.setGeocoderRequests(geocoderRequests);
-            statistics.setGeolocationRequests(geolocationRequests);
+            users.clear();
+            devices.clear();
+            statistics.setRequests(toInt(requests.sumThenReset()));
+            statistics.setMessagesReceived(toInt(messagesReceived.sumThenReset()));
+            statistics.setMessagesStored(toInt(messagesStored.sumThenReset()));
+            statistics.setMailSent(toInt(mailSent.sumThenReset()));
+            statistics.setSmsSent(toInt(smsSent.sumThenReset()));
+            statistics.setGeocoderRequests(toInt(geocoderRequests.sumThenReset()));
+            statistics.setGeolocationRequests(toInt(geolocationRequests.sumThenReset()));
 
             try {
                 dataManager.addObject(statistics);
@@ -103,58 +141,171 @@ public class StatisticsManager {
 
                 client.target(url).request().async().post(Entity.form(form));
             }
+        }
+    }
 
-            users.clear();
-            devices.clear();
-            requests = 0;
-            messagesReceived = 0;
-            messagesStored = 0;
-            mailSent = 0;
-            smsSent = 0;
-            geocoderRequests = 0;
-            geolocationRequests = 0;
+    /**
+     * Current values since the last daily snapshot, with detailed counters in attributes.
+     */
+    public Statistics getLiveStatistics() {
+        Statistics statistics = new Statistics();
+        statistics.setCaptureTime(new Date());
+        statistics.setActiveUsers(users.size());
+        statistics.setActiveDevices(devices.size());
+        statistics.setRequests(toInt(requests.sum()));
+        statistics.setMessagesReceived(toInt(messagesReceived.sum()));
+        statistics.setMessagesStored(toInt(messagesStored.sum()));
+        statistics.setMailSent(toInt(mailSent.sum()));
+        statistics.setSmsSent(toInt(smsSent.sum()));
+        statistics.setGeocoderRequests(toInt(geocoderRequests.sum()));
+        statistics.setGeolocationRequests(toInt(geolocationRequests.sum()));
+
+        Map<String, Object> protocols = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : protocolMessages.entrySet()) {
+            Map<String, Object> protocol = new TreeMap<>();
+            protocol.put("messages", entry.getValue().sum());
+            LatencyHistogram decodeTime = protocolDecodeTime.get(entry.getKey());
+            if (decodeTime != null) {
+                protocol.put("decodeTime", decodeTime.toMap());
+            }
+            protocols.put(entry.getKey(), protocol);
+        }
+        statistics.getAttributes().put("protocols", protocols);
+
+        Map<String, Object> handlers = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : handlerTime.entrySet()) {
+            handlers.put(entry.getKey(), entry.getValue().toMap());
         }
+        statistics.getAttributes().put("handlers", handlers);
+
+        Map<String, Object> reports = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : reportTime.entrySet()) {
+            reports.put(entry.getKey(), entry.getValue().toMap());
+        }
+        statistics.getAttributes().put("reports", reports);
+
+        statistics.set("storageQueueSize", getStorageQueueSize());
+        statistics.getAttributes().put("storageFlushTime", storageFlushTime.toMap());
+        statistics.set("geocoderCacheHits", getGeocoderCacheHits());
+        statistics.set("geocoderCacheMisses", getGeocoderCacheMisses());
+        statistics.set("geocoderCacheEvictions", getGeocoderCacheEvictions());
+        statistics.set("forwardInFlight", getForwardInFlight());
+        statistics.set("forwardRetries", getForwardRetries());
+        statistics.set("forwardDrops", getForwardDrops());
+        return statistics;
     }
 
-    public synchronized void registerRequest(long userId) {
+    public void registerRequest(long userId) {
         checkSplit();
-        requests += 1;
+        requests.increment();
         if (userId != 0) {
             users.add(userId);
         }
     }
 
-    public synchronized void registerMessageReceived() {
+    public void registerMessageReceived(String protocol) {
         checkSplit();
-        messagesReceived += 1;
+        messagesReceived.increment();
+        if (protocol != null) {
+            protocolMessages.computeIfAbsent(protocol, key -> new LongAdder()).increment();
+        }
+    }
+
+    public void registerDecodeTime(String protocol, long nanos) {
+        protocolDecodeTime.computeIfAbsent(protocol, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void registerHandlerTime(String handler, long nanos) {
+        handlerTime.computeIfAbsent(handler, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void registerReportTime(String report, long nanos) {
+        reportTime.computeIfAbsent(report, key -> new LatencyHistogram()).record(nanos);
     }
 
-    public synchronized void registerMessageStored(long deviceId) {
+    public void registerMessageStored(long deviceId) {
         checkSplit();
-        messagesStored += 1;
+        messagesStored.increment();
         if (deviceId != 0) {
             devices.add(deviceId);
         }
     }
 
-    public synchronized void registerMail() {
+    public void registerMail() {
         checkSplit();
-        mailSent += 1;
+        mailSent.increment();
     }
 
-    public synchronized void registerSms() {
+    public void registerSms() {
         checkSplit();
-        smsSent += 1;
+        smsSent.increment();
     }
 
-    public synchronized void registerGeocoderRequest() {
+    public void registerGeocoderRequest() {
         checkSplit();
-        geocoderRequests += 1;
+        geocoderRequests.increment();
     }
 
-    public synchronized void registerGeolocationRequest() {
+    public void registerGeolocationRequest() {
         checkSplit();
-        geolocationRequests += 1;
+        geolocationRequests.increment();
+    }
+
+    public void registerGeocoderCacheHit() {
+        geocoderCacheHits.increment();
+    }
+
+    public void registerGeocoderCacheMiss() {
+        geocoderCacheMisses.increment();
+    }
+
+    public void registerGeocoderCacheEviction() {
+        geocoderCacheEvictions.increment();
+    }
+
+    public long getGeocoderCacheHits() {
+        return geocoderCacheHits.sum();
+    }
+
+    public long getGeocoderCacheMisses() {
+        return geocoderCacheMisses.sum();
+    }
+
+    public long getGeocoderCacheEvictions() {
+        return geocoderCacheEvictions.sum();
+    }
+
+    public void registerStorageFlush(int queueSize, long flushTime) {
+        storageQueueSize.set(queueSize);
+        storageFlushTime.record(TimeUnit.MILLISECONDS.toNanos(flushTime));
+    }
+
+    public int getStorageQueueSize() {
+        return storageQueueSize.get();
+    }
+
+    public void registerForwardInFlight(int inFlight) {
+        forwardInFlight.set(inFlight);
+    }
+
+    public void registerForwardRetry() {
+        forwardRetries.increment();
+    }
+
+    public void registerForwardDrop() {
+        forwardDrops.increment();
+    }
+
+    public int getForwardInFlight() {
+        return forwardInFlight.get();
+    }
+
+    public long getForwardRetries() {
+        return forwardRetries.sum();
+    }
+
+    public long getForwardDrops() {
+        return forwardDrops.sum();
     }
 
 }
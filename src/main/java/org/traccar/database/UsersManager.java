@@ -21,14 +21,19 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.traccar.Context;
+import org.traccar.config.Keys;
 import org.traccar.model.User;
 
 public class UsersManager extends SimpleObjectManager<User> {
 
     private Map<String, User> usersTokens;
+    private LoginCache loginCache;
 
     public UsersManager(DataManager dataManager) {
         super(dataManager, User.class);
+        loginCache = new LoginCache(Context.getConfig() != null
+                ? Context.getConfig().getLong(Keys.WEB_LOGIN_CACHE_TIMEOUT, 60000) : 0);
         if (usersTokens == null) {
             usersTokens = new ConcurrentHashMap<>();
         }
@@ -53,6 +58,9 @@ public class UsersManager extends SimpleObjectManager<User> {
     protected void updateCachedItem(User user) {
         User cachedUser = getById(user.getId());
         super.updateCachedItem(user);
+        if (loginCache != null) {
+            loginCache.invalidate(user.getId());
+        }
         putToken(user);
         if (cachedUser.getToken() != null && !cachedUser.getToken().equals(user.getToken())) {
             usersTokens.remove(cachedUser.getToken());
@@ -65,6 +73,9 @@ public class UsersManager extends SimpleObjectManager<User> {
         if (cachedUser != null) {
             String userToken = cachedUser.getToken();
             super.removeCachedItem(userId);
+            if (loginCache != null) {
+                loginCache.invalidate(userId);
+            }
             if (userToken != null) {
                 usersTokens.remove(userToken);
             }
@@ -79,6 +90,10 @@ public class UsersManager extends SimpleObjectManager<User> {
         return result;
     }
 
+    public LoginCache getLoginCache() {
+        return loginCache;
+    }
+
     public User getUserByToken(String token) {
         return usersTokens.get(token);
     }
@@ -20,8 +20,8 @@ import javax.json.JsonObject;
 
 public class FactualGeocoder extends JsonGeocoder {
 
-    public FactualGeocoder(String url, String key, int cacheSize, AddressFormat addressFormat) {
-        super(url + "?latitude=%f&longitude=%f&KEY=" + key, cacheSize, addressFormat);
+    public FactualGeocoder(String url, String key, AddressFormat addressFormat) {
+        super(url + "?latitude=%f&longitude=%f&KEY=" + key, addressFormat);
     }
 
     @Override
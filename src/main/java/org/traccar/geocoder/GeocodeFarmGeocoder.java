@@ -30,8 +30,8 @@ public class GeocodeFarmGeocoder extends JsonGeocoder {
         }
         return url;
     }
-    public GeocodeFarmGeocoder(String key, String language, int cacheSize, AddressFormat addressFormat) {
-        super(formatUrl(key, language), cacheSize, addressFormat);
+    public GeocodeFarmGeocoder(String key, String language, AddressFormat addressFormat) {
+        super(formatUrl(key, language), addressFormat);
     }
 
     @Override
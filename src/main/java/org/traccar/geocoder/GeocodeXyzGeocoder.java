@@ -27,8 +27,8 @@ public class GeocodeXyzGeocoder extends JsonGeocoder {
         return url;
     }
 
-    public GeocodeXyzGeocoder(String key, int cacheSize, AddressFormat addressFormat) {
-        super(formatUrl(key), cacheSize, addressFormat);
+    public GeocodeXyzGeocoder(String key, AddressFormat addressFormat) {
+        super(formatUrl(key), addressFormat);
     }
 
     @Override
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geocoder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.database.StatisticsManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reverse geocoding cache keyed by coordinates rounded to a fixed number of decimal places. Entries are split between
+ * independently locked LRU segments. If a file is provided, new entries are appended to it and loaded back on startup.
+ * File is written and compacted by a separate thread, so lookups and inserts never wait for disk. If the write queue is
+ * full, the entry is only persisted by the next compaction.
+ */
+public class GeocoderCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeocoderCache.class);
+
+    public static final int DEFAULT_PRECISION = 4;
+
+    private static final int SEGMENTS = 16;
+
+    private static final long STOP_TIMEOUT = 10000;
+    private static final int WRITE_QUEUE_SIZE = 10000;
+    private static final int BATCH_SIZE = 100;
+
+    private final class Segment extends LinkedHashMap<Long, String> {
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            if (size() > capacity) {
+                if (statisticsManager != null) {
+                    statisticsManager.registerGeocoderCacheEviction();
+                }
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    private final double scale;
+    private final long columns;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final StatisticsManager statisticsManager;
+
+    private final int capacity;
+    private final File file;
+    private final BlockingQueue<Map.Entry<Long, String>> writeQueue;
+    private final Thread writer;
+
+    private DataOutputStream output;
+    private int appended;
+
+    public GeocoderCache(int size, int precision) {
+        this(size, precision, null, null);
+    }
+
+    public GeocoderCache(int size, int precision, String file, StatisticsManager statisticsManager) {
+        this.scale = Math.pow(10, Math.max(Math.min(precision, 6), 0));
+        this.columns = Math.round(360 * scale) + 1;
+        this.statisticsManager = statisticsManager;
+        this.capacity = size;
+        int segmentCapacity = Math.max((size + SEGMENTS - 1) / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.file = file != null ? new File(file) : null;
+        if (this.file != null) {
+            load();
+            writeQueue = new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE);
+            writer = new Thread(this::run, "geocoder-cache");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writeQueue = null;
+            writer = null;
+        }
+    }
+
+    public long getKey(double latitude, double longitude) {
+        long row = Math.round((latitude + 90) * scale);
+        long column = Math.round((longitude + 180) * scale);
+        return row * columns + column;
+    }
+
+    private Segment getSegment(long key) {
+        return segments[(int) ((key ^ (key >>> 32)) & (SEGMENTS - 1))];
+    }
+
+    public String get(double latitude, double longitude) {
+        long key = getKey(latitude, longitude);
+        Segment segment = getSegment(key);
+        String address;
+        synchronized (segment) {
+            address = segment.get(key);
+        }
+        if (statisticsManager != null) {
+            if (address != null) {
+                statisticsManager.registerGeocoderCacheHit();
+            } else {
+                statisticsManager.registerGeocoderCacheMiss();
+            }
+        }
+        return address;
+    }
+
+    public void put(double latitude, double longitude, String address) {
+        long key = getKey(latitude, longitude);
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            segment.put(key, address);
+        }
+        if (writeQueue != null) {
+            writeQueue.offer(new AbstractMap.SimpleImmutableEntry<>(key, address));
+        }
+    }
+
+    private void write(List<Map.Entry<Long, String>> entries) {
+        if (output == null) {
+            return;
+        }
+        try {
+            for (Map.Entry<Long, String> entry : entries) {
+                output.writeLong(entry.getKey());
+                output.writeUTF(entry.getValue());
+            }
+            output.flush();
+        } catch (IOException error) {
+            LOGGER.warn("Geocoder cache write error", error);
+            closeOutput();
+            return;
+        }
+        appended += entries.size();
+        if (appended > capacity) {
+            compact();
+        }
+    }
+
+    private void run() {
+        compact();
+        List<Map.Entry<Long, String>> entries = new ArrayList<>();
+        while (true) {
+            try {
+                entries.add(writeQueue.take());
+            } catch (InterruptedException error) {
+                break;
+            }
+            writeQueue.drainTo(entries, BATCH_SIZE - 1);
+            write(entries);
+            entries.clear();
+        }
+        writeQueue.drainTo(entries);
+        write(entries);
+        if (output != null) {
+            closeOutput();
+        }
+    }
+
+    private void closeOutput() {
+        try {
+            output.close();
+        } catch (IOException error) {
+            LOGGER.warn("Geocoder cache close error", error);
+        }
+        output = null;
+    }
+
+    private void load() {
+        if (file.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    long key = input.readLong();
+                    String address = input.readUTF();
+                    getSegment(key).put(key, address);
+                }
+            } catch (EOFException error) {
+                LOGGER.debug("Geocoder cache loaded");
+            } catch (IOException error) {
+                LOGGER.warn("Geocoder cache read error", error);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the file with current cache content only, dropping evicted and overwritten entries. Also persists
+     * entries that didn't fit into the write queue.
+     */
+    private void compact() {
+        if (output != null) {
+            closeOutput();
+        }
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream compacted = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            for (Segment segment : segments) {
+                List<Map.Entry<Long, String>> entries;
+                synchronized (segment) {
+                    entries = new ArrayList<>(segment.entrySet());
+                }
+                for (Map.Entry<Long, String> entry : entries) {
+                    compacted.writeLong(entry.getKey());
+                    compacted.writeUTF(entry.getValue());
+                }
+            }
+        } catch (IOException error) {
+            LOGGER.warn("Geocoder cache compaction error", error);
+            return;
+        }
+
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            appended = 0;
+        } catch (IOException error) {
+            LOGGER.warn("Geocoder cache open error", error);
+        }
+    }
+
+    /**
+     * Write queued entries and close the file.
+     */
+    public void close() {
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join(STOP_TIMEOUT);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
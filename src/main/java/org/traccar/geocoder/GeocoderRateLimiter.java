@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geocoder;
+
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.traccar.GlobalTimer;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting rate of provider requests. Requests that can't be sent immediately wait in a bounded queue
+ * and are released by the global timer when tokens become available.
+ */
+public class GeocoderRateLimiter implements TimerTask {
+
+    private final double tokensPerMillisecond;
+    private final double capacity;
+    private final int queueSize;
+
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+
+    private double tokens;
+    private long lastRefill;
+    private Timeout timeout;
+
+    public GeocoderRateLimiter(double requestsPerSecond, int queueSize) {
+        this.tokensPerMillisecond = requestsPerSecond / 1000;
+        this.capacity = Math.max(requestsPerSecond, 1);
+        this.queueSize = queueSize;
+        this.tokens = capacity;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    private void refill() {
+        long currentTime = System.currentTimeMillis();
+        tokens = Math.min(capacity, tokens + (currentTime - lastRefill) * tokensPerMillisecond);
+        lastRefill = currentTime;
+    }
+
+    private long getDelay() {
+        return (long) Math.ceil((1 - tokens) / tokensPerMillisecond);
+    }
+
+    /**
+     * Run task now or after a delay. Returns false if the wait queue is full and task is rejected.
+     */
+    public boolean submit(Runnable task) {
+        synchronized (this) {
+            refill();
+            if (!queue.isEmpty() || tokens < 1) {
+                if (queue.size() >= queueSize) {
+                    return false;
+                }
+                queue.add(task);
+                if (timeout == null) {
+                    timeout = GlobalTimer.getTimer().newTimeout(this, getDelay(), TimeUnit.MILLISECONDS);
+                }
+                return true;
+            }
+            tokens -= 1;
+        }
+        task.run();
+        return true;
+    }
+
+    /**
+     * Wait for a token, used for synchronous requests.
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long delay;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                delay = getDelay();
+            }
+            Thread.sleep(delay);
+        }
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                refill();
+                if (queue.isEmpty()) {
+                    this.timeout = null;
+                    return;
+                }
+                if (tokens < 1) {
+                    this.timeout = GlobalTimer.getTimer().newTimeout(this, getDelay(), TimeUnit.MILLISECONDS);
+                    return;
+                }
+                tokens -= 1;
+                task = queue.poll();
+            }
+            task.run();
+        }
+    }
+
+}
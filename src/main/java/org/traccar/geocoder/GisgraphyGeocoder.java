@@ -20,11 +20,11 @@ import javax.json.JsonObject;
 public class GisgraphyGeocoder extends JsonGeocoder {
 
     public GisgraphyGeocoder(AddressFormat addressFormat) {
-        this("http://services.gisgraphy.com/reversegeocoding/search", 0, addressFormat);
+        this("http://services.gisgraphy.com/reversegeocoding/search", addressFormat);
     }
 
-    public GisgraphyGeocoder(String url, int cacheSize, AddressFormat addressFormat) {
-        super(url + "?format=json&lat=%f&lng=%f&from=1&to=1", cacheSize, addressFormat);
+    public GisgraphyGeocoder(String url, AddressFormat addressFormat) {
+        super(url + "?format=json&lat=%f&lng=%f&from=1&to=1", addressFormat);
     }
 
     @Override
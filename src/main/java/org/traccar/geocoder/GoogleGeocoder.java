@@ -32,8 +32,8 @@ public class GoogleGeocoder extends JsonGeocoder {
         return url;
     }
 
-    public GoogleGeocoder(String key, String language, int cacheSize, AddressFormat addressFormat) {
-        super(formatUrl(key, language), cacheSize, addressFormat);
+    public GoogleGeocoder(String key, String language, AddressFormat addressFormat) {
+        super(formatUrl(key, language), addressFormat);
     }
 
     @Override
@@ -31,8 +31,8 @@ public class HereGeocoder extends JsonGeocoder {
         return url;
     }
 
-    public HereGeocoder(String id, String key, String language, int cacheSize, AddressFormat addressFormat) {
-        super(formatUrl(id, key, language), cacheSize, addressFormat);
+    public HereGeocoder(String id, String key, String language, AddressFormat addressFormat) {
+        super(formatUrl(id, key, language), addressFormat);
     }
 
     @Override
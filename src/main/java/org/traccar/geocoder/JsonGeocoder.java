@@ -24,8 +24,9 @@ import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.InvocationCallback;
 import java.util.AbstractMap;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public abstract class JsonGeocoder implements Geocoder {
@@ -35,19 +36,22 @@ public abstract class JsonGeocoder implements Geocoder {
     private final String url;
     private final AddressFormat addressFormat;
 
-    private Map<Map.Entry<Double, Double>, String> cache;
+    private GeocoderCache cache;
+    private GeocoderRateLimiter rateLimiter;
 
-    public JsonGeocoder(String url, final int cacheSize, AddressFormat addressFormat) {
+    private final Map<Object, List<ReverseGeocoderCallback>> pendingRequests = new HashMap<>();
+
+    public JsonGeocoder(String url, AddressFormat addressFormat) {
         this.url = url;
         this.addressFormat = addressFormat;
-        if (cacheSize > 0) {
-            this.cache = Collections.synchronizedMap(new LinkedHashMap<Map.Entry<Double, Double>, String>() {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry eldest) {
-                    return size() > cacheSize;
-                }
-            });
-        }
+    }
+
+    public void setCache(GeocoderCache cache) {
+        this.cache = cache;
+    }
+
+    public void setRateLimiter(GeocoderRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
     }
 
     private String handleResponse(
@@ -57,7 +61,7 @@ public abstract class JsonGeocoder implements Geocoder {
         if (address != null) {
             String formattedAddress = addressFormat.format(address);
             if (cache != null) {
-                cache.put(new AbstractMap.SimpleImmutableEntry<>(latitude, longitude), formattedAddress);
+                cache.put(latitude, longitude, formattedAddress);
             }
             if (callback != null) {
                 callback.onSuccess(formattedAddress);
@@ -79,7 +83,7 @@ public abstract class JsonGeocoder implements Geocoder {
             final double latitude, final double longitude, final ReverseGeocoderCallback callback) {
 
         if (cache != null) {
-            String cachedAddress = cache.get(new AbstractMap.SimpleImmutableEntry<>(latitude, longitude));
+            String cachedAddress = cache.get(latitude, longitude);
             if (cachedAddress != null) {
                 if (callback != null) {
                     callback.onSuccess(cachedAddress);
@@ -91,27 +95,101 @@ public abstract class JsonGeocoder implements Geocoder {
         Invocation.Builder request = Context.getClient().target(String.format(url, latitude, longitude)).request();
 
         if (callback != null) {
-            request.async().get(new InvocationCallback<JsonObject>() {
+            final Object key = cache != null
+                    ? cache.getKey(latitude, longitude) : new AbstractMap.SimpleImmutableEntry<>(latitude, longitude);
+            synchronized (pendingRequests) {
+                List<ReverseGeocoderCallback> callbacks = pendingRequests.get(key);
+                if (callbacks != null) {
+                    callbacks.add(callback);
+                    return null;
+                }
+                callbacks = new ArrayList<>();
+                callbacks.add(callback);
+                pendingRequests.put(key, callbacks);
+            }
+
+            final ReverseGeocoderCallback sharedCallback = new ReverseGeocoderCallback() {
                 @Override
-                public void completed(JsonObject json) {
-                    handleResponse(latitude, longitude, json, callback);
+                public void onSuccess(String address) {
+                    List<ReverseGeocoderCallback> callbacks = completeRequest(key);
+                    if (callbacks != null) {
+                        for (ReverseGeocoderCallback pendingCallback : callbacks) {
+                            try {
+                                pendingCallback.onSuccess(address);
+                            } catch (RuntimeException error) {
+                                LOGGER.warn("Geocoder callback error", error);
+                            }
+                        }
+                    }
                 }
 
                 @Override
-                public void failed(Throwable throwable) {
-                    callback.onFailure(throwable);
+                public void onFailure(Throwable e) {
+                    List<ReverseGeocoderCallback> callbacks = completeRequest(key);
+                    if (callbacks != null) {
+                        for (ReverseGeocoderCallback pendingCallback : callbacks) {
+                            try {
+                                pendingCallback.onFailure(e);
+                            } catch (RuntimeException error) {
+                                LOGGER.warn("Geocoder callback error", error);
+                            }
+                        }
+                    }
+                }
+            };
+
+            Runnable task = () -> {
+                try {
+                    request.async().get(new InvocationCallback<JsonObject>() {
+                        @Override
+                        public void completed(JsonObject json) {
+                            try {
+                                handleResponse(latitude, longitude, json, sharedCallback);
+                            } catch (Throwable error) {
+                                sharedCallback.onFailure(error);
+                            }
+                        }
+
+                        @Override
+                        public void failed(Throwable throwable) {
+                            sharedCallback.onFailure(throwable);
+                        }
+                    });
+                } catch (Throwable error) {
+                    sharedCallback.onFailure(error);
+                }
+            };
+
+            try {
+                if (rateLimiter == null) {
+                    task.run();
+                } else if (!rateLimiter.submit(task)) {
+                    sharedCallback.onFailure(new GeocoderException("Rate limit queue is full"));
                 }
-            });
+            } catch (RuntimeException error) {
+                sharedCallback.onFailure(error);
+            }
         } else {
             try {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
                 return handleResponse(latitude, longitude, request.get(JsonObject.class), null);
             } catch (ClientErrorException e) {
                 LOGGER.warn("Geocoder network error", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
         return null;
     }
 
+    private List<ReverseGeocoderCallback> completeRequest(Object key) {
+        synchronized (pendingRequests) {
+            return pendingRequests.remove(key);
+        }
+    }
+
     public abstract Address parseAddress(JsonObject json);
 
     protected String parseError(JsonObject json) {
@@ -21,8 +21,8 @@ import javax.json.JsonObject;
 
 public class MapQuestGeocoder extends JsonGeocoder {
 
-    public MapQuestGeocoder(String url, String key, int cacheSize, AddressFormat addressFormat) {
-        super(url + "?key=" + key + "&location=%f,%f", cacheSize, addressFormat);
+    public MapQuestGeocoder(String url, String key, AddressFormat addressFormat) {
+        super(url + "?key=" + key + "&location=%f,%f", addressFormat);
     }
 
     @Override
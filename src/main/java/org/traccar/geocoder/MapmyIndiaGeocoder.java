@@ -20,8 +20,8 @@ import javax.json.JsonObject;
 
 public class MapmyIndiaGeocoder extends JsonGeocoder {
 
-    public MapmyIndiaGeocoder(String url, String key, int cacheSize, AddressFormat addressFormat) {
-        super(url + "/" + key + "/rev_geocode?lat=%f&lng=%f", cacheSize, addressFormat);
+    public MapmyIndiaGeocoder(String url, String key, AddressFormat addressFormat) {
+        super(url + "/" + key + "/rev_geocode?lat=%f&lng=%f", addressFormat);
     }
 
     @Override
@@ -33,8 +33,8 @@ public class NominatimGeocoder extends JsonGeocoder {
         return url;
     }
 
-    public NominatimGeocoder(String url, String key, String language, int cacheSize, AddressFormat addressFormat) {
-        super(formatUrl(url, key, language), cacheSize, addressFormat);
+    public NominatimGeocoder(String url, String key, String language, AddressFormat addressFormat) {
+        super(formatUrl(url, key, language), addressFormat);
     }
 
     @Override
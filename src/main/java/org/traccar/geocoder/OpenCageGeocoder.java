@@ -21,8 +21,8 @@ import javax.json.JsonObject;
 
 public class OpenCageGeocoder extends JsonGeocoder {
 
-    public OpenCageGeocoder(String url, String key, int cacheSize, AddressFormat addressFormat) {
-        super(url + "/json?q=%f,%f&no_annotations=1&key=" + key, cacheSize, addressFormat);
+    public OpenCageGeocoder(String url, String key, AddressFormat addressFormat) {
+        super(url + "/json?q=%f,%f&no_annotations=1&key=" + key, addressFormat);
     }
 
     @Override
@@ -37,6 +37,14 @@ public class GeofenceCircle extends GeofenceGeometry {
         this.centerLatitude = latitude;
         this.centerLongitude = longitude;
         this.radius = radius;
+        updateBounds();
+    }
+
+    private void updateBounds() {
+        double latitudeDelta = DistanceCalculator.getLatitudeDelta(radius);
+        double longitudeDelta = DistanceCalculator.getLongitudeDelta(radius, centerLatitude);
+        setBounds(centerLatitude - latitudeDelta, centerLatitude + latitudeDelta,
+                centerLongitude - longitudeDelta, centerLongitude + longitudeDelta);
     }
 
     public double distanceFromCenter(double latitude, double longitude) {
@@ -94,5 +102,6 @@ public class GeofenceCircle extends GeofenceGeometry {
         } catch (NumberFormatException e) {
             throw new ParseException(commaTokens[1] + " is not a double", 0);
         }
+        updateBounds();
     }
 }
@@ -15,10 +15,75 @@
  */
 package org.traccar.geofence;
 
+import org.traccar.helper.DistanceCalculator;
+
 import java.text.ParseException;
 
 public abstract class GeofenceGeometry {
 
+    private double minLatitude = Double.NEGATIVE_INFINITY;
+    private double maxLatitude = Double.POSITIVE_INFINITY;
+    private double minLongitude = Double.NEGATIVE_INFINITY;
+    private double maxLongitude = Double.POSITIVE_INFINITY;
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * Set bounding box that includes all points of the geometry. Longitude range wrapping around the antimeridian is
+     * replaced by unlimited longitude range.
+     */
+    protected void setBounds(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        if (Double.isNaN(minLongitude) || Double.isNaN(maxLongitude) || minLongitude < -180 || maxLongitude > 180) {
+            this.minLongitude = Double.NEGATIVE_INFINITY;
+            this.maxLongitude = Double.POSITIVE_INFINITY;
+        } else {
+            this.minLongitude = minLongitude;
+            this.maxLongitude = maxLongitude;
+        }
+    }
+
+    protected void setBounds(Iterable<Coordinate> coordinates, double distance) {
+        double minLat = 90;
+        double maxLat = -90;
+        double minLon = 180;
+        double maxLon = -180;
+        for (Coordinate coordinate : coordinates) {
+            minLat = Math.min(minLat, coordinate.getLat());
+            maxLat = Math.max(maxLat, coordinate.getLat());
+            minLon = Math.min(minLon, coordinate.getLon());
+            maxLon = Math.max(maxLon, coordinate.getLon());
+        }
+        if (maxLon - minLon > 180) {
+            minLon = Double.NaN;
+            maxLon = Double.NaN;
+        }
+        double latitudeDelta = DistanceCalculator.getLatitudeDelta(distance);
+        double longitudeDelta = DistanceCalculator.getLongitudeDelta(
+                distance, Math.max(Math.abs(minLat - latitudeDelta), Math.abs(maxLat + latitudeDelta)));
+        setBounds(minLat - latitudeDelta, maxLat + latitudeDelta, minLon - longitudeDelta, maxLon + longitudeDelta);
+    }
+
+    public boolean boundsContain(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
     public abstract boolean containsPoint(double latitude, double longitude);
 
     public abstract String toWkt();
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uniform grid over geofence bounding boxes. Each geofence is registered in every cell its bounding box touches, so a
+ * lookup only needs a single cell. Geofences covering too many cells are kept in a separate list that is always
+ * checked by bounding box.
+ */
+public class GeofenceIndex {
+
+    public static final double DEFAULT_CELL_SIZE = 0.1;
+    public static final int DEFAULT_MAX_CELLS = 1024;
+
+    private final double cellSize;
+    private final int maxCells;
+    private final long columns;
+
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+    private final Map<Long, GeofenceGeometry> largeItems = new ConcurrentHashMap<>();
+    private final Map<Long, GeofenceGeometry> items = new ConcurrentHashMap<>();
+
+    public GeofenceIndex() {
+        this(DEFAULT_CELL_SIZE, DEFAULT_MAX_CELLS);
+    }
+
+    public GeofenceIndex(double cellSize, int maxCells) {
+        this.cellSize = cellSize;
+        this.maxCells = maxCells;
+        this.columns = (long) Math.ceil(360 / cellSize) + 1;
+    }
+
+    private long getRow(double latitude) {
+        return (long) Math.floor((Math.max(Math.min(latitude, 90), -90) + 90) / cellSize);
+    }
+
+    private long getColumn(double longitude) {
+        return (long) Math.floor((Math.max(Math.min(longitude, 180), -180) + 180) / cellSize);
+    }
+
+    private boolean isLarge(GeofenceGeometry geometry) {
+        long rows = getRow(geometry.getMaxLatitude()) - getRow(geometry.getMinLatitude()) + 1;
+        long columns = getColumn(geometry.getMaxLongitude()) - getColumn(geometry.getMinLongitude()) + 1;
+        return rows * columns > maxCells;
+    }
+
+    public synchronized void put(long id, GeofenceGeometry geometry) {
+        remove(id);
+        if (geometry == null) {
+            return;
+        }
+        items.put(id, geometry);
+        if (isLarge(geometry)) {
+            largeItems.put(id, geometry);
+        } else {
+            for (long row = getRow(geometry.getMinLatitude()); row <= getRow(geometry.getMaxLatitude()); row++) {
+                long minColumn = getColumn(geometry.getMinLongitude());
+                long maxColumn = getColumn(geometry.getMaxLongitude());
+                for (long column = minColumn; column <= maxColumn; column++) {
+                    cells.computeIfAbsent(row * columns + column, key -> ConcurrentHashMap.newKeySet()).add(id);
+                }
+            }
+        }
+    }
+
+    public synchronized void remove(long id) {
+        GeofenceGeometry geometry = items.remove(id);
+        if (geometry == null) {
+            return;
+        }
+        if (largeItems.remove(id) == null) {
+            for (long row = getRow(geometry.getMinLatitude()); row <= getRow(geometry.getMaxLatitude()); row++) {
+                long minColumn = getColumn(geometry.getMinLongitude());
+                long maxColumn = getColumn(geometry.getMaxLongitude());
+                for (long column = minColumn; column <= maxColumn; column++) {
+                    long key = row * columns + column;
+                    Set<Long> cell = cells.get(key);
+                    if (cell != null) {
+                        cell.remove(id);
+                        if (cell.isEmpty()) {
+                            cells.remove(key);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of geofences that have to be checked for given point.
+     */
+    public int getCandidateCount(double latitude, double longitude) {
+        Set<Long> cell = cells.get(getRow(latitude) * columns + getColumn(longitude));
+        return (cell != null ? cell.size() : 0) + largeItems.size();
+    }
+
+    /**
+     * Geofences with bounding box containing given point. Final check should be done with exact geometry.
+     */
+    public List<Long> getCandidates(double latitude, double longitude) {
+        Set<Long> cell = cells.get(getRow(latitude) * columns + getColumn(longitude));
+        if (cell == null && largeItems.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> result = new ArrayList<>();
+        if (cell != null) {
+            for (long id : cell) {
+                GeofenceGeometry geometry = items.get(id);
+                if (geometry != null && geometry.boundsContain(latitude, longitude)) {
+                    result.add(id);
+                }
+            }
+        }
+        for (Map.Entry<Long, GeofenceGeometry> entry : largeItems.entrySet()) {
+            if (entry.getValue().boundsContain(latitude, longitude)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,13 +27,33 @@ public class GeofencePolygon extends GeofenceGeometry {
         fromWkt(wkt);
     }
 
+    private static final int GRID_MIN_CORNERS = 32;
+    private static final int GRID_MAX_SIZE = 256;
+    private static final double GRID_MARGIN = 0.001;
+
+    private static final byte CELL_OUTSIDE = 0;
+    private static final byte CELL_INSIDE = 1;
+    private static final byte CELL_BOUNDARY = 2;
+
     private ArrayList<Coordinate> coordinates;
 
+    private double[] latitudes;
+    private double[] longitudes;
     private double[] constant;
     private double[] multiple;
 
     private boolean needNormalize = false;
 
+    private int gridSize;
+    private double gridMinLatitude;
+    private double gridMaxLatitude;
+    private double gridMinLongitude;
+    private double gridMaxLongitude;
+    private double gridCellLatitude;
+    private double gridCellLongitude;
+    private byte[] cells;
+    private int[][] columnEdges;
+
     private void precalc() {
         if (coordinates == null) {
             return;
@@ -43,16 +63,6 @@ public class GeofencePolygon extends GeofenceGeometry {
         int i;
         int j = polyCorners - 1;
 
-        if (constant != null) {
-            constant = null;
-        }
-        if (multiple != null) {
-            multiple = null;
-        }
-
-        constant = new double[polyCorners];
-        multiple = new double[polyCorners];
-
         boolean hasNegative = false;
         boolean hasPositive = false;
         for (i = 0; i < polyCorners; i++) {
@@ -63,21 +73,31 @@ public class GeofencePolygon extends GeofenceGeometry {
             }
         }
         needNormalize = hasPositive && hasNegative;
+        setBounds(coordinates, 0);
+
+        latitudes = new double[polyCorners];
+        longitudes = new double[polyCorners];
+        for (i = 0; i < polyCorners; i++) {
+            latitudes[i] = coordinates.get(i).getLat();
+            longitudes[i] = normalizeLon(coordinates.get(i).getLon());
+        }
+
+        constant = new double[polyCorners];
+        multiple = new double[polyCorners];
 
         for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(j).getLon()) == normalizeLon(coordinates.get(i).getLon())) {
-                constant[i] = coordinates.get(i).getLat();
+            if (longitudes[j] == longitudes[i]) {
+                constant[i] = latitudes[i];
                 multiple[i] = 0;
             } else {
-                constant[i] = coordinates.get(i).getLat()
-                        - (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(j).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()))
-                        + (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
-                multiple[i] = (coordinates.get(j).getLat() - coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
+                constant[i] = latitudes[i]
+                        - (longitudes[i] * latitudes[j]) / (longitudes[j] - longitudes[i])
+                        + (longitudes[i] * latitudes[i]) / (longitudes[j] - longitudes[i]);
+                multiple[i] = (latitudes[j] - latitudes[i]) / (longitudes[j] - longitudes[i]);
             }
         }
+
+        buildGrid();
     }
 
     private double normalizeLon(double lon) {
@@ -87,20 +107,160 @@ public class GeofencePolygon extends GeofenceGeometry {
         return lon;
     }
 
+    /**
+     * Split polygon bounding box into a uniform grid. Each grid column keeps a list of edges overlapping it, so the
+     * crossing test only needs edges from one column. Cells that no edge passes through are classified in advance as
+     * completely inside or outside.
+     */
+    private void buildGrid() {
+        int polyCorners = latitudes.length;
+        cells = null;
+        columnEdges = null;
+        if (polyCorners < GRID_MIN_CORNERS) {
+            return;
+        }
+
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < polyCorners; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+        if (maxLat <= minLat || maxLon <= minLon) {
+            return;
+        }
+
+        gridSize = Math.min((int) Math.ceil(Math.sqrt(polyCorners)) * 2, GRID_MAX_SIZE);
+        gridMinLatitude = minLat;
+        gridMaxLatitude = maxLat;
+        gridMinLongitude = minLon;
+        gridMaxLongitude = maxLon;
+        gridCellLatitude = (maxLat - minLat) / gridSize;
+        gridCellLongitude = (maxLon - minLon) / gridSize;
+
+        int[] columnCounts = new int[gridSize];
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            int first = getColumn(Math.min(longitudes[i], longitudes[j]));
+            int last = getColumn(Math.max(longitudes[i], longitudes[j]));
+            for (int column = first; column <= last; column++) {
+                columnCounts[column] += 1;
+            }
+        }
+        int[][] edges = new int[gridSize][];
+        for (int column = 0; column < gridSize; column++) {
+            edges[column] = new int[columnCounts[column]];
+            columnCounts[column] = 0;
+        }
+
+        byte[] grid = new byte[gridSize * gridSize];
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            int first = getColumn(Math.min(longitudes[i], longitudes[j]));
+            int last = getColumn(Math.max(longitudes[i], longitudes[j]));
+            for (int column = first; column <= last; column++) {
+                edges[column][columnCounts[column]++] = i;
+
+                double latitudeFrom;
+                double latitudeTo;
+                if (longitudes[i] == longitudes[j]) {
+                    latitudeFrom = latitudes[i];
+                    latitudeTo = latitudes[j];
+                } else {
+                    double columnMin = gridMinLongitude + column * gridCellLongitude;
+                    double columnMax = columnMin + gridCellLongitude;
+                    double lonFrom = Math.max(Math.min(longitudes[i], longitudes[j]), columnMin);
+                    double lonTo = Math.min(Math.max(longitudes[i], longitudes[j]), columnMax);
+                    latitudeFrom = interpolate(i, j, lonFrom);
+                    latitudeTo = interpolate(i, j, lonTo);
+                }
+                double margin = gridCellLatitude * GRID_MARGIN;
+                int firstRow = getRow(Math.min(latitudeFrom, latitudeTo) - margin);
+                int lastRow = getRow(Math.max(latitudeFrom, latitudeTo) + margin);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    grid[column * gridSize + row] = CELL_BOUNDARY;
+                }
+            }
+        }
+
+        for (int column = 0; column < gridSize; column++) {
+            double longitude = gridMinLongitude + (column + 0.5) * gridCellLongitude;
+            for (int row = 0; row < gridSize; row++) {
+                if (grid[column * gridSize + row] != CELL_BOUNDARY) {
+                    double latitude = gridMinLatitude + (row + 0.5) * gridCellLatitude;
+                    grid[column * gridSize + row] = containsPoint(edges[column], latitude, longitude)
+                            ? CELL_INSIDE : CELL_OUTSIDE;
+                }
+            }
+        }
+
+        cells = grid;
+        columnEdges = edges;
+    }
+
+    private double interpolate(int i, int j, double longitude) {
+        double ratio = (longitude - longitudes[i]) / (longitudes[j] - longitudes[i]);
+        return latitudes[i] + (latitudes[j] - latitudes[i]) * ratio;
+    }
+
+    private int getColumn(double longitude) {
+        int column = (int) ((longitude - gridMinLongitude) / gridCellLongitude);
+        return Math.max(Math.min(column, gridSize - 1), 0);
+    }
+
+    private int getRow(double latitude) {
+        int row = (int) ((latitude - gridMinLatitude) / gridCellLatitude);
+        return Math.max(Math.min(row, gridSize - 1), 0);
+    }
+
+    private boolean containsPoint(int[] edges, double latitude, double longitudeNorm) {
+        int polyCorners = latitudes.length;
+        boolean oddNodes = false;
+        for (int i : edges) {
+            int j = i > 0 ? i - 1 : polyCorners - 1;
+            if (longitudes[i] < longitudeNorm && longitudes[j] >= longitudeNorm
+                    || longitudes[j] < longitudeNorm && longitudes[i] >= longitudeNorm) {
+                oddNodes ^= longitudeNorm * multiple[i] + constant[i] < latitude;
+            }
+        }
+        return oddNodes;
+    }
+
     @Override
     public boolean containsPoint(double latitude, double longitude) {
 
-        int polyCorners = coordinates.size();
+        if (!boundsContain(latitude, longitude)) {
+            return false;
+        }
+
+        double longitudeNorm = normalizeLon(longitude);
+
+        if (cells != null) {
+            if (latitude < gridMinLatitude || latitude > gridMaxLatitude
+                    || longitudeNorm < gridMinLongitude || longitudeNorm > gridMaxLongitude) {
+                return false;
+            }
+            int column = getColumn(longitudeNorm);
+            switch (cells[column * gridSize + getRow(latitude)]) {
+                case CELL_INSIDE:
+                    return true;
+                case CELL_OUTSIDE:
+                    return false;
+                default:
+                    return containsPoint(columnEdges[column], latitude, longitudeNorm);
+            }
+        }
+
+        int polyCorners = latitudes.length;
         int i;
         int j = polyCorners - 1;
-        double longitudeNorm = normalizeLon(longitude);
         boolean oddNodes = false;
 
         for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(i).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(j).getLon()) >= longitudeNorm
-                    || normalizeLon(coordinates.get(j).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(i).getLon()) >= longitudeNorm) {
+            if (longitudes[i] < longitudeNorm && longitudes[j] >= longitudeNorm
+                    || longitudes[j] < longitudeNorm && longitudes[i] >= longitudeNorm) {
                 oddNodes ^= longitudeNorm * multiple[i] + constant[i] < latitude;
             }
         }
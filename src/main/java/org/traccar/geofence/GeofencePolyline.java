@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -23,23 +23,149 @@ import org.traccar.helper.DistanceCalculator;
 
 public class GeofencePolyline extends GeofenceGeometry {
 
+    private static final int GRID_MIN_SEGMENTS = 32;
+    private static final int GRID_MAX_SIZE = 256;
+
     private ArrayList<Coordinate> coordinates;
     private double distance;
 
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] segmentMinLatitudes;
+    private double[] segmentMaxLatitudes;
+    private double[] segmentMinLongitudes;
+    private double[] segmentMaxLongitudes;
+
+    private int gridSize;
+    private double gridCellLatitude;
+    private double gridCellLongitude;
+    private int[][] cells;
+
     public GeofencePolyline() {
     }
 
     public GeofencePolyline(String wkt, double distance) throws ParseException {
         fromWkt(wkt);
-        this.distance = distance;
+        setDistance(distance);
+    }
+
+    private void precalc() {
+        setBounds(coordinates, distance);
+
+        int count = coordinates.size();
+        latitudes = new double[count];
+        longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = coordinates.get(i).getLat();
+            longitudes[i] = coordinates.get(i).getLon();
+        }
+
+        double latitudeDelta = DistanceCalculator.getLatitudeDelta(distance);
+        double longitudeDelta = DistanceCalculator.getLongitudeDelta(
+                distance, Math.max(Math.abs(getMinLatitude()), Math.abs(getMaxLatitude())));
+        if (Double.isNaN(longitudeDelta)) {
+            longitudeDelta = Double.POSITIVE_INFINITY;
+        }
+
+        segmentMinLatitudes = new double[count];
+        segmentMaxLatitudes = new double[count];
+        segmentMinLongitudes = new double[count];
+        segmentMaxLongitudes = new double[count];
+        for (int i = 1; i < count; i++) {
+            segmentMinLatitudes[i] = Math.min(latitudes[i - 1], latitudes[i]) - latitudeDelta;
+            segmentMaxLatitudes[i] = Math.max(latitudes[i - 1], latitudes[i]) + latitudeDelta;
+            if (Math.abs(longitudes[i] - longitudes[i - 1]) > 180) {
+                segmentMinLongitudes[i] = Double.NEGATIVE_INFINITY;
+                segmentMaxLongitudes[i] = Double.POSITIVE_INFINITY;
+            } else {
+                segmentMinLongitudes[i] = Math.min(longitudes[i - 1], longitudes[i]) - longitudeDelta;
+                segmentMaxLongitudes[i] = Math.max(longitudes[i - 1], longitudes[i]) + longitudeDelta;
+            }
+        }
+
+        buildGrid();
+    }
+
+    /**
+     * Split bounding box into a uniform grid with a list of nearby segments for each cell, so only a few segments
+     * need exact distance calculation.
+     */
+    private void buildGrid() {
+        int segments = latitudes.length - 1;
+        cells = null;
+        if (segments < GRID_MIN_SEGMENTS || Double.isInfinite(getMinLongitude())
+                || getMaxLatitude() <= getMinLatitude() || getMaxLongitude() <= getMinLongitude()) {
+            return;
+        }
+
+        gridSize = Math.min((int) Math.ceil(Math.sqrt(segments)) * 2, GRID_MAX_SIZE);
+        gridCellLatitude = (getMaxLatitude() - getMinLatitude()) / gridSize;
+        gridCellLongitude = (getMaxLongitude() - getMinLongitude()) / gridSize;
+
+        int[] counts = new int[gridSize * gridSize];
+        for (int i = 1; i <= segments; i++) {
+            int maxColumn = getColumn(segmentMaxLongitudes[i]);
+            int maxRow = getRow(segmentMaxLatitudes[i]);
+            for (int column = getColumn(segmentMinLongitudes[i]); column <= maxColumn; column++) {
+                for (int row = getRow(segmentMinLatitudes[i]); row <= maxRow; row++) {
+                    counts[column * gridSize + row] += 1;
+                }
+            }
+        }
+        int[][] grid = new int[gridSize * gridSize][];
+        for (int i = 1; i <= segments; i++) {
+            int maxColumn = getColumn(segmentMaxLongitudes[i]);
+            int maxRow = getRow(segmentMaxLatitudes[i]);
+            for (int column = getColumn(segmentMinLongitudes[i]); column <= maxColumn; column++) {
+                for (int row = getRow(segmentMinLatitudes[i]); row <= maxRow; row++) {
+                    int cell = column * gridSize + row;
+                    if (grid[cell] == null) {
+                        grid[cell] = new int[counts[cell]];
+                        counts[cell] = 0;
+                    }
+                    grid[cell][counts[cell]++] = i;
+                }
+            }
+        }
+        cells = grid;
+    }
+
+    private int getColumn(double longitude) {
+        int column = (int) ((longitude - getMinLongitude()) / gridCellLongitude);
+        return Math.max(Math.min(column, gridSize - 1), 0);
+    }
+
+    private int getRow(double latitude) {
+        int row = (int) ((latitude - getMinLatitude()) / gridCellLatitude);
+        return Math.max(Math.min(row, gridSize - 1), 0);
+    }
+
+    private boolean isSegmentClose(int i, double latitude, double longitude) {
+        return latitude >= segmentMinLatitudes[i] && latitude <= segmentMaxLatitudes[i]
+                && longitude >= segmentMinLongitudes[i] && longitude <= segmentMaxLongitudes[i]
+                && DistanceCalculator.distanceToLine(
+                        latitude, longitude, latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])
+                        <= distance;
     }
 
     @Override
     public boolean containsPoint(double latitude, double longitude) {
-        for (int i = 1; i < coordinates.size(); i++) {
-            if (DistanceCalculator.distanceToLine(
-                    latitude, longitude, coordinates.get(i - 1).getLat(), coordinates.get(i - 1).getLon(),
-                    coordinates.get(i).getLat(), coordinates.get(i).getLon()) <= distance) {
+        if (!boundsContain(latitude, longitude)) {
+            return false;
+        }
+        if (cells != null) {
+            int[] segments = cells[getColumn(longitude) * gridSize + getRow(latitude)];
+            if (segments != null) {
+                for (int i : segments) {
+                    if (isSegmentClose(i, latitude, longitude)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        for (int i = 1; i < latitudes.length; i++) {
+            if (isSegmentClose(i, latitude, longitude)) {
                 return true;
             }
         }
@@ -97,11 +223,14 @@ public class GeofencePolyline extends GeofenceGeometry {
             }
             coordinates.add(coordinate);
         }
-
+        precalc();
     }
 
     public void setDistance(double distance) {
         this.distance = distance;
+        if (coordinates != null) {
+            precalc();
+        }
     }
 
 }
@@ -16,19 +16,23 @@
  */
 package org.traccar.handler;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.netty.channel.ChannelHandler;
+import org.apache.commons.jexl2.Expression;
+import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.JexlException;
-import org.apache.commons.jexl2.MapContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
@@ -45,6 +49,36 @@ public class ComputedAttributesHandler extends BaseDataHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ComputedAttributesHandler.class);
 
+    private static final Map<String, MethodHandle> POSITION_GETTERS = new HashMap<>();
+
+    static {
+        Set<Method> methods = new HashSet<>(Arrays.asList(Position.class.getMethods()));
+        methods.removeAll(Arrays.asList(Object.class.getMethods()));
+        for (Method method : methods) {
+            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
+                    && !method.getReturnType().equals(Map.class)) {
+                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+                try {
+                    POSITION_GETTERS.put(name, MethodHandles.publicLookup().unreflect(method));
+                } catch (IllegalAccessException error) {
+                    LOGGER.warn("Attribute reflection error", error);
+                }
+            }
+        }
+    }
+
+    private static final class CachedExpression {
+
+        private final String text;
+        private final Expression expression;
+
+        private CachedExpression(String text, Expression expression) {
+            this.text = text;
+            this.expression = expression;
+        }
+
+    }
+
     private final IdentityManager identityManager;
     private final AttributesManager attributesManager;
 
@@ -52,6 +86,8 @@ public class ComputedAttributesHandler extends BaseDataHandler {
 
     private final boolean includeDeviceAttributes;
 
+    private final Map<Long, CachedExpression> expressions = new ConcurrentHashMap<>();
+
     public ComputedAttributesHandler(
             Config config, IdentityManager identityManager, AttributesManager attributesManager) {
         this.identityManager = identityManager;
@@ -62,36 +98,75 @@ public class ComputedAttributesHandler extends BaseDataHandler {
         includeDeviceAttributes = config.getBoolean(Keys.PROCESSING_COMPUTED_ATTRIBUTES_DEVICE_ATTRIBUTES);
     }
 
-    private MapContext prepareContext(Position position) {
-        MapContext result = new MapContext();
-        if (includeDeviceAttributes) {
-            Device device = identityManager.getById(position.getDeviceId());
-            if (device != null) {
-                for (Object key : device.getAttributes().keySet()) {
-                    result.set((String) key, device.getAttributes().get(key));
-                }
+    /**
+     * Context resolving variables only when expression accesses them. Position attributes take priority over
+     * position properties, which take priority over device attributes. Assignments are kept locally and never modify
+     * the position.
+     */
+    private final class PositionContext implements JexlContext {
+
+        private final Position position;
+        private Map<String, Object> variables;
+        private Map<String, Object> deviceAttributes;
+
+        private PositionContext(Position position) {
+            this.position = position;
+        }
+
+        private Map<String, Object> getDeviceAttributes() {
+            if (deviceAttributes == null) {
+                Device device = includeDeviceAttributes ? identityManager.getById(position.getDeviceId()) : null;
+                deviceAttributes = device != null ? device.getAttributes() : Collections.emptyMap();
             }
+            return deviceAttributes;
         }
-        Set<Method> methods = new HashSet<>(Arrays.asList(position.getClass().getMethods()));
-        methods.removeAll(Arrays.asList(Object.class.getMethods()));
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
 
+        @Override
+        public Object get(String name) {
+            if (variables != null && variables.containsKey(name)) {
+                return variables.get(name);
+            }
+            if (position.getAttributes().containsKey(name)) {
+                return position.getAttributes().get(name);
+            }
+            MethodHandle getter = POSITION_GETTERS.get(name);
+            if (getter != null) {
                 try {
-                    if (!method.getReturnType().equals(Map.class)) {
-                        result.set(name, method.invoke(position));
-                    } else {
-                        for (Object key : ((Map) method.invoke(position)).keySet()) {
-                            result.set((String) key, ((Map) method.invoke(position)).get(key));
-                        }
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
+                    return getter.invoke(position);
+                } catch (Throwable error) {
                     LOGGER.warn("Attribute reflection error", error);
+                    return null;
                 }
             }
+            return getDeviceAttributes().get(name);
+        }
+
+        @Override
+        public void set(String name, Object value) {
+            if (variables == null) {
+                variables = new HashMap<>();
+            }
+            variables.put(name, value);
+        }
+
+        @Override
+        public boolean has(String name) {
+            return variables != null && variables.containsKey(name)
+                    || position.getAttributes().containsKey(name)
+                    || POSITION_GETTERS.containsKey(name)
+                    || getDeviceAttributes().containsKey(name);
+        }
+
+    }
+
+    private Expression getExpression(Attribute attribute) {
+        String text = attribute.getExpression();
+        CachedExpression cachedExpression = expressions.get(attribute.getId());
+        if (cachedExpression == null || !cachedExpression.text.equals(text)) {
+            cachedExpression = new CachedExpression(text, engine.createExpression(text));
+            expressions.put(attribute.getId(), cachedExpression);
         }
-        return result;
+        return cachedExpression.expression;
     }
 
     /**
@@ -99,7 +174,7 @@ public class ComputedAttributesHandler extends BaseDataHandler {
      */
     @Deprecated
     public Object computeAttribute(Attribute attribute, Position position) throws JexlException {
-        return engine.createExpression(attribute.getExpression()).evaluate(prepareContext(position));
+        return getExpression(attribute).evaluate(new PositionContext(position));
     }
 
     @Override
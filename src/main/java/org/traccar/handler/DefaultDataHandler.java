@@ -16,10 +16,13 @@
 package org.traccar.handler;
 
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
 import org.traccar.database.DataManager;
+import org.traccar.database.PositionBatchWriter;
+import org.traccar.database.PositionJournal;
 import org.traccar.model.Position;
 
 @ChannelHandler.Sharable
@@ -28,20 +31,51 @@ public class DefaultDataHandler extends BaseDataHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataHandler.class);
 
     private final DataManager dataManager;
+    private final PositionBatchWriter batchWriter;
+    private final PositionJournal journal;
 
     public DefaultDataHandler(DataManager dataManager) {
+        this(dataManager, null, null);
+    }
+
+    public DefaultDataHandler(DataManager dataManager, PositionBatchWriter batchWriter, PositionJournal journal) {
         this.dataManager = dataManager;
+        this.batchWriter = batchWriter;
+        this.journal = journal;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (batchWriter != null && msg instanceof Position) {
+            final long startTime = System.nanoTime();
+            final long sequence = journal != null ? journal.append((Position) msg) : 0;
+            batchWriter.write((Position) msg, position -> {
+                if (journal != null) {
+                    journal.complete(sequence, position);
+                }
+                registerHandlerTime(startTime);
+                OrderedExecutionHandler.execute(ctx, position, () -> ctx.fireChannelRead(position));
+            });
+        } else {
+            super.channelRead(ctx, msg);
+        }
     }
 
     @Override
     protected Position handlePosition(Position position) {
 
+        long sequence = journal != null ? journal.append(position) : 0;
+
         try {
             dataManager.addObject(position);
         } catch (Exception error) {
             LOGGER.warn("Failed to store position", error);
         }
 
+        if (journal != null) {
+            journal.complete(sequence, position);
+        }
+
         return position;
     }
 
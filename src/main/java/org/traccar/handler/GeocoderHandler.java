@@ -18,6 +18,8 @@ package org.traccar.handler;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
@@ -28,11 +30,59 @@ import org.traccar.database.StatisticsManager;
 import org.traccar.geocoder.Geocoder;
 import org.traccar.model.Position;
 
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
 @ChannelHandler.Sharable
 public class GeocoderHandler extends ChannelInboundHandlerAdapter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GeocoderHandler.class);
 
+    private static final class PendingMessage {
+
+        private final Object message;
+        private boolean completed;
+
+        private PendingMessage(Object message) {
+            this.message = message;
+        }
+
+    }
+
+    /**
+     * Positions of a device waiting for geocoding, so that positions with cached or reused address don't overtake
+     * earlier positions with slow provider requests. Messages are removed only when they are passed on, and only one
+     * thread passes them on at a time. Completed requests are passed on from the thread processing the device, not
+     * from the geocoder callback thread. Once nothing is pending, the entry is removed from the channel and marked, so
+     * that a new entry is created for the next position.
+     */
+    private static final class PendingMessages {
+
+        private final Map<Long, PendingMessages> devices;
+        private final long deviceId;
+        private final Queue<PendingMessage> queue = new ArrayDeque<>();
+        private boolean dispatching;
+        private boolean removed;
+
+        private PendingMessages(Map<Long, PendingMessages> devices, long deviceId) {
+            this.devices = devices;
+            this.deviceId = deviceId;
+        }
+
+        private void removeIfIdle() {
+            if (queue.isEmpty() && !dispatching) {
+                removed = true;
+                devices.remove(deviceId, this);
+            }
+        }
+
+    }
+
+    private static final AttributeKey<Map<Long, PendingMessages>> PENDING_MESSAGES =
+            AttributeKey.valueOf("geocoderPendingMessages");
+
     private final Geocoder geocoder;
     private final IdentityManager identityManager;
     private final StatisticsManager statisticsManager;
@@ -50,45 +100,122 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
         geocoderReuseDistance = config.getInteger(Keys.GEOCODER_REUSE_DISTANCE, 0);
     }
 
-    @Override
-    public void channelRead(final ChannelHandlerContext ctx, Object message) {
-        if (message instanceof Position && !ignorePositions) {
-            final Position position = (Position) message;
-            if (processInvalidPositions || position.getValid()) {
-                if (geocoderReuseDistance != 0) {
-                    Position lastPosition = identityManager.getLastPosition(position.getDeviceId());
-                    if (lastPosition != null && lastPosition.getAddress() != null
-                            && position.getDouble(Position.KEY_DISTANCE) <= geocoderReuseDistance) {
-                        position.setAddress(lastPosition.getAddress());
-                        ctx.fireChannelRead(position);
-                        return;
+    private PendingMessages getPendingMessages(ChannelHandlerContext ctx, long deviceId) {
+        Attribute<Map<Long, PendingMessages>> attribute = ctx.channel().attr(PENDING_MESSAGES);
+        Map<Long, PendingMessages> devices = attribute.get();
+        if (devices == null) {
+            devices = new ConcurrentHashMap<>();
+            Map<Long, PendingMessages> existing = attribute.setIfAbsent(devices);
+            if (existing != null) {
+                devices = existing;
+            }
+        }
+        final Map<Long, PendingMessages> map = devices;
+        return devices.computeIfAbsent(deviceId, key -> new PendingMessages(map, key));
+    }
+
+    /**
+     * Queue message behind earlier messages of the device. Returns null if nothing is pending and the message doesn't
+     * need geocoding, so it can be passed on directly.
+     */
+    private PendingMessages addPendingMessage(
+            ChannelHandlerContext ctx, long deviceId, PendingMessage pendingMessage, boolean geocoding) {
+        while (true) {
+            PendingMessages pending = getPendingMessages(ctx, deviceId);
+            synchronized (pending) {
+                if (!pending.removed) {
+                    if (!geocoding && pending.queue.isEmpty() && !pending.dispatching) {
+                        pending.removeIfIdle();
+                        return null;
                     }
+                    pending.queue.add(pendingMessage);
+                    return pending;
                 }
+            }
+        }
+    }
 
-                if (statisticsManager != null) {
-                    statisticsManager.registerGeocoderRequest();
+    private void complete(ChannelHandlerContext ctx, PendingMessages pending, PendingMessage pendingMessage) {
+        synchronized (pending) {
+            pendingMessage.completed = true;
+            if (pending.dispatching) {
+                return;
+            }
+            pending.dispatching = true;
+        }
+        while (true) {
+            Object message;
+            synchronized (pending) {
+                PendingMessage head = pending.queue.peek();
+                if (head == null || !head.completed) {
+                    pending.dispatching = false;
+                    pending.removeIfIdle();
+                    return;
                 }
+                message = pending.queue.poll().message;
+            }
+            try {
+                ctx.fireChannelRead(message);
+            } catch (RuntimeException error) {
+                LOGGER.warn("Geocoded message processing error", error);
+            }
+        }
+    }
 
-                geocoder.getAddress(position.getLatitude(), position.getLongitude(),
-                        new Geocoder.ReverseGeocoderCallback() {
-                    @Override
-                    public void onSuccess(String address) {
-                        position.setAddress(address);
-                        ctx.fireChannelRead(position);
-                    }
-
-                    @Override
-                    public void onFailure(Throwable e) {
-                        LOGGER.warn("Geocoding failed", e);
-                        ctx.fireChannelRead(position);
-                    }
-                });
-            } else {
-                ctx.fireChannelRead(position);
+    private boolean needsGeocoding(Position position) {
+        if (ignorePositions || !processInvalidPositions && !position.getValid()) {
+            return false;
+        }
+        if (geocoderReuseDistance != 0) {
+            Position lastPosition = identityManager.getLastPosition(position.getDeviceId());
+            if (lastPosition != null && lastPosition.getAddress() != null
+                    && position.getDouble(Position.KEY_DISTANCE) <= geocoderReuseDistance) {
+                position.setAddress(lastPosition.getAddress());
+                return false;
             }
-        } else {
+        }
+        return true;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, Object message) {
+        if (!(message instanceof Position)) {
             ctx.fireChannelRead(message);
+            return;
+        }
+
+        final Position position = (Position) message;
+        boolean geocoding = needsGeocoding(position);
+
+        final PendingMessage pendingMessage = new PendingMessage(message);
+        final PendingMessages pending = addPendingMessage(ctx, position.getDeviceId(), pendingMessage, geocoding);
+        if (pending == null) {
+            ctx.fireChannelRead(message);
+            return;
+        }
+        if (!geocoding) {
+            complete(ctx, pending, pendingMessage);
+            return;
         }
+
+        if (statisticsManager != null) {
+            statisticsManager.registerGeocoderRequest();
+        }
+
+        geocoder.getAddress(position.getLatitude(), position.getLongitude(),
+                new Geocoder.ReverseGeocoderCallback() {
+            @Override
+            public void onSuccess(String address) {
+                position.setAddress(address);
+                OrderedExecutionHandler.execute(ctx, position, () -> complete(ctx, pending, pendingMessage));
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                LOGGER.warn("Geocoding failed", e);
+                OrderedExecutionHandler.execute(ctx, position, () -> complete(ctx, pending, pendingMessage));
+            }
+        });
     }
 
 }
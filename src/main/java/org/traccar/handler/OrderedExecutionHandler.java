@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.AttributeKey;
+import org.traccar.StripedExecutor;
+import org.traccar.model.Position;
+
+/**
+ * Moves processing of decoded messages from the network thread to an executor. Positions of the same device are
+ * processed in order, but a single channel, like a UDP port, can process many devices in parallel. Following handlers
+ * have to be added with an executor that runs them on the calling thread. User events and exceptions are queued on the
+ * thread of the last device of the channel, so they don't overtake its positions, and the network thread never waits
+ * for them. Channel inactive event is passed on immediately, because pipeline handlers are removed right after it, so
+ * handlers that need to clean up after the queued positions use {@link #execute} with information captured from the
+ * pipeline.
+ *
+ * <p>Messages still queued when the pipeline is removed can't be processed, so a connection closed by the device is
+ * half-closed first and the channel is closed from the executor after its queued messages are processed.
+ */
+@ChannelHandler.Sharable
+public class OrderedExecutionHandler extends ChannelInboundHandlerAdapter {
+
+    private static final AttributeKey<Long> CHANNEL_KEY = AttributeKey.valueOf("orderedExecutionKey");
+    private static final AttributeKey<StripedExecutor> EXECUTOR = AttributeKey.valueOf("orderedExecutionExecutor");
+
+    private final StripedExecutor executor;
+
+    public OrderedExecutionHandler(StripedExecutor executor) {
+        this.executor = executor;
+    }
+
+    private static long getChannelKey(ChannelHandlerContext ctx) {
+        Long key = ctx.channel().attr(CHANNEL_KEY).get();
+        return key != null ? key : ctx.channel().id().hashCode();
+    }
+
+    private static long getKey(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Position) {
+            return ((Position) msg).getDeviceId();
+        } else {
+            return getChannelKey(ctx);
+        }
+    }
+
+    /**
+     * Run a task for the message on the thread that processes messages of its device. Used by handlers that continue
+     * processing from a callback of an asynchronous request, so that the rest of the pipeline doesn't run on the
+     * callback thread. Unlike new messages, the task never waits for queue space. Without device executor in the
+     * pipeline, the task runs on the executor of the handler.
+     */
+    public static void execute(ChannelHandlerContext ctx, Object msg, Runnable task) {
+        StripedExecutor executor = ctx.channel().attr(EXECUTOR).get();
+        if (executor != null) {
+            executor.resume(getKey(ctx, msg), task);
+        } else {
+            ctx.executor().execute(task);
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        ctx.channel().attr(EXECUTOR).set(executor);
+        ctx.channel().config().setOption(ChannelOption.ALLOW_HALF_CLOSURE, true);
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        long key = getKey(ctx, msg);
+        if (msg instanceof Position) {
+            ctx.channel().attr(CHANNEL_KEY).set(key);
+        }
+        executor.execute(key, () -> ctx.fireChannelRead(msg));
+    }
+
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) {
+        executor.resume(getChannelKey(ctx), () -> {
+            ctx.fireUserEventTriggered(evt);
+            if (evt instanceof ChannelInputShutdownEvent) {
+                ctx.close();
+            }
+        });
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+        executor.resume(getChannelKey(ctx), () -> ctx.fireExceptionCaught(cause));
+    }
+
+}
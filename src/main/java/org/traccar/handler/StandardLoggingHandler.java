@@ -22,9 +22,14 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.BasePipelineFactory;
+import org.traccar.BaseProtocolDecoder;
+import org.traccar.DeviceSession;
+import org.traccar.Main;
 import org.traccar.NetworkMessage;
+import org.traccar.helper.FrameCapture;
+import org.traccar.helper.FrameLogger;
 
-import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 
 public class StandardLoggingHandler extends ChannelDuplexHandler {
@@ -32,9 +37,14 @@ public class StandardLoggingHandler extends ChannelDuplexHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(StandardLoggingHandler.class);
 
     private final String protocol;
+    private final FrameLogger frameLogger;
+
+    private BaseProtocolDecoder decoder;
+    private int counter;
 
     public StandardLoggingHandler(String protocol) {
         this.protocol = protocol;
+        frameLogger = Main.getInjector() != null ? Main.getInjector().getInstance(FrameLogger.class) : null;
     }
 
     @Override
@@ -60,28 +70,40 @@ public class StandardLoggingHandler extends ChannelDuplexHandler {
         }
     }
 
-    public void log(ChannelHandlerContext ctx, boolean downstream, SocketAddress remoteAddress, ByteBuf buf) {
-        StringBuilder message = new StringBuilder();
-
-        message.append("[").append(ctx.channel().id().asShortText()).append(": ");
-        message.append(protocol);
-        if (downstream) {
-            message.append(" > ");
-        } else {
-            message.append(" < ");
+    private boolean isDeviceEnabled(ChannelHandlerContext ctx, SocketAddress remoteAddress) {
+        if (decoder == null) {
+            decoder = BasePipelineFactory.getHandler(ctx.pipeline(), BaseProtocolDecoder.class);
+            if (decoder == null) {
+                return false;
+            }
         }
+        DeviceSession deviceSession = decoder.findDeviceSession(ctx.channel(), remoteAddress);
+        return deviceSession != null && frameLogger.isDeviceEnabled(deviceSession.getDeviceId());
+    }
 
-        if (remoteAddress instanceof InetSocketAddress) {
-            message.append(((InetSocketAddress) remoteAddress).getHostString());
-        } else {
-            message.append("unknown");
+    public void log(ChannelHandlerContext ctx, boolean downstream, SocketAddress remoteAddress, ByteBuf buf) {
+        if (frameLogger == null) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info(FrameLogger.format(new FrameCapture.Frame(
+                        System.currentTimeMillis(), ctx.channel().id().asShortText(), protocol, downstream,
+                        remoteAddress, ByteBufUtil.getBytes(buf))));
+            }
+            return;
         }
-        message.append("]");
 
-        message.append(" HEX: ");
-        message.append(ByteBufUtil.hexDump(buf));
+        if (!frameLogger.isEnabled(protocol)) {
+            return;
+        }
+        if (frameLogger.hasDeviceFilter() && !isDeviceEnabled(ctx, remoteAddress)) {
+            return;
+        }
+        if (frameLogger.getSampling() > 1 && counter++ % frameLogger.getSampling() != 0) {
+            return;
+        }
 
-        LOGGER.info(message.toString());
+        frameLogger.log(new FrameCapture.Frame(
+                System.currentTimeMillis(), ctx.channel().id().asShortText(), protocol, downstream,
+                remoteAddress, ByteBufUtil.getBytes(buf)));
     }
 
 }
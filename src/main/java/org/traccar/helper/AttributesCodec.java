@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import org.traccar.model.Position;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of attributes. Common keys are written as dictionary indexes and values keep their types.
+ * Text form is prefixed with a marker that can't start JSON, so both formats can be stored in the same column.
+ */
+public final class AttributesCodec {
+
+    public static final char TEXT_MARKER = '#';
+
+    /**
+     * Dictionary of common keys. New keys can only be appended, because indexes are stored in encoded data.
+     */
+    private static final String[] KEYS = {
+            Position.KEY_ORIGINAL, Position.KEY_INDEX, Position.KEY_HDOP, Position.KEY_VDOP, Position.KEY_PDOP,
+            Position.KEY_SATELLITES, Position.KEY_SATELLITES_VISIBLE, Position.KEY_RSSI, Position.KEY_GPS,
+            Position.KEY_ROAMING, Position.KEY_EVENT, Position.KEY_ALARM, Position.KEY_STATUS, Position.KEY_ODOMETER,
+            Position.KEY_ODOMETER_SERVICE, Position.KEY_ODOMETER_TRIP, Position.KEY_HOURS, Position.KEY_STEPS,
+            Position.KEY_HEART_RATE, Position.KEY_INPUT, Position.KEY_OUTPUT, Position.KEY_IMAGE, Position.KEY_VIDEO,
+            Position.KEY_AUDIO, Position.KEY_POWER, Position.KEY_BATTERY, Position.KEY_BATTERY_LEVEL,
+            Position.KEY_FUEL_LEVEL, Position.KEY_FUEL_USED, Position.KEY_FUEL_CONSUMPTION, Position.KEY_VERSION_FW,
+            Position.KEY_VERSION_HW, Position.KEY_TYPE, Position.KEY_IGNITION, Position.KEY_FLAGS,
+            Position.KEY_ANTENNA, Position.KEY_CHARGE, Position.KEY_IP, Position.KEY_ARCHIVE, Position.KEY_DISTANCE,
+            Position.KEY_TOTAL_DISTANCE, Position.KEY_RPM, Position.KEY_VIN, Position.KEY_APPROXIMATE,
+            Position.KEY_THROTTLE, Position.KEY_MOTION, Position.KEY_ARMED, Position.KEY_GEOFENCE,
+            Position.KEY_ACCELERATION, Position.KEY_DEVICE_TEMP, Position.KEY_COOLANT_TEMP, Position.KEY_ENGINE_LOAD,
+            Position.KEY_OPERATOR, Position.KEY_COMMAND, Position.KEY_BLOCKED, Position.KEY_DOOR,
+            Position.KEY_AXLE_WEIGHT, Position.KEY_G_SENSOR, Position.KEY_ICCID, Position.KEY_PHONE,
+            Position.KEY_DTCS, Position.KEY_OBD_SPEED, Position.KEY_OBD_ODOMETER, Position.KEY_RESULT,
+            Position.KEY_DRIVER_UNIQUE_ID
+    };
+
+    private static final Map<String, Integer> KEY_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_INDEXES.put(KEYS[i], i + 1);
+        }
+    }
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_FALSE = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_INTEGER = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_FLOAT = 5;
+    private static final int TYPE_DOUBLE = 6;
+    private static final int TYPE_STRING = 7;
+    private static final int TYPE_MAP = 8;
+    private static final int TYPE_LIST = 9;
+
+    private AttributesCodec() {
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer input) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = input.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(ByteArrayOutputStream output, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer input) {
+        int length = (int) readVarLong(input);
+        String value = new String(
+                input.array(), input.arrayOffset() + input.position(), length, StandardCharsets.UTF_8);
+        input.position(input.position() + length);
+        return value;
+    }
+
+    private static void writeMap(ByteArrayOutputStream output, Map<?, ?> map) {
+        writeVarLong(output, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            Integer index = KEY_INDEXES.get(key);
+            if (index != null) {
+                writeVarLong(output, index);
+            } else {
+                output.write(0);
+                writeString(output, key);
+            }
+            writeValue(output, entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> readMap(ByteBuffer input) {
+        int size = (int) readVarLong(input);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            int index = (int) readVarLong(input);
+            String key;
+            if (index == 0) {
+                key = readString(input);
+            } else if (index <= KEYS.length) {
+                key = KEYS[index - 1];
+            } else {
+                throw new IllegalArgumentException("Unknown attribute key index " + index);
+            }
+            map.put(key, readValue(input));
+        }
+        return map;
+    }
+
+    private static void writeValue(ByteArrayOutputStream output, Object value) {
+        if (value == null) {
+            output.write(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            output.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            int number = ((Number) value).intValue();
+            output.write(TYPE_INTEGER);
+            writeVarLong(output, ((number << 1) ^ (number >> 31)) & 0xFFFFFFFFL);
+        } else if (value instanceof Long) {
+            long number = (Long) value;
+            output.write(TYPE_LONG);
+            writeVarLong(output, (number << 1) ^ (number >> 63));
+        } else if (value instanceof Float) {
+            output.write(TYPE_FLOAT);
+            int bits = Float.floatToIntBits((Float) value);
+            for (int i = 24; i >= 0; i -= 8) {
+                output.write(bits >> i);
+            }
+        } else if (value instanceof Number) {
+            output.write(TYPE_DOUBLE);
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            for (int i = 56; i >= 0; i -= 8) {
+                output.write((int) (bits >> i));
+            }
+        } else if (value instanceof Map) {
+            output.write(TYPE_MAP);
+            writeMap(output, (Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            output.write(TYPE_LIST);
+            Collection<?> collection = (Collection<?>) value;
+            writeVarLong(output, collection.size());
+            for (Object item : collection) {
+                writeValue(output, item);
+            }
+        } else {
+            output.write(TYPE_STRING);
+            writeString(output, value.toString());
+        }
+    }
+
+    private static Object readValue(ByteBuffer input) {
+        int type = input.get();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_FALSE:
+                return false;
+            case TYPE_TRUE:
+                return true;
+            case TYPE_INTEGER:
+                int intValue = (int) readVarLong(input);
+                return (intValue >>> 1) ^ -(intValue & 1);
+            case TYPE_LONG:
+                long longValue = readVarLong(input);
+                return (longValue >>> 1) ^ -(longValue & 1);
+            case TYPE_FLOAT:
+                return input.getFloat();
+            case TYPE_DOUBLE:
+                return input.getDouble();
+            case TYPE_STRING:
+                return readString(input);
+            case TYPE_MAP:
+                return readMap(input);
+            case TYPE_LIST:
+                int size = (int) readVarLong(input);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(input));
+                }
+                return list;
+            default:
+                throw new IllegalArgumentException("Unknown attribute type " + type);
+        }
+    }
+
+    public static byte[] encode(Map<?, ?> attributes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        writeMap(output, attributes);
+        return output.toByteArray();
+    }
+
+    public static Map<String, Object> decode(byte[] data) {
+        try {
+            return readMap(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException error) {
+            throw new IllegalArgumentException("Truncated attributes data", error);
+        }
+    }
+
+    public static String encodeText(Map<?, ?> attributes) {
+        return TEXT_MARKER + Base64.getEncoder().encodeToString(encode(attributes));
+    }
+
+    public static boolean isEncodedText(String value) {
+        return value != null && !value.isEmpty() && value.charAt(0) == TEXT_MARKER;
+    }
+
+    public static Map<String, Object> decodeText(String value) {
+        return decode(Base64.getDecoder().decode(value.substring(1)));
+    }
+
+}
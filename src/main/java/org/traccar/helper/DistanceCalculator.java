@@ -50,4 +50,20 @@ public final class DistanceCalculator {
         return 2 * area / d1;
     }
 
+    public static double getLatitudeDelta(double distance) {
+        return distance / (EQUATORIAL_EARTH_RADIUS * 1000) / DEG_TO_RAD;
+    }
+
+    /**
+     * Maximum longitude difference for points within given distance, or NaN if the area includes a pole.
+     */
+    public static double getLongitudeDelta(double distance, double latitude) {
+        double sinDistance = Math.sin(distance / (EQUATORIAL_EARTH_RADIUS * 1000));
+        double cosLatitude = Math.cos(latitude * DEG_TO_RAD);
+        if (distance / (EQUATORIAL_EARTH_RADIUS * 1000) >= Math.PI / 2 || sinDistance >= cosLatitude) {
+            return Double.NaN;
+        }
+        return Math.asin(sinDistance / cosLatitude) / DEG_TO_RAD;
+    }
+
 }
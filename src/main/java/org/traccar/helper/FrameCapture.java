@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Binary format for captured network frames. Each record contains receive time, direction, protocol, remote address
+ * and raw frame data, so that captured traffic can be read back and passed to a protocol decoder.
+ */
+public final class FrameCapture {
+
+    private static final int MAGIC = 0x54434652;
+
+    private FrameCapture() {
+    }
+
+    public static class Frame {
+
+        private final long time;
+        private final String channelId;
+        private final String protocol;
+        private final boolean downstream;
+        private final String host;
+        private final int port;
+        private final byte[] data;
+
+        public Frame(
+                long time, String channelId, String protocol, boolean downstream,
+                SocketAddress remoteAddress, byte[] data) {
+            this(time, channelId, protocol, downstream,
+                    remoteAddress instanceof InetSocketAddress
+                            ? ((InetSocketAddress) remoteAddress).getHostString() : null,
+                    remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getPort() : 0,
+                    data);
+        }
+
+        public Frame(
+                long time, String channelId, String protocol, boolean downstream,
+                String host, int port, byte[] data) {
+            this.time = time;
+            this.channelId = channelId;
+            this.protocol = protocol;
+            this.downstream = downstream;
+            this.host = host;
+            this.port = port;
+            this.data = data;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getChannelId() {
+            return channelId;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * Frame sent to the device, otherwise received from the device.
+         */
+        public boolean getDownstream() {
+            return downstream;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public SocketAddress getRemoteAddress() {
+            return host != null ? InetSocketAddress.createUnresolved(host, port) : null;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public ByteBuf getBuffer() {
+            return Unpooled.wrappedBuffer(data);
+        }
+
+    }
+
+    public static class Writer {
+
+        private final DataOutputStream output;
+
+        /**
+         * Header is written only for a new file, so records can be appended to an existing capture.
+         */
+        public Writer(OutputStream outputStream, boolean writeHeader) throws IOException {
+            output = new DataOutputStream(outputStream);
+            if (writeHeader) {
+                output.writeInt(MAGIC);
+            }
+        }
+
+        public void write(Frame frame) throws IOException {
+            output.writeLong(frame.getTime());
+            output.writeUTF(frame.getChannelId() != null ? frame.getChannelId() : "");
+            output.writeUTF(frame.getProtocol());
+            output.writeBoolean(frame.getDownstream());
+            output.writeUTF(frame.getHost() != null ? frame.getHost() : "");
+            output.writeShort(frame.getPort());
+            output.writeInt(frame.getData().length);
+            output.write(frame.getData());
+        }
+
+        public void flush() throws IOException {
+            output.flush();
+        }
+
+        public void close() throws IOException {
+            output.close();
+        }
+
+    }
+
+    public static class Reader {
+
+        private final DataInputStream input;
+
+        public Reader(InputStream inputStream) throws IOException {
+            input = new DataInputStream(inputStream);
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Invalid capture file");
+            }
+        }
+
+        /**
+         * Returns next frame or null at the end of the capture. Incomplete last record is ignored.
+         */
+        public Frame read() throws IOException {
+            try {
+                long time = input.readLong();
+                String channelId = input.readUTF();
+                String protocol = input.readUTF();
+                boolean downstream = input.readBoolean();
+                String host = input.readUTF();
+                int port = input.readUnsignedShort();
+                byte[] data = new byte[input.readInt()];
+                input.readFully(data);
+                return new Frame(
+                        time, channelId.isEmpty() ? null : channelId, protocol, downstream,
+                        host.isEmpty() ? null : host, port, data);
+            } catch (EOFException error) {
+                return null;
+            }
+        }
+
+        public void close() throws IOException {
+            input.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import io.netty.buffer.ByteBufUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.IdentityManager;
+import org.traccar.handler.StandardLoggingHandler;
+import org.traccar.model.Device;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes raw network frames to the log and to the binary capture file. Network threads only copy frame data into a
+ * bounded queue, formatting and writing is done by a separate thread. When the queue is full, the oldest frames are
+ * dropped, so logging never blocks network processing.
+ */
+public class FrameLogger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StandardLoggingHandler.class);
+
+    private static final long STOP_TIMEOUT = 10000;
+    private static final int BATCH_SIZE = 100;
+
+    private final IdentityManager identityManager;
+
+    private final boolean text;
+    private final Set<String> protocols;
+    private final Set<String> devices;
+    private final int sampling;
+
+    private final BlockingQueue<FrameCapture.Frame> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+
+    private FrameCapture.Writer captureWriter;
+
+    public FrameLogger(Config config, IdentityManager identityManager) {
+        this.identityManager = identityManager;
+
+        text = !config.hasKey(Keys.LOGGER_FRAMES_TEXT) || config.getBoolean(Keys.LOGGER_FRAMES_TEXT);
+        protocols = parseList(config.getString(Keys.LOGGER_FRAMES_PROTOCOLS));
+        devices = parseList(config.getString(Keys.LOGGER_FRAMES_DEVICES));
+        sampling = Math.max(config.getInteger(Keys.LOGGER_FRAMES_SAMPLING, 1), 1);
+
+        String captureFile = config.getString(Keys.LOGGER_FRAMES_CAPTURE_FILE);
+        if (captureFile != null) {
+            try {
+                File file = new File(captureFile);
+                boolean exists = file.length() > 0;
+                captureWriter = new FrameCapture.Writer(
+                        new BufferedOutputStream(new FileOutputStream(file, true)), !exists);
+            } catch (IOException error) {
+                LOGGER.warn("Failed to open frame capture file", error);
+            }
+        }
+
+        queue = new ArrayBlockingQueue<>(config.getInteger(Keys.LOGGER_FRAMES_QUEUE_SIZE, 10000));
+        thread = new Thread(this::run, "frame-logger");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static Set<String> parseList(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return new HashSet<>(Arrays.asList(value.split("[, ]+")));
+    }
+
+    /**
+     * Frames of the protocol are written somewhere. Checked before any frame data is copied.
+     */
+    public boolean isEnabled(String protocol) {
+        return (text && LOGGER.isInfoEnabled() || captureWriter != null)
+                && (protocols == null || protocols.contains(protocol));
+    }
+
+    public boolean hasDeviceFilter() {
+        return devices != null;
+    }
+
+    public boolean isDeviceEnabled(long deviceId) {
+        if (devices == null) {
+            return true;
+        }
+        Device device = identityManager.getById(deviceId);
+        return device != null && devices.contains(device.getUniqueId());
+    }
+
+    public int getSampling() {
+        return sampling;
+    }
+
+    public void log(FrameCapture.Frame frame) {
+        while (!queue.offer(frame)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    public static String format(FrameCapture.Frame frame) {
+        StringBuilder message = new StringBuilder();
+
+        message.append("[").append(frame.getChannelId()).append(": ");
+        message.append(frame.getProtocol());
+        if (frame.getDownstream()) {
+            message.append(" > ");
+        } else {
+            message.append(" < ");
+        }
+
+        if (frame.getHost() != null) {
+            message.append(frame.getHost());
+        } else {
+            message.append("unknown");
+        }
+        message.append("]");
+
+        message.append(" HEX: ");
+        message.append(ByteBufUtil.hexDump(frame.getData()));
+
+        return message.toString();
+    }
+
+    private void write(List<FrameCapture.Frame> frames) {
+        long droppedCount = dropped.getAndSet(0);
+        if (droppedCount > 0) {
+            LOGGER.warn("Frame logger queue is full, {} frames dropped", droppedCount);
+        }
+        for (FrameCapture.Frame frame : frames) {
+            if (text && LOGGER.isInfoEnabled()) {
+                LOGGER.info(format(frame));
+            }
+            if (captureWriter != null) {
+                try {
+                    captureWriter.write(frame);
+                } catch (IOException error) {
+                    LOGGER.warn("Frame capture error", error);
+                }
+            }
+        }
+        if (captureWriter != null) {
+            try {
+                captureWriter.flush();
+            } catch (IOException error) {
+                LOGGER.warn("Frame capture error", error);
+            }
+        }
+    }
+
+    private void run() {
+        List<FrameCapture.Frame> frames = new ArrayList<>();
+        while (true) {
+            try {
+                frames.add(queue.take());
+            } catch (InterruptedException error) {
+                break;
+            }
+            queue.drainTo(frames, BATCH_SIZE - 1);
+            write(frames);
+            frames.clear();
+        }
+        queue.drainTo(frames);
+        write(frames);
+    }
+
+    public void stop() {
+        thread.interrupt();
+        try {
+            thread.join(STOP_TIMEOUT);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+        if (captureWriter != null) {
+            try {
+                captureWriter.close();
+            } catch (IOException error) {
+                LOGGER.warn("Frame capture error", error);
+            }
+        }
+    }
+
+}
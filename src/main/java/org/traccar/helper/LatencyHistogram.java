@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two microsecond buckets. Percentiles are reported as the upper bound of
+ * the matching bucket, so the error is below a factor of two.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0));
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        buckets[bucket].increment();
+        count.increment();
+        total.add(micros);
+        max.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMean() {
+        long currentCount = count.sum();
+        return currentCount > 0 ? total.sum() / currentCount : 0;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Upper bound in microseconds for given percentile (between 0 and 100).
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long currentCount = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            currentCount += counts[i];
+        }
+        long threshold = (long) Math.ceil(currentCount * percentile / 100);
+        long accumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            accumulated += counts[i];
+            if (accumulated >= threshold && accumulated > 0) {
+                return Math.min((1L << i) - 1, getMax());
+            }
+        }
+        return 0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", getCount());
+        result.put("mean", getMean());
+        result.put("p50", getPercentile(50));
+        result.put("p99", getPercentile(99));
+        result.put("max", getMax());
+        return result;
+    }
+
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Insertion ordered map of attributes that keeps boolean and numeric values unboxed. Entries are stored in parallel
+ * arrays in insertion order and looked up through an open addressing index. Values are only boxed when they are read
+ * through the map interface, typed accessors don't allocate.
+ */
+public class AttributeMap extends AbstractMap<String, Object> {
+
+    private static final byte TYPE_OBJECT = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int DELETED = -1;
+
+    private String[] keys;
+    private byte[] types;
+    private long[] values;
+    private Object[] objects;
+    private int[] index;
+
+    private int count;
+    private int size;
+    private int modCount;
+
+    public AttributeMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AttributeMap(int capacity) {
+        allocate(Math.max(capacity, 4));
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        types = new byte[capacity];
+        values = new long[capacity];
+        objects = null;
+        index = new int[Integer.highestOneBit(capacity - 1) << 2];
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int find(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            } else if (entry != DELETED) {
+                String current = keys[entry - 1];
+                if (current == key || current.equals(key)) {
+                    return entry - 1;
+                }
+            }
+        }
+    }
+
+    private int slotOf(int entry) {
+        int mask = index.length - 1;
+        int slot = hash(keys[entry]) & mask;
+        while (index[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insertIndex(int entry) {
+        int mask = index.length - 1;
+        int slot = hash(keys[entry]) & mask;
+        while (index[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = entry + 1;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        byte[] oldTypes = types;
+        long[] oldValues = values;
+        Object[] oldObjects = objects;
+        int oldCount = count;
+        allocate(size * 2 >= keys.length ? keys.length * 2 : keys.length);
+        count = 0;
+        for (int i = 0; i < oldCount; i++) {
+            if (oldKeys[i] != null) {
+                keys[count] = oldKeys[i];
+                types[count] = oldTypes[i];
+                values[count] = oldValues[i];
+                if (oldObjects != null && oldObjects[i] != null) {
+                    objects()[count] = oldObjects[i];
+                }
+                insertIndex(count);
+                count += 1;
+            }
+        }
+    }
+
+    private Object[] objects() {
+        if (objects == null) {
+            objects = new Object[keys.length];
+        }
+        return objects;
+    }
+
+    private int entryFor(String key) {
+        Objects.requireNonNull(key);
+        int entry = find(key);
+        if (entry < 0) {
+            if (count == keys.length) {
+                resize();
+            }
+            entry = count++;
+            keys[entry] = key;
+            insertIndex(entry);
+            size += 1;
+        } else if (objects != null) {
+            objects[entry] = null;
+        }
+        modCount += 1;
+        return entry;
+    }
+
+    private Object valueAt(int entry) {
+        switch (types[entry]) {
+            case TYPE_BOOLEAN:
+                return values[entry] != 0;
+            case TYPE_INTEGER:
+                return (int) values[entry];
+            case TYPE_LONG:
+                return values[entry];
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(values[entry]);
+            default:
+                return objects != null ? objects[entry] : null;
+        }
+    }
+
+    private void removeAt(int entry) {
+        index[slotOf(entry)] = DELETED;
+        keys[entry] = null;
+        if (objects != null) {
+            objects[entry] = null;
+        }
+        size -= 1;
+        modCount += 1;
+    }
+
+    public void putBoolean(String key, boolean value) {
+        int entry = entryFor(key);
+        types[entry] = TYPE_BOOLEAN;
+        values[entry] = value ? 1 : 0;
+    }
+
+    public void putInteger(String key, int value) {
+        int entry = entryFor(key);
+        types[entry] = TYPE_INTEGER;
+        values[entry] = value;
+    }
+
+    public void putLong(String key, long value) {
+        int entry = entryFor(key);
+        types[entry] = TYPE_LONG;
+        values[entry] = value;
+    }
+
+    public void putDouble(String key, double value) {
+        int entry = entryFor(key);
+        types[entry] = TYPE_DOUBLE;
+        values[entry] = Double.doubleToRawLongBits(value);
+    }
+
+    private void putObject(String key, Object value) {
+        int entry = entryFor(key);
+        types[entry] = TYPE_OBJECT;
+        values[entry] = 0;
+        if (value != null) {
+            objects()[entry] = value;
+        }
+    }
+
+    /**
+     * Same as {@code ((Number) get(key)).doubleValue()}, but without boxing. Returns 0 if the key is missing.
+     */
+    public double getDouble(String key) {
+        int entry = find(key);
+        if (entry < 0) {
+            return 0.0;
+        }
+        switch (types[entry]) {
+            case TYPE_INTEGER:
+            case TYPE_LONG:
+                return values[entry];
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(values[entry]);
+            default:
+                return ((Number) valueAt(entry)).doubleValue();
+        }
+    }
+
+    public long getLong(String key) {
+        int entry = find(key);
+        if (entry < 0) {
+            return 0;
+        }
+        switch (types[entry]) {
+            case TYPE_INTEGER:
+            case TYPE_LONG:
+                return values[entry];
+            case TYPE_DOUBLE:
+                return (long) Double.longBitsToDouble(values[entry]);
+            default:
+                return ((Number) valueAt(entry)).longValue();
+        }
+    }
+
+    public int getInteger(String key) {
+        int entry = find(key);
+        if (entry < 0) {
+            return 0;
+        }
+        switch (types[entry]) {
+            case TYPE_INTEGER:
+            case TYPE_LONG:
+                return (int) values[entry];
+            case TYPE_DOUBLE:
+                return (int) Double.longBitsToDouble(values[entry]);
+            default:
+                return ((Number) valueAt(entry)).intValue();
+        }
+    }
+
+    public boolean getBoolean(String key) {
+        int entry = find(key);
+        if (entry < 0) {
+            return false;
+        } else if (types[entry] == TYPE_BOOLEAN) {
+            return values[entry] != 0;
+        } else {
+            return (Boolean) valueAt(entry);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int entry = find(key);
+        return entry >= 0 ? valueAt(entry) : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int entry = find(key);
+        Object previous = entry >= 0 ? valueAt(entry) : null;
+        if (value instanceof Boolean) {
+            putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            putInteger(key, (Integer) value);
+        } else if (value instanceof Long) {
+            putLong(key, (Long) value);
+        } else if (value instanceof Double) {
+            putDouble(key, (Double) value);
+        } else {
+            putObject(key, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int entry = find(key);
+        if (entry < 0) {
+            return null;
+        }
+        Object previous = valueAt(entry);
+        removeAt(entry);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, count, null);
+        if (objects != null) {
+            Arrays.fill(objects, 0, count, null);
+        }
+        Arrays.fill(index, 0);
+        count = 0;
+        size = 0;
+        modCount += 1;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new EntrySet();
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            AttributeMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next;
+        private int current = -1;
+        private int expectedModCount = modCount;
+
+        private EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while (next < count && keys[next] == null) {
+                next += 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= count) {
+                throw new NoSuchElementException();
+            }
+            current = next++;
+            advance();
+            return new AttributeEntry(keys[current]);
+        }
+
+        @Override
+        public void remove() {
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(current);
+            current = -1;
+            expectedModCount = modCount;
+        }
+
+    }
+
+    private final class AttributeEntry implements Map.Entry<String, Object> {
+
+        private final String key;
+
+        private AttributeEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            int entry = find(key);
+            Object previous = entry >= 0 ? valueAt(entry) : null;
+            int expected = modCount;
+            put(key, value);
+            modCount = expected;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,12 +15,11 @@
  */
 package org.traccar.model;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ExtendedModel extends BaseModel {
 
-    private Map<String, Object> attributes = new LinkedHashMap<>();
+    private Map<String, Object> attributes = new AttributeMap();
 
     public Map<String, Object> getAttributes() {
         return attributes;
@@ -30,6 +29,38 @@ public class ExtendedModel extends BaseModel {
         this.attributes = attributes;
     }
 
+    public void set(String key, boolean value) {
+        if (attributes instanceof AttributeMap) {
+            ((AttributeMap) attributes).putBoolean(key, value);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
+    public void set(String key, int value) {
+        if (attributes instanceof AttributeMap) {
+            ((AttributeMap) attributes).putInteger(key, value);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
+    public void set(String key, long value) {
+        if (attributes instanceof AttributeMap) {
+            ((AttributeMap) attributes).putLong(key, value);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
+    public void set(String key, double value) {
+        if (attributes instanceof AttributeMap) {
+            ((AttributeMap) attributes).putDouble(key, value);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
     public void set(String key, Boolean value) {
         if (value != null) {
             attributes.put(key, value);
@@ -93,7 +124,9 @@ public class ExtendedModel extends BaseModel {
     }
 
     public double getDouble(String key) {
-        if (attributes.containsKey(key)) {
+        if (attributes instanceof AttributeMap) {
+            return ((AttributeMap) attributes).getDouble(key);
+        } else if (attributes.containsKey(key)) {
             return ((Number) attributes.get(key)).doubleValue();
         } else {
             return 0.0;
@@ -101,7 +134,9 @@ public class ExtendedModel extends BaseModel {
     }
 
     public boolean getBoolean(String key) {
-        if (attributes.containsKey(key)) {
+        if (attributes instanceof AttributeMap) {
+            return ((AttributeMap) attributes).getBoolean(key);
+        } else if (attributes.containsKey(key)) {
             return (Boolean) attributes.get(key);
         } else {
             return false;
@@ -109,7 +144,9 @@ public class ExtendedModel extends BaseModel {
     }
 
     public int getInteger(String key) {
-        if (attributes.containsKey(key)) {
+        if (attributes instanceof AttributeMap) {
+            return ((AttributeMap) attributes).getInteger(key);
+        } else if (attributes.containsKey(key)) {
             return ((Number) attributes.get(key)).intValue();
         } else {
             return 0;
@@ -117,7 +154,9 @@ public class ExtendedModel extends BaseModel {
     }
 
     public long getLong(String key) {
-        if (attributes.containsKey(key)) {
+        if (attributes instanceof AttributeMap) {
+            return ((AttributeMap) attributes).getLong(key);
+        } else if (attributes.containsKey(key)) {
             return ((Number) attributes.get(key)).longValue();
         } else {
             return 0;
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.util.Date;
+
+/**
+ * Aggregated values of device positions for a period. Used both for aggregate queries and for stored daily summaries.
+ */
+public class PositionAggregate {
+
+    private long deviceId;
+
+    public long getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(long deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    private Date dayStart;
+
+    public Date getDayStart() {
+        return dayStart;
+    }
+
+    public void setDayStart(Date dayStart) {
+        this.dayStart = dayStart;
+    }
+
+    private boolean complete;
+
+    /**
+     * Daily summary includes all positions of the day.
+     */
+    public boolean getComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    private long positionCount;
+
+    public long getPositionCount() {
+        return positionCount;
+    }
+
+    public void setPositionCount(long positionCount) {
+        this.positionCount = positionCount;
+    }
+
+    private double speedSum;
+
+    public double getSpeedSum() {
+        return speedSum;
+    }
+
+    public void setSpeedSum(double speedSum) {
+        this.speedSum = speedSum;
+    }
+
+    private double maxSpeed;
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(double maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    private Date firstTime;
+
+    public Date getFirstTime() {
+        return firstTime;
+    }
+
+    public void setFirstTime(Date firstTime) {
+        this.firstTime = firstTime;
+    }
+
+    private long firstPositionId;
+
+    public long getFirstPositionId() {
+        return firstPositionId;
+    }
+
+    public void setFirstPositionId(long firstPositionId) {
+        this.firstPositionId = firstPositionId;
+    }
+
+    private Date lastTime;
+
+    public Date getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(Date lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    private long lastPositionId;
+
+    public long getLastPositionId() {
+        return lastPositionId;
+    }
+
+    public void setLastPositionId(long lastPositionId) {
+        this.lastPositionId = lastPositionId;
+    }
+
+    public void add(Position position) {
+        positionCount += 1;
+        speedSum += position.getSpeed();
+        maxSpeed = Math.max(maxSpeed, position.getSpeed());
+        Date time = position.getFixTime();
+        if (firstTime == null || time.before(firstTime)) {
+            firstTime = time;
+            firstPositionId = position.getId();
+        }
+        if (lastTime == null || !time.before(lastTime)) {
+            lastTime = time;
+            lastPositionId = position.getId();
+        }
+    }
+
+    public void merge(PositionAggregate other) {
+        if (other == null || other.positionCount == 0) {
+            return;
+        }
+        positionCount += other.positionCount;
+        speedSum += other.speedSum;
+        maxSpeed = Math.max(maxSpeed, other.maxSpeed);
+        if (firstTime == null || other.firstTime.before(firstTime)) {
+            firstTime = other.firstTime;
+            firstPositionId = other.firstPositionId;
+        }
+        if (lastTime == null || !other.lastTime.before(lastTime)) {
+            lastTime = other.lastTime;
+            lastPositionId = other.lastPositionId;
+        }
+    }
+
+}
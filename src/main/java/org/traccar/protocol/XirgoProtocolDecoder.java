@@ -16,7 +16,7 @@
 package org.traccar.protocol;
 
 import io.netty.channel.Channel;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.DatagramChannel;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.Context;
 import org.traccar.DeviceSession;
@@ -178,7 +178,7 @@ public class XirgoProtocolDecoder extends BaseProtocolDecoder {
 
         String sentence = (String) msg;
 
-        if (channel instanceof NioDatagramChannel) {
+        if (channel instanceof DatagramChannel) {
             Matcher matcher = Pattern.compile("\\$\\$\\d+,(\\d+),.*,(\\d+)##").matcher(sentence);
             if (matcher.matches()) {
                 String response = "!UDP_ACK," + matcher.group(1) + "," + matcher.group(2);
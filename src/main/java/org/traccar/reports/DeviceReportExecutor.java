@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import org.traccar.Context;
+import org.traccar.Main;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs per-device part of a report on a shared thread pool. Number of threads limits concurrency of all reports and
+ * each request only runs a limited number of devices at the same time. Results are returned in the order of devices.
+ * If one of the devices fails or the requesting thread is interrupted, remaining work is cancelled.
+ */
+public final class DeviceReportExecutor {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private static ThreadPoolExecutor executor;
+
+    private DeviceReportExecutor() {
+    }
+
+    public interface Task<T> {
+        T execute(long deviceId) throws SQLException;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            int threads = Context.getConfig().getInteger(
+                    Keys.REPORT_THREADS, Runtime.getRuntime().availableProcessors());
+            AtomicInteger index = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "report-" + index.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    public static <T> List<T> execute(String report, Collection<Long> deviceIds, Task<T> task) throws SQLException {
+        long startTime = System.nanoTime();
+        try {
+            long[] devices = new long[deviceIds.size()];
+            int index = 0;
+            for (long deviceId : deviceIds) {
+                devices[index++] = deviceId;
+            }
+            int parallelism = Math.min(
+                    Context.getConfig().getInteger(Keys.REPORT_PARALLELISM, DEFAULT_PARALLELISM), devices.length);
+            if (parallelism <= 1) {
+                List<T> result = new ArrayList<>(devices.length);
+                for (long deviceId : devices) {
+                    result.add(task.execute(deviceId));
+                }
+                return result;
+            } else {
+                return executeParallel(devices, parallelism, task);
+            }
+        } finally {
+            if (Main.getInjector() != null) {
+                Main.getInjector().getInstance(StatisticsManager.class)
+                        .registerReportTime(report, System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> executeParallel(
+            long[] devices, int parallelism, Task<T> task) throws SQLException {
+
+        Object[] results = new Object[devices.length];
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(getExecutor());
+        List<Future<Void>> futures = new ArrayList<>(devices.length);
+
+        int submitted = 0;
+        int completed = 0;
+        try {
+            while (completed < devices.length) {
+                while (submitted < devices.length && submitted - completed < parallelism) {
+                    final int index = submitted++;
+                    futures.add(completionService.submit(() -> {
+                        results[index] = task.execute(devices[index]);
+                        return null;
+                    }));
+                }
+                completionService.take().get();
+                completed += 1;
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Report cancelled", error);
+        } catch (ExecutionException error) {
+            Throwable cause = error.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        } finally {
+            if (completed < devices.length) {
+                for (Future<Void> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return (List<T>) Arrays.asList(results);
+    }
+
+}
@@ -44,10 +44,13 @@ public final class Events {
     public static Collection<Event> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
             Collection<String> types, Date from, Date to) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<Event> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Event> events = Context.getDataManager().getEvents(deviceId, from, to);
+        }
+        ArrayList<Event> result = new ArrayList<>();
+        for (Collection<Event> events : DeviceReportExecutor.execute(
+                "events", devices, deviceId -> Context.getDataManager().getEvents(deviceId, from, to))) {
             boolean all = types.isEmpty() || types.contains(Event.ALL_EVENTS);
             for (Event event : events) {
                 if (all || types.contains(event.getType())) {
@@ -72,9 +75,14 @@ public final class Events {
         ArrayList<String> sheetNames = new ArrayList<>();
         HashMap<Long, String> geofenceNames = new HashMap<>();
         HashMap<Long, String> maintenanceNames = new HashMap<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Event> events = Context.getDataManager().getEvents(deviceId, from, to);
+        }
+        Iterator<Collection<Event>> results = DeviceReportExecutor.execute(
+                "events", devices, deviceId -> Context.getDataManager().getEvents(deviceId, from, to)).iterator();
+        for (long deviceId: devices) {
+            Collection<Event> events = results.next();
             boolean all = types.isEmpty() || types.contains(Event.ALL_EVENTS);
             for (Iterator<Event> iterator = events.iterator(); iterator.hasNext();) {
                 Event event = iterator.next();
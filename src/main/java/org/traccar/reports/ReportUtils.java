@@ -26,16 +26,12 @@ import org.jxls.transform.Transformer;
 import org.jxls.transform.poi.PoiTransformer;
 import org.jxls.util.TransformerFactory;
 import org.traccar.Context;
+import org.traccar.Main;
 import org.traccar.database.DeviceManager;
 import org.traccar.database.IdentityManager;
-import org.traccar.handler.events.MotionEventHandler;
-import org.traccar.model.DeviceState;
 import org.traccar.model.Driver;
-import org.traccar.model.Event;
 import org.traccar.model.Position;
 import org.traccar.reports.model.BaseReport;
-import org.traccar.reports.model.StopReport;
-import org.traccar.reports.model.TripReport;
 import org.traccar.reports.model.TripsConfig;
 
 import java.io.IOException;
@@ -43,12 +39,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.TimeZone;
 
 public final class ReportUtils {
@@ -168,211 +164,31 @@ public final class ReportUtils {
         transformer.write();
     }
 
-    private static TripReport calculateTrip(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer) {
-
-        Position startTrip = positions.get(startIndex);
-        Position endTrip = positions.get(endIndex);
-
-        double speedMax = 0.0;
-        double speedSum = 0.0;
-        for (int i = startIndex; i <= endIndex; i++) {
-            double speed = positions.get(i).getSpeed();
-            speedSum += speed;
-            if (speed > speedMax) {
-                speedMax = speed;
-            }
-        }
-
-        TripReport trip = new TripReport();
-
-        long tripDuration = endTrip.getFixTime().getTime() - startTrip.getFixTime().getTime();
-        long deviceId = startTrip.getDeviceId();
-        trip.setDeviceId(deviceId);
-        trip.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-
-        trip.setStartPositionId(startTrip.getId());
-        trip.setStartLat(startTrip.getLatitude());
-        trip.setStartLon(startTrip.getLongitude());
-        trip.setStartTime(startTrip.getFixTime());
-        String startAddress = startTrip.getAddress();
-        if (startAddress == null && Context.getGeocoder() != null
-                && Context.getConfig().getBoolean("geocoder.onRequest")) {
-            startAddress = Context.getGeocoder().getAddress(startTrip.getLatitude(), startTrip.getLongitude(), null);
-        }
-        trip.setStartAddress(startAddress);
-
-        trip.setEndPositionId(endTrip.getId());
-        trip.setEndLat(endTrip.getLatitude());
-        trip.setEndLon(endTrip.getLongitude());
-        trip.setEndTime(endTrip.getFixTime());
-        String endAddress = endTrip.getAddress();
-        if (endAddress == null && Context.getGeocoder() != null
-                && Context.getConfig().getBoolean("geocoder.onRequest")) {
-            endAddress = Context.getGeocoder().getAddress(endTrip.getLatitude(), endTrip.getLongitude(), null);
-        }
-        trip.setEndAddress(endAddress);
-
-        trip.setDistance(calculateDistance(startTrip, endTrip, !ignoreOdometer));
-        trip.setDuration(tripDuration);
-        trip.setAverageSpeed(speedSum / (endIndex - startIndex));
-        trip.setMaxSpeed(speedMax);
-        trip.setSpentFuel(calculateFuel(startTrip, endTrip));
-
-        trip.setDriverUniqueId(findDriver(startTrip, endTrip));
-        trip.setDriverName(findDriverName(trip.getDriverUniqueId()));
-
-        if (!ignoreOdometer
-                && startTrip.getDouble(Position.KEY_ODOMETER) != 0
-                && endTrip.getDouble(Position.KEY_ODOMETER) != 0) {
-            trip.setStartOdometer(startTrip.getDouble(Position.KEY_ODOMETER));
-            trip.setEndOdometer(endTrip.getDouble(Position.KEY_ODOMETER));
-        } else {
-            trip.setStartOdometer(startTrip.getDouble(Position.KEY_TOTAL_DISTANCE));
-            trip.setEndOdometer(endTrip.getDouble(Position.KEY_TOTAL_DISTANCE));
-        }
-
-        return trip;
-    }
-
-    private static StopReport calculateStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer) {
-
-        Position startStop = positions.get(startIndex);
-        Position endStop = positions.get(endIndex);
-
-        StopReport stop = new StopReport();
-
-        long deviceId = startStop.getDeviceId();
-        stop.setDeviceId(deviceId);
-        stop.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-
-        stop.setPositionId(startStop.getId());
-        stop.setLatitude(startStop.getLatitude());
-        stop.setLongitude(startStop.getLongitude());
-        stop.setStartTime(startStop.getFixTime());
-        String address = startStop.getAddress();
-        if (address == null && Context.getGeocoder() != null
-                && Context.getConfig().getBoolean("geocoder.onRequest")) {
-            address = Context.getGeocoder().getAddress(stop.getLatitude(), stop.getLongitude(), null);
-        }
-        stop.setAddress(address);
-
-        stop.setEndTime(endStop.getFixTime());
-
-        long stopDuration = endStop.getFixTime().getTime() - startStop.getFixTime().getTime();
-        stop.setDuration(stopDuration);
-        stop.setSpentFuel(calculateFuel(startStop, endStop));
-
-        long engineHours = 0;
-        if (startStop.getAttributes().containsKey(Position.KEY_HOURS)
-                && endStop.getAttributes().containsKey(Position.KEY_HOURS)) {
-            engineHours = endStop.getLong(Position.KEY_HOURS) - startStop.getLong(Position.KEY_HOURS);
-        } else if (Context.getConfig().getBoolean("processing.engineHours.enable")) {
-            // Temporary fallback for old data, to be removed in May 2019
-            for (int i = startIndex + 1; i <= endIndex; i++) {
-                if (positions.get(i).getBoolean(Position.KEY_IGNITION)
-                        && positions.get(i - 1).getBoolean(Position.KEY_IGNITION)) {
-                    engineHours += positions.get(i).getFixTime().getTime()
-                            - positions.get(i - 1).getFixTime().getTime();
-                }
-            }
-        }
-        stop.setEngineHours(engineHours);
-
-        if (!ignoreOdometer
-                && startStop.getDouble(Position.KEY_ODOMETER) != 0
-                && endStop.getDouble(Position.KEY_ODOMETER) != 0) {
-            stop.setStartOdometer(startStop.getDouble(Position.KEY_ODOMETER));
-            stop.setEndOdometer(endStop.getDouble(Position.KEY_ODOMETER));
-        } else {
-            stop.setStartOdometer(startStop.getDouble(Position.KEY_TOTAL_DISTANCE));
-            stop.setEndOdometer(endStop.getDouble(Position.KEY_TOTAL_DISTANCE));
-        }
-
-        return stop;
-
-    }
-
-    private static <T extends BaseReport> T calculateTripOrStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer, Class<T> reportClass) {
-
-        if (reportClass.equals(TripReport.class)) {
-            return (T) calculateTrip(positions, startIndex, endIndex, ignoreOdometer);
-        } else {
-            return (T) calculateStop(positions, startIndex, endIndex, ignoreOdometer);
-        }
-    }
-
-    private static boolean isMoving(ArrayList<Position> positions, int index, TripsConfig tripsConfig) {
-        if (tripsConfig.getMinimalNoDataDuration() > 0) {
-            boolean beforeGap = index < positions.size() - 1
-                    && positions.get(index + 1).getFixTime().getTime() - positions.get(index).getFixTime().getTime()
-                    >= tripsConfig.getMinimalNoDataDuration();
-            boolean afterGap = index > 0
-                    && positions.get(index).getFixTime().getTime() - positions.get(index - 1).getFixTime().getTime()
-                    >= tripsConfig.getMinimalNoDataDuration();
-            if (beforeGap || afterGap) {
-                return false;
-            }
-        }
-        if (positions.get(index).getAttributes().containsKey(Position.KEY_MOTION)
-                && positions.get(index).getAttributes().get(Position.KEY_MOTION) instanceof Boolean) {
-            return positions.get(index).getBoolean(Position.KEY_MOTION);
-        } else {
-            return positions.get(index).getSpeed() > tripsConfig.getSpeedThreshold();
-        }
-    }
-
     public static <T extends BaseReport> Collection<T> detectTripsAndStops(
             IdentityManager identityManager, DeviceManager deviceManager,
             Collection<Position> positionCollection,
             TripsConfig tripsConfig, boolean ignoreOdometer, Class<T> reportClass) {
 
-        Collection<T> result = new ArrayList<>();
-
-        ArrayList<Position> positions = new ArrayList<>(positionCollection);
-        if (!positions.isEmpty()) {
-            boolean trips = reportClass.equals(TripReport.class);
-            MotionEventHandler  motionHandler = new MotionEventHandler(identityManager, deviceManager, tripsConfig);
-            DeviceState deviceState = new DeviceState();
-            deviceState.setMotionState(isMoving(positions, 0, tripsConfig));
-            int startEventIndex = trips == deviceState.getMotionState() ? 0 : -1;
-            int startNoEventIndex = -1;
-            for (int i = 0; i < positions.size(); i++) {
-                Map<Event, Position> event = motionHandler.updateMotionState(deviceState, positions.get(i),
-                        isMoving(positions, i, tripsConfig));
-                if (startEventIndex == -1
-                        && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
-                        || trips == deviceState.getMotionState() && event != null)) {
-                    startEventIndex = i;
-                    startNoEventIndex = -1;
-                } else if (trips != deviceState.getMotionState() && startEventIndex != -1
-                        && deviceState.getMotionPosition() == null && event == null) {
-                    startEventIndex = -1;
-                }
-                if (startNoEventIndex == -1
-                        && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
-                        || trips != deviceState.getMotionState() && event != null)) {
-                    startNoEventIndex = i;
-                } else if (startNoEventIndex != -1 && deviceState.getMotionPosition() == null && event == null) {
-                    startNoEventIndex = -1;
-                }
-                if (startEventIndex != -1 && startNoEventIndex != -1 && event != null
-                        && trips != deviceState.getMotionState()) {
-                    result.add(calculateTripOrStop(positions, startEventIndex, startNoEventIndex,
-                            ignoreOdometer, reportClass));
-                    startEventIndex = -1;
-                }
-            }
-            if (startEventIndex != -1 && (startNoEventIndex != -1 || !trips)) {
-                result.add(calculateTripOrStop(positions, startEventIndex,
-                            startNoEventIndex != -1 ? startNoEventIndex : positions.size() - 1,
-                            ignoreOdometer, reportClass));
-            }
+        TripsAndStopsDetector<T> detector = new TripsAndStopsDetector<>(
+                identityManager, deviceManager, tripsConfig, ignoreOdometer, reportClass);
+        for (Position position : positionCollection) {
+            detector.accept(position);
         }
+        return detector.getResult();
+    }
 
-        return result;
+    public static <T extends BaseReport> Collection<T> detectTripsAndStops(
+            long deviceId, Date from, Date to, Class<T> reportClass) throws SQLException {
+        boolean ignoreOdometer = Context.getDeviceManager()
+                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
+
+        IdentityManager identityManager = Main.getInjector().getInstance(IdentityManager.class);
+        DeviceManager deviceManager = Main.getInjector().getInstance(DeviceManager.class);
+
+        TripsAndStopsDetector<T> detector = new TripsAndStopsDetector<>(
+                identityManager, deviceManager, Context.getTripsConfig(), ignoreOdometer, reportClass);
+        Context.getDataManager().getPositions(deviceId, from, to, detector);
+        return detector.getResult();
     }
 
 }
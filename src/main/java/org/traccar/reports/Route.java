@@ -24,6 +24,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.function.Consumer;
 
 import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
@@ -37,15 +39,21 @@ public final class Route {
     private Route() {
     }
 
-    public static Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
-            Date from, Date to) throws SQLException {
+    public static Collection<Long> getDevices(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+            Date from, Date to) {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<Position> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(Context.getDataManager().getPositions(deviceId, from, to));
         }
-        return result;
+        return devices;
+    }
+
+    public static void getObjects(Collection<Long> devices, Date from, Date to, Consumer<Position> consumer)
+            throws SQLException {
+        for (long deviceId: devices) {
+            Context.getDataManager().getPositions(deviceId, from, to, consumer);
+        }
     }
 
     public static void getExcel(OutputStream outputStream,
@@ -54,10 +62,14 @@ public final class Route {
         ReportUtils.checkPeriodLimit(from, to);
         ArrayList<DeviceReport> devicesRoutes = new ArrayList<>();
         ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Position> positions = Context.getDataManager()
-                    .getPositions(deviceId, from, to);
+        }
+        Iterator<Collection<Position>> results = DeviceReportExecutor.execute(
+                "route", devices, deviceId -> Context.getDataManager().getPositions(deviceId, from, to)).iterator();
+        for (long deviceId: devices) {
+            Collection<Position> positions = results.next();
             DeviceReport deviceRoutes = new DeviceReport();
             Device device = Context.getIdentityManager().getById(deviceId);
             deviceRoutes.setDeviceName(device.getName());
@@ -25,12 +25,11 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 
 import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
 import org.traccar.Main;
-import org.traccar.database.DeviceManager;
-import org.traccar.database.IdentityManager;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.reports.model.DeviceReport;
@@ -42,25 +41,25 @@ public final class Stops {
     }
 
     private static Collection<StopReport> detectStops(long deviceId, Date from, Date to) throws SQLException {
-        boolean ignoreOdometer = Context.getDeviceManager()
-                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-
-        IdentityManager identityManager = Main.getInjector().getInstance(IdentityManager.class);
-        DeviceManager deviceManager = Main.getInjector().getInstance(DeviceManager.class);
-
-        return ReportUtils.detectTripsAndStops(
-                identityManager, deviceManager, Context.getDataManager().getPositions(deviceId, from, to),
-                Context.getTripsConfig(), ignoreOdometer, StopReport.class);
+        TripsAndStopsRecorder recorder = Main.getInjector().getInstance(TripsAndStopsRecorder.class);
+        if (recorder != null) {
+            return recorder.getStops(deviceId, from, to);
+        }
+        return ReportUtils.detectTripsAndStops(deviceId, from, to, StopReport.class);
     }
 
     public static Collection<StopReport> getObjects(
             long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
             Date from, Date to) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<StopReport> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(detectStops(deviceId, from, to));
+        }
+        ArrayList<StopReport> result = new ArrayList<>();
+        for (Collection<StopReport> items : DeviceReportExecutor.execute(
+                "stops", devices, deviceId -> detectStops(deviceId, from, to))) {
+            result.addAll(items);
         }
         return result;
     }
@@ -71,9 +70,14 @@ public final class Stops {
         ReportUtils.checkPeriodLimit(from, to);
         ArrayList<DeviceReport> devicesStops = new ArrayList<>();
         ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<StopReport> stops = detectStops(deviceId, from, to);
+        }
+        Iterator<Collection<StopReport>> results = DeviceReportExecutor.execute(
+                "stops", devices, deviceId -> detectStops(deviceId, from, to)).iterator();
+        for (long deviceId: devices) {
+            Collection<StopReport> stops = results.next();
             DeviceReport deviceStops = new DeviceReport();
             Device device = Context.getIdentityManager().getById(deviceId);
             deviceStops.setDeviceName(device.getName());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -21,13 +21,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.function.Consumer;
 
 import org.jxls.util.JxlsHelper;
 import org.traccar.Context;
+import org.traccar.Main;
+import org.traccar.database.DailySummaryManager;
 import org.traccar.model.Position;
+import org.traccar.model.PositionAggregate;
 import org.traccar.reports.model.SummaryReport;
 
 public final class Summary {
@@ -35,54 +38,137 @@ public final class Summary {
     private Summary() {
     }
 
-    private static SummaryReport calculateSummaryResult(long deviceId, Date from, Date to) throws SQLException {
-        SummaryReport result = new SummaryReport();
-        result.setDeviceId(deviceId);
-        result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-        Collection<Position> positions = Context.getDataManager().getPositions(deviceId, from, to);
-        if (positions != null && !positions.isEmpty()) {
-            Position firstPosition = null;
-            Position previousPosition = null;
-            double speedSum = 0;
-            boolean engineHoursEnabled = Context.getConfig().getBoolean("processing.engineHours.enable");
-            for (Position position : positions) {
-                if (firstPosition == null) {
-                    firstPosition = position;
-                }
-                if (engineHoursEnabled && previousPosition != null
-                        && position.getBoolean(Position.KEY_IGNITION)
-                        && previousPosition.getBoolean(Position.KEY_IGNITION)) {
-                    // Temporary fallback for old data, to be removed in May 2019
-                    result.addEngineHours(position.getFixTime().getTime()
-                            - previousPosition.getFixTime().getTime());
-                }
-                previousPosition = position;
-                speedSum += position.getSpeed();
-                result.setMaxSpeed(position.getSpeed());
+    private static final class SummaryCalculator implements Consumer<Position> {
+
+        private final SummaryReport result;
+        private final boolean engineHoursEnabled;
+
+        private Position firstPosition;
+        private Position previousPosition;
+        private double speedSum;
+        private int count;
+
+        private SummaryCalculator(SummaryReport result, boolean engineHoursEnabled) {
+            this.result = result;
+            this.engineHoursEnabled = engineHoursEnabled;
+        }
+
+        @Override
+        public void accept(Position position) {
+            if (firstPosition == null) {
+                firstPosition = position;
             }
-            boolean ignoreOdometer = Context.getDeviceManager()
-                    .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-            result.setDistance(ReportUtils.calculateDistance(firstPosition, previousPosition, !ignoreOdometer));
-            result.setAverageSpeed(speedSum / positions.size());
-            result.setSpentFuel(ReportUtils.calculateFuel(firstPosition, previousPosition));
-
-            if (engineHoursEnabled
-                    && firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
-                    && previousPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
-                result.setEngineHours(
-                        previousPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS));
+            if (engineHoursEnabled && previousPosition != null
+                    && position.getBoolean(Position.KEY_IGNITION)
+                    && previousPosition.getBoolean(Position.KEY_IGNITION)) {
+                // Temporary fallback for old data, to be removed in May 2019
+                result.addEngineHours(position.getFixTime().getTime()
+                        - previousPosition.getFixTime().getTime());
             }
+            previousPosition = position;
+            speedSum += position.getSpeed();
+            count += 1;
+            result.setMaxSpeed(position.getSpeed());
+        }
 
-            if (!ignoreOdometer
-                    && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
-                    && previousPosition.getDouble(Position.KEY_ODOMETER) != 0) {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_ODOMETER));
-            } else {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+    }
+
+    private static void fillResult(
+            SummaryReport result, long deviceId, Position firstPosition, Position lastPosition,
+            double averageSpeed, boolean engineHoursEnabled) {
+        boolean ignoreOdometer = Context.getDeviceManager()
+                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
+        result.setDistance(ReportUtils.calculateDistance(firstPosition, lastPosition, !ignoreOdometer));
+        result.setAverageSpeed(averageSpeed);
+        result.setSpentFuel(ReportUtils.calculateFuel(firstPosition, lastPosition));
+
+        if (engineHoursEnabled
+                && firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
+                && lastPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
+            result.setEngineHours(
+                    lastPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS));
+        }
+
+        if (!ignoreOdometer
+                && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
+                && lastPosition.getDouble(Position.KEY_ODOMETER) != 0) {
+            result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
+            result.setEndOdometer(lastPosition.getDouble(Position.KEY_ODOMETER));
+        } else {
+            result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+            result.setEndOdometer(lastPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+        }
+    }
+
+    private static Position getPosition(long deviceId, long positionId, Date fixTime, boolean first)
+            throws SQLException {
+        if (positionId != 0) {
+            Position position = Context.getDataManager().getObject(Position.class, positionId);
+            if (position != null) {
+                return position;
+            }
+        }
+        Position result = null;
+        for (Position position : Context.getDataManager().getPositions(deviceId, fixTime)) {
+            if (result == null || !first) {
+                result = position;
             }
+        }
+        return result;
+    }
+
+    /**
+     * Calculate summary from values aggregated by the database, reading only the first and the last position. Returns
+     * false if the summary has to be calculated from all positions.
+     */
+    private static boolean calculateAggregatedResult(
+            SummaryReport result, long deviceId, Date from, Date to, boolean engineHoursEnabled) throws SQLException {
+        if (!Context.getConfig().hasKey("database.selectPositionAggregate")) {
+            return false;
+        }
+        DailySummaryManager dailySummaryManager = Main.getInjector() != null
+                ? Main.getInjector().getInstance(DailySummaryManager.class) : null;
+        Date end = new Date(to.getTime() + 1);
+        PositionAggregate aggregate;
+        if (dailySummaryManager != null) {
+            aggregate = dailySummaryManager.getAggregate(deviceId, from.getTime(), end.getTime());
+        } else {
+            aggregate = Context.getDataManager().getPositionAggregate(deviceId, from, end);
+        }
+        if (aggregate == null) {
+            return false;
+        } else if (aggregate.getPositionCount() == 0) {
+            return true;
+        }
 
+        Position firstPosition = getPosition(deviceId, aggregate.getFirstPositionId(), aggregate.getFirstTime(), true);
+        Position lastPosition = getPosition(deviceId, aggregate.getLastPositionId(), aggregate.getLastTime(), false);
+        if (firstPosition == null || lastPosition == null) {
+            return false;
+        }
+        if (engineHoursEnabled && (!firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
+                || !lastPosition.getAttributes().containsKey(Position.KEY_HOURS))) {
+            return false;
+        }
+
+        result.setMaxSpeed(aggregate.getMaxSpeed());
+        fillResult(result, deviceId, firstPosition, lastPosition,
+                aggregate.getSpeedSum() / aggregate.getPositionCount(), engineHoursEnabled);
+        return true;
+    }
+
+    private static SummaryReport calculateSummaryResult(long deviceId, Date from, Date to) throws SQLException {
+        SummaryReport result = new SummaryReport();
+        result.setDeviceId(deviceId);
+        result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
+        boolean engineHoursEnabled = Context.getConfig().getBoolean("processing.engineHours.enable");
+        if (!calculateAggregatedResult(result, deviceId, from, to, engineHoursEnabled)) {
+            SummaryCalculator calculator = new SummaryCalculator(result, engineHoursEnabled);
+            Context.getDataManager().getPositions(deviceId, from, to, calculator);
+            if (calculator.count > 0) {
+                fillResult(result, deviceId, calculator.firstPosition, calculator.previousPosition,
+                        calculator.speedSum / calculator.count, engineHoursEnabled);
+            }
         }
         return result;
     }
@@ -90,12 +176,12 @@ public final class Summary {
     public static Collection<SummaryReport> getObjects(long userId, Collection<Long> deviceIds,
             Collection<Long> groupIds, Date from, Date to) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<SummaryReport> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.add(calculateSummaryResult(deviceId, from, to));
         }
-        return result;
+        return DeviceReportExecutor.execute(
+                "summary", devices, deviceId -> calculateSummaryResult(deviceId, from, to));
     }
 
     public static void getExcel(OutputStream outputStream,
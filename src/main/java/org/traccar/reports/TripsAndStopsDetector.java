@@ -0,0 +1,327 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import org.traccar.Context;
+import org.traccar.database.DeviceManager;
+import org.traccar.database.IdentityManager;
+import org.traccar.handler.events.MotionEventHandler;
+import org.traccar.model.DeviceState;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+import org.traccar.reports.model.BaseReport;
+import org.traccar.reports.model.StopReport;
+import org.traccar.reports.model.TripReport;
+import org.traccar.reports.model.TripsConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Single pass trips and stops detection. Positions are consumed one by one in time order, so only the boundary
+ * positions of the current segment are kept in memory.
+ */
+public class TripsAndStopsDetector<T extends BaseReport> implements Consumer<Position> {
+
+    private static final class Segment {
+
+        private Position startPosition;
+        private int startIndex;
+        private Position endPosition;
+        private int endIndex;
+        private double speedSum;
+        private double speedMax;
+        private long ignitionTime;
+
+        private void start(Position position, int index) {
+            startPosition = position;
+            startIndex = index;
+            speedSum = 0;
+            speedMax = 0;
+            ignitionTime = 0;
+        }
+
+        private void add(Position position, Position previousPosition, int index) {
+            endPosition = position;
+            endIndex = index;
+            speedSum += position.getSpeed();
+            speedMax = Math.max(speedMax, position.getSpeed());
+            if (index > startIndex && previousPosition != null
+                    && position.getBoolean(Position.KEY_IGNITION)
+                    && previousPosition.getBoolean(Position.KEY_IGNITION)) {
+                ignitionTime += position.getFixTime().getTime() - previousPosition.getFixTime().getTime();
+            }
+        }
+
+        private void copy(Segment segment) {
+            startPosition = segment.startPosition;
+            startIndex = segment.startIndex;
+            endPosition = segment.endPosition;
+            endIndex = segment.endIndex;
+            speedSum = segment.speedSum;
+            speedMax = segment.speedMax;
+            ignitionTime = segment.ignitionTime;
+        }
+
+    }
+
+    private final TripsConfig tripsConfig;
+    private final boolean ignoreOdometer;
+    private final Class<T> reportClass;
+    private final boolean trips;
+    private final MotionEventHandler motionHandler;
+    private final DeviceState deviceState = new DeviceState();
+
+    private final Collection<T> result = new ArrayList<>();
+
+    private final Segment segment = new Segment();
+    private final Segment closedSegment = new Segment();
+
+    private Position previousPosition;
+    private Position currentPosition;
+    private int currentIndex = -1;
+
+    private boolean startEvent;
+    private boolean startNoEvent;
+
+    public TripsAndStopsDetector(
+            IdentityManager identityManager, DeviceManager deviceManager,
+            TripsConfig tripsConfig, boolean ignoreOdometer, Class<T> reportClass) {
+        this.tripsConfig = tripsConfig;
+        this.ignoreOdometer = ignoreOdometer;
+        this.reportClass = reportClass;
+        this.trips = reportClass.equals(TripReport.class);
+        this.motionHandler = new MotionEventHandler(identityManager, deviceManager, tripsConfig);
+    }
+
+    @Override
+    public void accept(Position position) {
+        if (currentPosition != null) {
+            process(position);
+            previousPosition = currentPosition;
+        }
+        currentPosition = position;
+        currentIndex += 1;
+    }
+
+    /**
+     * Returns segments closed so far and removes them from the result. Closed segments don't change with further
+     * positions, the open segment is kept and is only included by {@link #getResult()}.
+     */
+    public Collection<T> pollResult() {
+        if (result.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Collection<T> closed = new ArrayList<>(result);
+        result.clear();
+        return closed;
+    }
+
+    public Collection<T> getResult() {
+        if (currentPosition != null) {
+            process(null);
+            previousPosition = currentPosition;
+            currentPosition = null;
+            if (startEvent && (startNoEvent || !trips)) {
+                result.add(calculateTripOrStop(startNoEvent ? closedSegment : segment));
+            }
+            startEvent = false;
+        }
+        return result;
+    }
+
+    private boolean isMoving(Position nextPosition) {
+        if (tripsConfig.getMinimalNoDataDuration() > 0) {
+            boolean beforeGap = nextPosition != null
+                    && nextPosition.getFixTime().getTime() - currentPosition.getFixTime().getTime()
+                    >= tripsConfig.getMinimalNoDataDuration();
+            boolean afterGap = previousPosition != null
+                    && currentPosition.getFixTime().getTime() - previousPosition.getFixTime().getTime()
+                    >= tripsConfig.getMinimalNoDataDuration();
+            if (beforeGap || afterGap) {
+                return false;
+            }
+        }
+        if (currentPosition.getAttributes().containsKey(Position.KEY_MOTION)
+                && currentPosition.getAttributes().get(Position.KEY_MOTION) instanceof Boolean) {
+            return currentPosition.getBoolean(Position.KEY_MOTION);
+        } else {
+            return currentPosition.getSpeed() > tripsConfig.getSpeedThreshold();
+        }
+    }
+
+    private void process(Position nextPosition) {
+
+        boolean moving = isMoving(nextPosition);
+
+        if (currentIndex == 0) {
+            deviceState.setMotionState(moving);
+            if (trips == deviceState.getMotionState()) {
+                startEvent = true;
+                segment.start(currentPosition, currentIndex);
+            }
+        }
+
+        if (startEvent) {
+            segment.add(currentPosition, previousPosition, currentIndex);
+        }
+
+        Map<Event, Position> event = motionHandler.updateMotionState(deviceState, currentPosition, moving);
+        if (!startEvent
+                && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
+                || trips == deviceState.getMotionState() && event != null)) {
+            startEvent = true;
+            segment.start(currentPosition, currentIndex);
+            segment.add(currentPosition, previousPosition, currentIndex);
+            startNoEvent = false;
+        } else if (trips != deviceState.getMotionState() && startEvent
+                && deviceState.getMotionPosition() == null && event == null) {
+            startEvent = false;
+        }
+        if (!startNoEvent
+                && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
+                || trips != deviceState.getMotionState() && event != null)) {
+            startNoEvent = true;
+            closedSegment.copy(segment);
+        } else if (startNoEvent && deviceState.getMotionPosition() == null && event == null) {
+            startNoEvent = false;
+        }
+        if (startEvent && startNoEvent && event != null && trips != deviceState.getMotionState()) {
+            result.add(calculateTripOrStop(closedSegment));
+            startEvent = false;
+        }
+    }
+
+    private T calculateTripOrStop(Segment segment) {
+        if (reportClass.equals(TripReport.class)) {
+            return reportClass.cast(calculateTrip(segment));
+        } else {
+            return reportClass.cast(calculateStop(segment));
+        }
+    }
+
+    private TripReport calculateTrip(Segment segment) {
+
+        Position startTrip = segment.startPosition;
+        Position endTrip = segment.endPosition;
+
+        TripReport trip = new TripReport();
+
+        long tripDuration = endTrip.getFixTime().getTime() - startTrip.getFixTime().getTime();
+        long deviceId = startTrip.getDeviceId();
+        trip.setDeviceId(deviceId);
+        trip.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
+
+        trip.setStartPositionId(startTrip.getId());
+        trip.setStartLat(startTrip.getLatitude());
+        trip.setStartLon(startTrip.getLongitude());
+        trip.setStartTime(startTrip.getFixTime());
+        String startAddress = startTrip.getAddress();
+        if (startAddress == null && Context.getGeocoder() != null
+                && Context.getConfig().getBoolean("geocoder.onRequest")) {
+            startAddress = Context.getGeocoder().getAddress(startTrip.getLatitude(), startTrip.getLongitude(), null);
+        }
+        trip.setStartAddress(startAddress);
+
+        trip.setEndPositionId(endTrip.getId());
+        trip.setEndLat(endTrip.getLatitude());
+        trip.setEndLon(endTrip.getLongitude());
+        trip.setEndTime(endTrip.getFixTime());
+        String endAddress = endTrip.getAddress();
+        if (endAddress == null && Context.getGeocoder() != null
+                && Context.getConfig().getBoolean("geocoder.onRequest")) {
+            endAddress = Context.getGeocoder().getAddress(endTrip.getLatitude(), endTrip.getLongitude(), null);
+        }
+        trip.setEndAddress(endAddress);
+
+        trip.setDistance(ReportUtils.calculateDistance(startTrip, endTrip, !ignoreOdometer));
+        trip.setDuration(tripDuration);
+        trip.setAverageSpeed(segment.speedSum / (segment.endIndex - segment.startIndex));
+        trip.setMaxSpeed(segment.speedMax);
+        trip.setSpentFuel(ReportUtils.calculateFuel(startTrip, endTrip));
+
+        trip.setDriverUniqueId(ReportUtils.findDriver(startTrip, endTrip));
+        trip.setDriverName(ReportUtils.findDriverName(trip.getDriverUniqueId()));
+
+        if (!ignoreOdometer
+                && startTrip.getDouble(Position.KEY_ODOMETER) != 0
+                && endTrip.getDouble(Position.KEY_ODOMETER) != 0) {
+            trip.setStartOdometer(startTrip.getDouble(Position.KEY_ODOMETER));
+            trip.setEndOdometer(endTrip.getDouble(Position.KEY_ODOMETER));
+        } else {
+            trip.setStartOdometer(startTrip.getDouble(Position.KEY_TOTAL_DISTANCE));
+            trip.setEndOdometer(endTrip.getDouble(Position.KEY_TOTAL_DISTANCE));
+        }
+
+        return trip;
+    }
+
+    private StopReport calculateStop(Segment segment) {
+
+        Position startStop = segment.startPosition;
+        Position endStop = segment.endPosition;
+
+        StopReport stop = new StopReport();
+
+        long deviceId = startStop.getDeviceId();
+        stop.setDeviceId(deviceId);
+        stop.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
+
+        stop.setPositionId(startStop.getId());
+        stop.setLatitude(startStop.getLatitude());
+        stop.setLongitude(startStop.getLongitude());
+        stop.setStartTime(startStop.getFixTime());
+        String address = startStop.getAddress();
+        if (address == null && Context.getGeocoder() != null
+                && Context.getConfig().getBoolean("geocoder.onRequest")) {
+            address = Context.getGeocoder().getAddress(stop.getLatitude(), stop.getLongitude(), null);
+        }
+        stop.setAddress(address);
+
+        stop.setEndTime(endStop.getFixTime());
+
+        long stopDuration = endStop.getFixTime().getTime() - startStop.getFixTime().getTime();
+        stop.setDuration(stopDuration);
+        stop.setSpentFuel(ReportUtils.calculateFuel(startStop, endStop));
+
+        long engineHours = 0;
+        if (startStop.getAttributes().containsKey(Position.KEY_HOURS)
+                && endStop.getAttributes().containsKey(Position.KEY_HOURS)) {
+            engineHours = endStop.getLong(Position.KEY_HOURS) - startStop.getLong(Position.KEY_HOURS);
+        } else if (Context.getConfig().getBoolean("processing.engineHours.enable")) {
+            // Temporary fallback for old data, to be removed in May 2019
+            engineHours = segment.ignitionTime;
+        }
+        stop.setEngineHours(engineHours);
+
+        if (!ignoreOdometer
+                && startStop.getDouble(Position.KEY_ODOMETER) != 0
+                && endStop.getDouble(Position.KEY_ODOMETER) != 0) {
+            stop.setStartOdometer(startStop.getDouble(Position.KEY_ODOMETER));
+            stop.setEndOdometer(endStop.getDouble(Position.KEY_ODOMETER));
+        } else {
+            stop.setStartOdometer(startStop.getDouble(Position.KEY_TOTAL_DISTANCE));
+            stop.setEndOdometer(endStop.getDouble(Position.KEY_TOTAL_DISTANCE));
+        }
+
+        return stop;
+
+    }
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.StripedExecutor;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+import org.traccar.database.DeviceManager;
+import org.traccar.database.IdentityManager;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.reports.model.BaseReport;
+import org.traccar.reports.model.StopReport;
+import org.traccar.reports.model.TripReport;
+import org.traccar.reports.model.TripsConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Detects trips and stops when positions are received. Closed segments are stored in the database and the open
+ * segment of each device stays in memory. After restart the open segment is restored by replaying all positions since
+ * the end of the last stored segment. If only one kind of segment is stored, the other one is replayed from the same
+ * time. Positions older than the last processed position of the device are not included.
+ *
+ * <p>Positions are processed by background threads, tasks of the same device run in order. Segments are stored in
+ * order, a segment that fails to store is retried with the next position of the device and later segments wait for
+ * it, so stored rows never have gaps. Segments that are still not stored on shutdown are detected again by the replay
+ * after restart.
+ *
+ * <p>Backfill of a device runs on the same thread as its live positions and always before its first live position,
+ * so backfilled and live segments are continuous.
+ */
+public class TripsAndStopsRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TripsAndStopsRecorder.class);
+
+    private static final long STOP_TIMEOUT = 10000;
+    private static final int THREAD_COUNT = 4;
+    private static final int QUEUE_SIZE = 10000;
+
+    private final DataManager dataManager;
+    private final IdentityManager identityManager;
+    private final DeviceManager deviceManager;
+    private final TripsConfig tripsConfig;
+
+    private final Map<Long, DeviceSegments> devices = new ConcurrentHashMap<>();
+    private final Set<Long> backfilledDevices = ConcurrentHashMap.newKeySet();
+
+    private Date backfillFrom;
+    private volatile boolean stopped;
+
+    private final StripedExecutor executor;
+    private ExecutorService backfillExecutor;
+
+    private static final class DeviceSegments {
+
+        private boolean initialized;
+        private TripsAndStopsDetector<TripReport> trips;
+        private TripsAndStopsDetector<StopReport> stops;
+        private Date lastTripEnd;
+        private Date lastStopEnd;
+        private Date lastTime;
+        private final List<TripReport> pendingTrips = new LinkedList<>();
+        private final List<StopReport> pendingStops = new LinkedList<>();
+
+    }
+
+    public TripsAndStopsRecorder(
+            Config config, DataManager dataManager, IdentityManager identityManager, DeviceManager deviceManager,
+            TripsConfig tripsConfig) {
+        this.dataManager = dataManager;
+        this.identityManager = identityManager;
+        this.deviceManager = deviceManager;
+        this.tripsConfig = tripsConfig;
+
+        executor = new StripedExecutor("trips-and-stops", THREAD_COUNT, QUEUE_SIZE);
+
+        int backfillDays = config.getInteger(Keys.DATABASE_TRIPS_AND_STOPS_BACKFILL_DAYS, 0);
+        if (backfillDays > 0) {
+            Date to = new Date();
+            backfillFrom = new Date(to.getTime() - TimeUnit.DAYS.toMillis(backfillDays));
+            backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trips-and-stops-backfill");
+                thread.setDaemon(true);
+                return thread;
+            });
+            backfillExecutor.execute(() -> backfill(to));
+        }
+    }
+
+    private <T extends BaseReport> TripsAndStopsDetector<T> createDetector(long deviceId, Class<T> reportClass) {
+        boolean ignoreOdometer = deviceManager.lookupAttributeBoolean(
+                deviceId, "report.ignoreOdometer", false, false, true);
+        return new TripsAndStopsDetector<>(identityManager, deviceManager, tripsConfig, ignoreOdometer, reportClass);
+    }
+
+    private void storeTrips(DeviceSegments segments, Collection<TripReport> trips) {
+        for (TripReport trip : trips) {
+            if (segments.lastTripEnd == null || trip.getStartTime().after(segments.lastTripEnd)) {
+                segments.pendingTrips.add(trip);
+            }
+        }
+        while (!segments.pendingTrips.isEmpty()) {
+            TripReport trip = segments.pendingTrips.get(0);
+            try {
+                dataManager.addTrip(trip);
+            } catch (SQLException error) {
+                LOGGER.warn("Failed to store trip", error);
+                return;
+            }
+            segments.pendingTrips.remove(0);
+            segments.lastTripEnd = trip.getEndTime();
+        }
+    }
+
+    private void storeStops(DeviceSegments segments, Collection<StopReport> stops) {
+        for (StopReport stop : stops) {
+            if (segments.lastStopEnd == null || stop.getStartTime().after(segments.lastStopEnd)) {
+                segments.pendingStops.add(stop);
+            }
+        }
+        while (!segments.pendingStops.isEmpty()) {
+            StopReport stop = segments.pendingStops.get(0);
+            try {
+                dataManager.addStop(stop);
+            } catch (SQLException error) {
+                LOGGER.warn("Failed to store stop", error);
+                return;
+            }
+            segments.pendingStops.remove(0);
+            segments.lastStopEnd = stop.getEndTime();
+        }
+    }
+
+    private void replay(long deviceId, Date from, Date to, Consumer<Position> consumer) throws SQLException {
+        dataManager.getPositions(deviceId, from, to, replayed -> {
+            if (replayed.getFixTime().before(to)) {
+                consumer.accept(replayed);
+            }
+        });
+    }
+
+    private void initialize(DeviceSegments segments, Position position) throws SQLException {
+        long deviceId = position.getDeviceId();
+        backfill(deviceId, position.getFixTime());
+
+        segments.trips = createDetector(deviceId, TripReport.class);
+        segments.stops = createDetector(deviceId, StopReport.class);
+
+        TripReport lastTrip = dataManager.getLastTrip(deviceId);
+        StopReport lastStop = dataManager.getLastStop(deviceId);
+        segments.lastTripEnd = lastTrip != null ? lastTrip.getEndTime() : null;
+        segments.lastStopEnd = lastStop != null ? lastStop.getEndTime() : null;
+
+        Date tripsReplay = segments.lastTripEnd != null ? segments.lastTripEnd : segments.lastStopEnd;
+        if (tripsReplay != null) {
+            replay(deviceId, tripsReplay, position.getFixTime(), replayed -> {
+                segments.trips.accept(replayed);
+                storeTrips(segments, segments.trips.pollResult());
+            });
+        }
+
+        Date stopsReplay = segments.lastStopEnd != null ? segments.lastStopEnd : segments.lastTripEnd;
+        if (stopsReplay != null) {
+            replay(deviceId, stopsReplay, position.getFixTime(), replayed -> {
+                segments.stops.accept(replayed);
+                storeStops(segments, segments.stops.pollResult());
+            });
+        }
+    }
+
+    /**
+     * Add stored position to the open segments of its device and store segments that are closed by it. Processing is
+     * queued, so database access doesn't delay the calling thread.
+     */
+    public void update(Position position) {
+        if (position.getId() == 0 || position.getFixTime() == null) {
+            return;
+        }
+        executor.execute(position.getDeviceId(), () -> process(position));
+    }
+
+    private void process(Position position) {
+        DeviceSegments segments = devices.computeIfAbsent(position.getDeviceId(), key -> new DeviceSegments());
+        synchronized (segments) {
+            if (!segments.initialized) {
+                try {
+                    initialize(segments, position);
+                    segments.initialized = true;
+                } catch (SQLException error) {
+                    LOGGER.warn("Failed to restore trips and stops", error);
+                    devices.remove(position.getDeviceId(), segments);
+                    return;
+                }
+            }
+            if (segments.lastTime != null && position.getFixTime().before(segments.lastTime)) {
+                return;
+            }
+            segments.lastTime = position.getFixTime();
+            segments.trips.accept(position);
+            storeTrips(segments, segments.trips.pollResult());
+            segments.stops.accept(position);
+            storeStops(segments, segments.stops.pollResult());
+        }
+    }
+
+    private static <T extends BaseReport> T getFirst(Collection<T> items) {
+        return items.iterator().next();
+    }
+
+    private static <T extends BaseReport> T getLast(Collection<T> items) {
+        T last = null;
+        for (T item : items) {
+            last = item;
+        }
+        return last;
+    }
+
+    private <T extends BaseReport> Collection<T> detect(
+            long deviceId, Date from, Date to, Class<T> reportClass) throws SQLException {
+        TripsAndStopsDetector<T> detector = createDetector(deviceId, reportClass);
+        dataManager.getPositions(deviceId, from, to, detector);
+        return detector.getResult();
+    }
+
+    /**
+     * Stored segments are used for the part of the period they cover. Segments at the start and at the end of the
+     * period, including the open segment, are calculated from positions in the same way as without stored segments.
+     */
+    private <T extends BaseReport> Collection<T> getSegments(
+            long deviceId, Date from, Date to, Collection<T> stored, Class<T> reportClass,
+            Function<T, Date> startTime, Function<T, Date> endTime) throws SQLException {
+
+        if (stored.isEmpty()) {
+            return detect(deviceId, from, to, reportClass);
+        }
+
+        List<T> result = new ArrayList<>();
+
+        Date first = startTime.apply(getFirst(stored));
+        if (first.after(from)) {
+            for (T item : detect(deviceId, from, first, reportClass)) {
+                if (endTime.apply(item).before(first)) {
+                    result.add(item);
+                }
+            }
+        }
+
+        Device device = identityManager.getById(deviceId);
+        for (T item : stored) {
+            item.setDeviceName(device.getName());
+            if (item instanceof TripReport) {
+                TripReport trip = (TripReport) item;
+                trip.setDriverName(ReportUtils.findDriverName(trip.getDriverUniqueId()));
+            }
+            result.add(item);
+        }
+
+        Date last = endTime.apply(getLast(stored));
+        if (last.before(to)) {
+            for (T item : detect(deviceId, last, to, reportClass)) {
+                if (startTime.apply(item).after(last)) {
+                    result.add(item);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public Collection<TripReport> getTrips(long deviceId, Date from, Date to) throws SQLException {
+        return getSegments(deviceId, from, to, dataManager.getTrips(deviceId, from, to), TripReport.class,
+                TripReport::getStartTime, TripReport::getEndTime);
+    }
+
+    public Collection<StopReport> getStops(long deviceId, Date from, Date to) throws SQLException {
+        return getSegments(deviceId, from, to, dataManager.getStops(deviceId, from, to), StopReport.class,
+                StopReport::getStartTime, StopReport::getEndTime);
+    }
+
+    /**
+     * Store trips and stops of the device closed before its first stored segment in the period.
+     */
+    public void backfill(long deviceId, Date from, Date to) throws SQLException {
+        Collection<TripReport> trips = dataManager.getTrips(deviceId, from, to);
+        Date tripsLimit = trips.isEmpty() ? to : getFirst(trips).getStartTime();
+        if (tripsLimit.after(from)) {
+            TripsAndStopsDetector<TripReport> detector = createDetector(deviceId, TripReport.class);
+            dataManager.getPositions(deviceId, from, tripsLimit, detector);
+            for (TripReport trip : detector.pollResult()) {
+                if (trip.getEndTime().before(tripsLimit)) {
+                    dataManager.addTrip(trip);
+                }
+            }
+        }
+
+        Collection<StopReport> stops = dataManager.getStops(deviceId, from, to);
+        Date stopsLimit = stops.isEmpty() ? to : getFirst(stops).getStartTime();
+        if (stopsLimit.after(from)) {
+            TripsAndStopsDetector<StopReport> detector = createDetector(deviceId, StopReport.class);
+            dataManager.getPositions(deviceId, from, stopsLimit, detector);
+            for (StopReport stop : detector.pollResult()) {
+                if (stop.getEndTime().before(stopsLimit)) {
+                    dataManager.addStop(stop);
+                }
+            }
+        }
+    }
+
+    /**
+     * Backfill the device once, before its live segments are restored. Must run on the thread of the device.
+     */
+    private void backfill(long deviceId, Date to) throws SQLException {
+        if (backfillFrom != null && !backfilledDevices.contains(deviceId)) {
+            backfill(deviceId, backfillFrom, to);
+            backfilledDevices.add(deviceId);
+        }
+    }
+
+    private void backfill(Date to) {
+        LOGGER.info("Trips and stops backfill started");
+        for (long deviceId : deviceManager.getAllItems()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            executor.execute(deviceId, () -> {
+                if (!stopped) {
+                    try {
+                        backfill(deviceId, to);
+                    } catch (SQLException error) {
+                        LOGGER.warn("Trips and stops backfill error", error);
+                    }
+                }
+            });
+        }
+        LOGGER.info("Trips and stops backfill queued");
+    }
+
+    public void stop() {
+        stopped = true;
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+            try {
+                backfillExecutor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        executor.stop();
+    }
+
+}
@@ -17,6 +17,8 @@
 package org.traccar.web;
 
 import java.beans.Introspector;
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
@@ -49,7 +51,18 @@ public class CsvBuilder {
         builder.append(SEPARATOR);
     }
 
+    private Class<?> sortedMethodsClass;
+    private SortedSet<Method> sortedMethods;
+
     private SortedSet<Method> getSortedMethods(Object object) {
+        if (object.getClass() != sortedMethodsClass) {
+            sortedMethods = createSortedMethods(object);
+            sortedMethodsClass = object.getClass();
+        }
+        return sortedMethods;
+    }
+
+    private SortedSet<Method> createSortedMethods(Object object) {
         Method[] methodArray = object.getClass().getMethods();
         SortedSet<Method> methods = new TreeSet<>(new Comparator<Method>() {
             @Override
@@ -157,6 +170,11 @@ public class CsvBuilder {
         }
     }
 
+    public void writeTo(Writer writer) throws IOException {
+        writer.append(builder);
+        builder.setLength(0);
+    }
+
     public String build() {
         return builder.toString();
     }
@@ -16,6 +16,8 @@
  */
 package org.traccar.web;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 
 import org.traccar.helper.DateUtil;
@@ -61,6 +63,11 @@ public class GpxBuilder {
         }
     }
 
+    public void writeTo(Writer writer) throws IOException {
+        writer.append(builder);
+        builder.setLength(0);
+    }
+
     public String build() {
         builder.append(FOOTER);
         return builder.toString();
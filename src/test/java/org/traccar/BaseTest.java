@@ -27,8 +27,12 @@ public class BaseTest {
         }
     }
 
-    static {
+    public static void initContext() {
         Context.init(new TestIdentityManager(), new MockMediaManager());
     }
 
+    static {
+        initContext();
+    }
+
 }
@@ -0,0 +1,23 @@
+package org.traccar;
+
+import org.traccar.config.Config;
+import org.traccar.database.DataManager;
+
+public final class TestDataManager {
+
+    private TestDataManager() {
+    }
+
+    /**
+     * Data manager with default queries and the full schema in a new in-memory database.
+     */
+    public static DataManager create() throws Exception {
+        Config config = new Config("./setup/default.xml");
+        config.setString("database.driver", "org.h2.Driver");
+        config.setString("database.url", "jdbc:h2:mem:test" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        config.setString("database.user", "sa");
+        config.setString("database.password", "");
+        return new DataManager(config);
+    }
+
+}
@@ -25,4 +25,20 @@ public class WebDataHandlerTest extends ProtocolTest {
 
     }
 
+    @Test
+    public void testFormatRequestTemplate() throws Exception {
+
+        Config config = new Config();
+        config.setString(Keys.FORWARD_URL, "http://localhost/{{uniqueId}/{latitude},{longitude}?a={address}&b={unknown}{");
+
+        Position position = position("2016-01-01 01:02:03.000", true, 20, 30);
+
+        WebDataHandler handler = new WebDataHandler(config, Context.getIdentityManager(), null, null);
+
+        assertEquals(
+                "http://localhost/{123456789012345/20.0,30.0?a={address}&b={unknown}{",
+                handler.formatRequest(position));
+
+    }
+
 }
@@ -0,0 +1,200 @@
+package org.traccar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class WebDataQueueTest {
+
+    private static final long TIMEOUT = 10;
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> statuses = new LinkedBlockingQueue<>();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Client client;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                byte[] buffer = new byte[1024];
+                int length;
+                while ((length = inputStream.read(buffer)) > 0) {
+                    body.write(buffer, 0, length);
+                }
+            }
+            received.add(exchange.getRequestURI().getPath() + " "
+                    + new String(body.toByteArray(), StandardCharsets.UTF_8));
+            Integer status;
+            try {
+                status = statuses.poll(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException error) {
+                status = null;
+            }
+            exchange.sendResponseHeaders(status != null ? status : 503, -1);
+            exchange.close();
+        });
+        server.start();
+        client = ClientBuilder.newClient();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private Config createConfig(int maxSize, int batchSize, long retryDelay) {
+        Config config = new Config();
+        config.setString(Keys.FORWARD_QUEUE_SIZE, String.valueOf(maxSize));
+        config.setString(Keys.FORWARD_QUEUE_MAX_IN_FLIGHT, "1");
+        config.setString(Keys.FORWARD_QUEUE_BATCH_SIZE, String.valueOf(batchSize));
+        config.setString(Keys.FORWARD_QUEUE_RETRY_DELAY, String.valueOf(retryDelay));
+        return config;
+    }
+
+    private String take() throws InterruptedException {
+        return received.poll(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private String respond(int status) throws InterruptedException {
+        statuses.add(status);
+        return take();
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        WebDataQueue queue = new WebDataQueue(createConfig(2, 1, 60000), client, new ObjectMapper(), null);
+        try {
+            queue.add(url + "/1", null);
+            assertEquals("/1 ", take());
+
+            queue.add(url + "/2", null);
+            queue.add(url + "/3", null);
+            queue.add(url + "/4", null);
+            assertEquals("/4 ", respond(500));
+
+            queue.add(url + "/5", null);
+            queue.add(url + "/6", null);
+            assertEquals("/5 ", respond(200));
+            assertEquals("/6 ", respond(200));
+            statuses.add(200);
+
+            assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+        WebDataQueue queue = new WebDataQueue(createConfig(100, 3, 60000), client, new ObjectMapper(), null);
+        try {
+            queue.add(url + "/a", "1");
+            assertEquals("/a [1]", take());
+
+            queue.add(url + "/a", "2");
+            queue.add(url + "/a", "3");
+            queue.add(url + "/b", "4");
+            queue.add(url + "/a", "5");
+            queue.add(url + "/a", null);
+            queue.add(url + "/a", "6");
+            queue.add(url + "/a", "7");
+            queue.add(url + "/a", "8");
+            queue.add(url + "/a", "9");
+
+            assertEquals("/a [2,3]", respond(200));
+            assertEquals("/b [4]", respond(200));
+            assertEquals("/a [5]", respond(200));
+            assertEquals("/a ", respond(200));
+            assertEquals("/a [6,7,8]", respond(200));
+            assertEquals("/a [9]", respond(200));
+            statuses.add(200);
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        WebDataQueue queue = new WebDataQueue(createConfig(100, 1, 100), client, new ObjectMapper(), null);
+        try {
+            queue.add(url + "/retry", null);
+            assertEquals("/retry ", take());
+            assertEquals("/retry ", respond(500));
+            statuses.add(200);
+
+            queue.add(url + "/reject", null);
+            assertEquals("/reject ", take());
+            statuses.add(400);
+
+            assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("traccar", ".queue");
+        file.delete();
+        try {
+            Config config = createConfig(100, 1, 60000);
+            config.setString(Keys.FORWARD_QUEUE_FILE, file.getPath());
+
+            WebDataQueue queue = new WebDataQueue(config, client, new ObjectMapper(), null);
+            queue.add(url + "/1", "{\"n\":1}");
+            assertEquals("/1 {\"n\":1}", take());
+            queue.add(url + "/2", null);
+            queue.add(url + "/3", "{\"n\":3}");
+            queue.stop();
+            statuses.add(200);
+
+            assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+
+            queue = new WebDataQueue(config, client, new ObjectMapper(), null);
+            try {
+                assertFalse(file.exists());
+                assertEquals("/1 {\"n\":1}", take());
+                assertEquals("/2 ", respond(200));
+                assertEquals("/3 {\"n\":3}", respond(200));
+                statuses.add(200);
+            } finally {
+                queue.stop();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
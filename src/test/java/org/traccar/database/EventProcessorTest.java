@@ -0,0 +1,84 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.BaseModel;
+import org.traccar.model.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventProcessorTest {
+
+    private static final int DEVICE_COUNT = 3;
+    private static final int EVENT_COUNT = 200;
+
+    private static class StubDataManager extends DataManager {
+
+        private final List<Event> stored = Collections.synchronizedList(new ArrayList<>());
+
+        StubDataManager(Config config) throws Exception {
+            super(config);
+        }
+
+        @Override
+        public void addObject(BaseModel entity) {
+            stored.add((Event) entity);
+        }
+
+        @Override
+        public void addObjects(List<? extends BaseModel> entities) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            for (BaseModel entity : entities) {
+                stored.add((Event) entity);
+            }
+        }
+
+    }
+
+    private static void assertOrdered(List<Event> events) {
+        Map<Long, Long> last = new HashMap<>();
+        for (Event event : events) {
+            Long previous = last.put(event.getDeviceId(), event.getPositionId());
+            assertTrue(previous == null || previous < event.getPositionId());
+        }
+    }
+
+    @Test
+    public void testFullQueue() throws Exception {
+        Config config = new Config();
+        config.setString("database.driver", "org.h2.Driver");
+        config.setString("database.url", "jdbc:h2:mem:" + getClass().getSimpleName() + System.nanoTime());
+        config.setString("database.user", "sa");
+        config.setString("database.password", "");
+        config.setString(Keys.EVENT_ASYNC_QUEUE_SIZE, "4");
+        config.setString(Keys.EVENT_ASYNC_WORKERS, "2");
+        config.setString(Keys.EVENT_ASYNC_BATCH_SIZE, "2");
+
+        StubDataManager dataManager = new StubDataManager(config);
+        List<Event> processed = Collections.synchronizedList(new ArrayList<>());
+        EventProcessor processor = new EventProcessor(config, dataManager, (event, position) -> processed.add(event));
+
+        for (int i = 1; i <= EVENT_COUNT; i++) {
+            processor.add(new Event(Event.TYPE_ALARM, i % DEVICE_COUNT + 1, i), null);
+        }
+        processor.stop();
+
+        assertEquals(EVENT_COUNT, dataManager.stored.size());
+        assertEquals(EVENT_COUNT, processed.size());
+        assertOrdered(dataManager.stored);
+        assertOrdered(processed);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournalLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> readAll(JournalLog journal) throws Exception {
+        List<String> result = new ArrayList<>();
+        journal.read(journal.getCommittedSequence(), (sequence, payload) -> {
+            result.add(sequence + ":" + new String(payload, StandardCharsets.UTF_8));
+            return true;
+        });
+        return result;
+    }
+
+    @Test
+    public void testAppendAndRecover() throws Exception {
+
+        File directory = folder.newFolder();
+
+        JournalLog journal = new JournalLog(directory, 64, true);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, journal.append(("record" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        journal.commit(1);
+        journal.commit(2);
+        journal.commit(4);
+        assertEquals(2, journal.getCommittedSequence());
+        journal.close();
+
+        assertTrue(directory.listFiles((dir, name) -> name.endsWith(".journal")).length < 10);
+
+        journal = new JournalLog(directory, 64, true);
+        assertEquals(10, journal.getLastSequence());
+        List<String> records = readAll(journal);
+        assertEquals(8, records.size());
+        assertEquals("3:record3", records.get(0));
+        assertEquals("10:record10", records.get(7));
+
+        journal.commitUpTo(journal.getLastSequence());
+        assertEquals(11, journal.append("record11".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(10, journal.getCommittedSequence());
+        journal.commit(11);
+        assertEquals(11, journal.getCommittedSequence());
+
+    }
+
+    @Test
+    public void testCommitInOrder() throws Exception {
+
+        File directory = folder.newFolder();
+
+        JournalLog journal = new JournalLog(directory, 1024, false);
+        for (int i = 1; i <= 5; i++) {
+            journal.append(new byte[] {(byte) i});
+        }
+        journal.commitUpTo(3);
+        journal.close();
+
+        journal = new JournalLog(directory, 1024, false);
+        assertEquals(3, journal.getCommittedSequence());
+        assertEquals(2, readAll(journal).size());
+
+    }
+
+    @Test
+    public void testPositionEncoding() throws Exception {
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_JOURNAL_DIRECTORY, folder.newFolder().getAbsolutePath());
+        PositionJournal journal = new PositionJournal(config, null, new ObjectMapper(), null);
+
+        Position position = new Position();
+        position.setDeviceId(1);
+        position.setProtocol("test");
+        position.setTime(new Date(1000000000000L));
+        position.setValid(true);
+        position.setLatitude(10.5);
+        position.setLongitude(-20.25);
+        position.setSpeed(12.5);
+        position.set(Position.KEY_IGNITION, true);
+        position.set(Position.KEY_ODOMETER, 1000L);
+
+        Position decoded = journal.decode(journal.encode(position));
+        journal.stop();
+
+        assertEquals(1, decoded.getDeviceId());
+        assertEquals("test", decoded.getProtocol());
+        assertEquals(1000000000000L, decoded.getFixTime().getTime());
+        assertTrue(decoded.getValid());
+        assertEquals(10.5, decoded.getLatitude(), 0.00001);
+        assertEquals(-20.25, decoded.getLongitude(), 0.00001);
+        assertEquals(12.5, decoded.getSpeed(), 0.00001);
+        assertTrue(decoded.getBoolean(Position.KEY_IGNITION));
+        assertEquals(1000L, decoded.getLong(Position.KEY_ODOMETER));
+
+    }
+
+}
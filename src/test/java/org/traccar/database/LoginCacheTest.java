@@ -0,0 +1,47 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LoginCacheTest {
+
+    @Test
+    public void testCache() {
+        LoginCache loginCache = new LoginCache(60000);
+
+        loginCache.put("user@example.com", "secret", 1, loginCache.getVersion());
+        loginCache.put("admin@example.com", "secret", 2, loginCache.getVersion());
+
+        assertEquals(Long.valueOf(1), loginCache.get("user@example.com", "secret"));
+        assertNull(loginCache.get("user@example.com", "wrong"));
+        assertNull(loginCache.get("user@example.co", "msecret"));
+
+        loginCache.invalidate(1);
+
+        assertNull(loginCache.get("user@example.com", "secret"));
+        assertEquals(Long.valueOf(2), loginCache.get("admin@example.com", "secret"));
+    }
+
+    @Test
+    public void testConcurrentInvalidation() {
+        LoginCache loginCache = new LoginCache(60000);
+
+        long version = loginCache.getVersion();
+        loginCache.invalidate(1);
+        loginCache.put("user@example.com", "secret", 1, version);
+
+        assertNull(loginCache.get("user@example.com", "secret"));
+    }
+
+    @Test
+    public void testExpiration() {
+        LoginCache loginCache = new LoginCache(-1);
+
+        loginCache.put("user@example.com", "secret", 1, loginCache.getVersion());
+
+        assertNull(loginCache.get("user@example.com", "secret"));
+    }
+
+}
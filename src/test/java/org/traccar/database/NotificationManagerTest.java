@@ -0,0 +1,192 @@
+package org.traccar.database;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.Context;
+import org.traccar.model.Device;
+import org.traccar.model.Event;
+import org.traccar.model.Group;
+import org.traccar.model.Notification;
+import org.traccar.model.Permission;
+import org.traccar.model.User;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationManagerTest extends BaseTest {
+
+    private static File configFile;
+
+    @BeforeClass
+    public static void initDatabaseContext() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("config.default", "./setup/default.xml");
+        properties.setProperty("database.driver", "org.h2.Driver");
+        properties.setProperty("database.url",
+                "jdbc:h2:mem:" + NotificationManagerTest.class.getSimpleName() + System.nanoTime()
+                        + ";DB_CLOSE_DELAY=-1");
+        properties.setProperty("database.user", "sa");
+        properties.setProperty("database.password", "");
+        properties.setProperty("logger.enable", "false");
+        configFile = File.createTempFile("traccar", ".xml");
+        try (OutputStream outputStream = new FileOutputStream(configFile)) {
+            properties.storeToXML(outputStream, null);
+        }
+        Context.init(configFile.getPath());
+    }
+
+    @AfterClass
+    public static void resetContext() {
+        initContext();
+        configFile.delete();
+    }
+
+    private static long counter;
+
+    private static User addUser() throws Exception {
+        counter += 1;
+        User user = new User();
+        user.setName("user" + counter);
+        user.setEmail("user" + counter + "@example.com");
+        user.setPassword("password");
+        Context.getUsersManager().addItem(user);
+        return user;
+    }
+
+    private static Device addDevice(long groupId) throws Exception {
+        counter += 1;
+        Device device = new Device();
+        device.setName("device" + counter);
+        device.setUniqueId("device" + counter);
+        device.setGroupId(groupId);
+        Context.getDeviceManager().addItem(device);
+        Context.getPermissionsManager().refreshDeviceAndGroupPermissions();
+        return device;
+    }
+
+    private static Group addGroup() throws Exception {
+        counter += 1;
+        Group group = new Group();
+        group.setName("group" + counter);
+        Context.getGroupsManager().addItem(group);
+        return group;
+    }
+
+    private static Notification createNotification(String type, boolean always) {
+        Notification notification = new Notification();
+        notification.setType(type);
+        notification.setAlways(always);
+        notification.setNotificators("web");
+        return notification;
+    }
+
+    private static Notification addNotification(String type, boolean always) throws Exception {
+        Notification notification = createNotification(type, always);
+        Context.getNotificationManager().addItem(notification);
+        return notification;
+    }
+
+    private static void link(String owner, long ownerId, String property, long propertyId, boolean link)
+            throws Exception {
+        LinkedHashMap<String, Long> entity = new LinkedHashMap<>();
+        entity.put(owner, ownerId);
+        entity.put(property, propertyId);
+        Permission permission = new Permission(entity);
+        Context.getDataManager().linkObject(permission.getOwnerClass(), permission.getOwnerId(),
+                permission.getPropertyClass(), permission.getPropertyId(), link);
+        Context.getPermissionsManager().refreshPermissions(permission, link);
+    }
+
+    private static Set<Long> getRouteUsers(long deviceId, String type) {
+        Set<Long> result = new HashSet<>();
+        for (NotificationManager.Route route : Context.getNotificationManager().getRoutes(deviceId, type)) {
+            result.add(route.getUserId());
+        }
+        return result;
+    }
+
+    @Test
+    public void testUserDeviceLink() throws Exception {
+        User user = addUser();
+        Device device = addDevice(0);
+        Notification notification = addNotification(Event.TYPE_DEVICE_ONLINE, true);
+        link("userId", user.getId(), "notificationId", notification.getId(), true);
+
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+
+        link("userId", user.getId(), "deviceId", device.getId(), true);
+        assertEquals(user.getId(), (long) getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).iterator().next());
+
+        link("userId", user.getId(), "deviceId", device.getId(), false);
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+    }
+
+    @Test
+    public void testUserGroupLink() throws Exception {
+        User user = addUser();
+        Group group = addGroup();
+        Device device = addDevice(group.getId());
+        Notification notification = addNotification(Event.TYPE_DEVICE_ONLINE, true);
+        link("userId", user.getId(), "notificationId", notification.getId(), true);
+
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+
+        link("userId", user.getId(), "groupId", group.getId(), true);
+        assertEquals(user.getId(), (long) getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).iterator().next());
+
+        link("userId", user.getId(), "groupId", group.getId(), false);
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+    }
+
+    @Test
+    public void testNotificationGroupLink() throws Exception {
+        User user = addUser();
+        Group group = addGroup();
+        Device device = addDevice(group.getId());
+        Notification notification = addNotification(Event.TYPE_DEVICE_ONLINE, false);
+        link("userId", user.getId(), "notificationId", notification.getId(), true);
+        link("userId", user.getId(), "deviceId", device.getId(), true);
+
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+
+        link("groupId", group.getId(), "notificationId", notification.getId(), true);
+        assertEquals(user.getId(), (long) getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).iterator().next());
+
+        link("groupId", group.getId(), "notificationId", notification.getId(), false);
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+    }
+
+    @Test
+    public void testNotificationUpdate() throws Exception {
+        User user = addUser();
+        Device device = addDevice(0);
+        Notification notification = addNotification(Event.TYPE_DEVICE_ONLINE, false);
+        link("userId", user.getId(), "notificationId", notification.getId(), true);
+        link("userId", user.getId(), "deviceId", device.getId(), true);
+
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+
+        Notification updated = createNotification(Event.TYPE_DEVICE_ONLINE, true);
+        updated.setId(notification.getId());
+        Context.getNotificationManager().updateItem(updated);
+        assertEquals(user.getId(), (long) getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).iterator().next());
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_OFFLINE).isEmpty());
+
+        updated = createNotification(Event.TYPE_DEVICE_OFFLINE, true);
+        updated.setId(notification.getId());
+        Context.getNotificationManager().updateItem(updated);
+        assertTrue(getRouteUsers(device.getId(), Event.TYPE_DEVICE_ONLINE).isEmpty());
+        assertEquals(user.getId(), (long) getRouteUsers(device.getId(), Event.TYPE_DEVICE_OFFLINE).iterator().next());
+    }
+
+}
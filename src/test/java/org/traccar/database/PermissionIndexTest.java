@@ -0,0 +1,52 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PermissionIndexTest {
+
+    @Test
+    public void testBuild() {
+        PermissionIndex.Builder builder = new PermissionIndex.Builder();
+        builder.add(1, 20);
+        builder.add(1, 10);
+        builder.add(1, 20);
+        builder.add(2, 10);
+
+        PermissionIndex index = builder.build();
+
+        assertEquals(new HashSet<>(Arrays.asList(10L, 20L)), index.get(1));
+        assertTrue(index.contains(2, 10));
+        assertFalse(index.contains(2, 20));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), index.getOwners(10));
+        assertEquals(Collections.singleton(1L), index.getOwners(20));
+        assertTrue(index.get(3).isEmpty());
+    }
+
+    @Test
+    public void testUpdate() {
+        PermissionIndex index = new PermissionIndex();
+        index.add(1, 10);
+        index.add(1, 30);
+        index.add(2, 10);
+        index.remove(2, 10);
+
+        assertEquals(Collections.singleton(1L), index.getOwners(10));
+        assertTrue(index.get(2).isEmpty());
+        assertFalse(index.getOwnerIds().contains(2L));
+
+        index.set(1, new long[] {30, 40, 40});
+
+        assertEquals(new HashSet<>(Arrays.asList(30L, 40L)), index.get(1));
+        assertTrue(index.getOwners(10).isEmpty());
+        assertEquals(Collections.singleton(1L), index.getOwners(40));
+    }
+
+}
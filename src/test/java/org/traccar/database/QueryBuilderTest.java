@@ -0,0 +1,136 @@
+package org.traccar.database;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.model.Position;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryBuilderTest extends BaseTest {
+
+    private static final String INSERT = "INSERT INTO test_positions "
+            + "(deviceId, protocol, fixTime, valid, latitude, longitude, speed, attributes) "
+            + "VALUES (:deviceId, :protocol, :fixTime, :valid, :latitude, :longitude, :speed, :attributes)";
+
+    private DataSource dataSource;
+
+    @Before
+    public void before() throws SQLException {
+        JdbcDataSource h2DataSource = new JdbcDataSource();
+        h2DataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource = h2DataSource;
+        QueryBuilder.create(dataSource, "CREATE TABLE test_positions ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, deviceId INT, protocol VARCHAR(128), fixTime TIMESTAMP, "
+                + "valid BIT, latitude DOUBLE, longitude DOUBLE, speed FLOAT, attributes VARCHAR(4000))")
+                .executeUpdate();
+    }
+
+    private Position createPosition(long deviceId, double latitude) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setProtocol("test");
+        position.setTime(new Date(1000000000000L + deviceId * 1000));
+        position.setValid(true);
+        position.setLatitude(latitude);
+        position.setLongitude(-latitude);
+        position.setSpeed(12.5);
+        position.set(Position.KEY_IGNITION, true);
+        position.set(Position.KEY_ODOMETER, 1000L);
+        return position;
+    }
+
+    @Test
+    public void testObjectRoundTrip() throws SQLException {
+
+        long id = QueryBuilder.create(dataSource, INSERT, true)
+                .setObject(createPosition(1, 10.5))
+                .executeUpdate();
+        assertTrue(id > 0);
+
+        Position position = QueryBuilder.create(dataSource, "SELECT * FROM test_positions WHERE id = :id")
+                .setLong("id", id)
+                .executeQuerySingle(Position.class);
+
+        assertEquals(id, position.getId());
+        assertEquals(1, position.getDeviceId());
+        assertEquals("test", position.getProtocol());
+        assertEquals(1000000001000L, position.getFixTime().getTime());
+        assertTrue(position.getValid());
+        assertEquals(10.5, position.getLatitude(), 0.00001);
+        assertEquals(-10.5, position.getLongitude(), 0.00001);
+        assertEquals(12.5, position.getSpeed(), 0.00001);
+        assertTrue(position.getBoolean(Position.KEY_IGNITION));
+        assertEquals(1000L, position.getLong(Position.KEY_ODOMETER));
+        assertNull(position.getAddress());
+
+    }
+
+    @Test
+    public void testColumnSubset() throws SQLException {
+
+        QueryBuilder.create(dataSource, INSERT).setObject(createPosition(2, 20)).executeUpdate();
+
+        Collection<Position> positions = QueryBuilder.create(dataSource, "SELECT deviceId FROM test_positions")
+                .executeQuery(Position.class);
+
+        assertEquals(1, positions.size());
+        Position position = positions.iterator().next();
+        assertEquals(2, position.getDeviceId());
+        assertEquals(0, position.getId());
+        assertFalse(position.getValid());
+        assertTrue(position.getAttributes().isEmpty());
+
+    }
+
+    @Test
+    public void testBatch() throws SQLException {
+
+        QueryBuilder builder = QueryBuilder.create(dataSource, INSERT, true);
+        for (int i = 1; i <= 3; i++) {
+            builder.setObject(createPosition(i, i)).addBatch();
+        }
+        long[] keys = builder.executeBatch();
+        assertEquals(3, keys.length);
+
+        Collection<Position> positions = new ArrayList<>(QueryBuilder.create(
+                dataSource, "SELECT * FROM test_positions ORDER BY id").executeQuery(Position.class));
+        assertEquals(3, positions.size());
+        Iterator<Position> iterator = positions.iterator();
+        for (int i = 0; i < 3; i++) {
+            Position position = iterator.next();
+            assertEquals(keys[i], position.getId());
+            assertEquals(i + 1, position.getDeviceId());
+        }
+
+    }
+
+    @Test
+    public void testStreamed() throws SQLException {
+
+        for (int i = 1; i <= 5; i++) {
+            QueryBuilder.create(dataSource, INSERT).setObject(createPosition(i, i)).executeUpdate();
+        }
+
+        List<Long> deviceIds = new ArrayList<>();
+        QueryBuilder.create(dataSource, "SELECT * FROM test_positions ORDER BY id")
+                .executeQueryStreamed(Position.class, 2, position -> deviceIds.add(position.getDeviceId()));
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), deviceIds);
+
+    }
+
+}
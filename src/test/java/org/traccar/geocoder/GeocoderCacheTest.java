@@ -0,0 +1,76 @@
+package org.traccar.geocoder;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeocoderCacheTest {
+
+    @Test
+    public void testPrecision() {
+        GeocoderCache cache = new GeocoderCache(100, 3);
+        cache.put(55.75414, 37.62040, "Moscow");
+        assertEquals("Moscow", cache.get(55.75411, 37.62039));
+        assertNull(cache.get(55.75514, 37.62040));
+        assertNull(cache.get(-55.75414, 37.62040));
+    }
+
+    @Test
+    public void testEviction() {
+        GeocoderCache cache = new GeocoderCache(16, 4);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i * 0.01, 0, String.valueOf(i));
+        }
+        int count = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get(i * 0.01, 0) != null) {
+                count += 1;
+            }
+        }
+        assertTrue(count <= 16);
+        assertEquals("999", cache.get(9.99, 0));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        File file = File.createTempFile("geocoder", ".cache");
+        try {
+            GeocoderCache cache = new GeocoderCache(100, 4, file.getPath(), null);
+            cache.put(10, 20, "First");
+            cache.put(30, 40, "Second");
+            cache.put(10, 20, "Third");
+            cache.close();
+
+            cache = new GeocoderCache(100, 4, file.getPath(), null);
+            assertEquals("Third", cache.get(10, 20));
+            assertEquals("Second", cache.get(30, 40));
+            cache.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFileCompaction() throws IOException {
+        File file = File.createTempFile("geocoder", ".cache");
+        try {
+            GeocoderCache cache = new GeocoderCache(16, 4, file.getPath(), null);
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i * 0.01, 0, String.valueOf(i));
+            }
+            cache.close();
+
+            cache = new GeocoderCache(16, 4, file.getPath(), null);
+            assertEquals("999", cache.get(9.99, 0));
+            cache.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+}
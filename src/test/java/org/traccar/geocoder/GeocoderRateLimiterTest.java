@@ -0,0 +1,38 @@
+package org.traccar.geocoder;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeocoderRateLimiterTest {
+
+    @Test
+    public void testLimit() throws InterruptedException {
+        GeocoderRateLimiter rateLimiter = new GeocoderRateLimiter(2, 2);
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(4);
+        Runnable task = () -> {
+            executed.incrementAndGet();
+            latch.countDown();
+        };
+
+        assertTrue(rateLimiter.submit(task));
+        assertTrue(rateLimiter.submit(task));
+        assertEquals(2, executed.get());
+
+        assertTrue(rateLimiter.submit(task));
+        assertTrue(rateLimiter.submit(task));
+        assertFalse(rateLimiter.submit(task));
+        assertEquals(2, executed.get());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(4, executed.get());
+    }
+
+}
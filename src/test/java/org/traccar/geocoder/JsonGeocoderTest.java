@@ -0,0 +1,80 @@
+package org.traccar.geocoder;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import javax.json.JsonObject;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonGeocoderTest {
+
+    private static class CountingCallback implements Geocoder.ReverseGeocoderCallback {
+
+        private final CountDownLatch latch;
+        private final AtomicInteger failures;
+
+        CountingCallback(CountDownLatch latch, AtomicInteger failures) {
+            this.latch = latch;
+            this.failures = failures;
+        }
+
+        @Override
+        public void onSuccess(String address) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            failures.incrementAndGet();
+            latch.countDown();
+        }
+
+    }
+
+    @Test
+    public void testParseError() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            Geocoder geocoder = new JsonGeocoder(
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/?lat=%f&lon=%f", new AddressFormat()) {
+                @Override
+                public Address parseAddress(JsonObject json) {
+                    throw new IllegalStateException("Unexpected response");
+                }
+            };
+
+            AtomicInteger failures = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(2);
+            geocoder.getAddress(10, 20, new CountingCallback(latch, failures));
+            geocoder.getAddress(10, 20, new CountingCallback(latch, failures));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(2, failures.get());
+
+            latch = new CountDownLatch(1);
+            geocoder.getAddress(10, 20, new CountingCallback(latch, failures));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(3, failures.get());
+            assertEquals(2, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
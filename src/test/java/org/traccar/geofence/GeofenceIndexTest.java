@@ -0,0 +1,53 @@
+package org.traccar.geofence;
+
+import java.text.ParseException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceIndexTest {
+
+    @Test
+    public void testCircleBounds() throws ParseException {
+        GeofenceGeometry geofenceGeometry = new GeofenceCircle("CIRCLE (55.75414 37.6204, 100)");
+        assertTrue(geofenceGeometry.boundsContain(55.75414, 37.6204));
+        assertTrue(geofenceGeometry.boundsContain(55.75477, 37.62025));
+        assertFalse(geofenceGeometry.boundsContain(55.7560, 37.6204));
+        assertFalse(geofenceGeometry.boundsContain(55.75414, 37.6230));
+    }
+
+    @Test
+    public void testAntimeridianBounds() throws ParseException {
+        GeofenceGeometry geofenceGeometry = new GeofencePolygon(
+                "POLYGON ((-16.0 179.0, -16.0 -179.0, -18.0 -179.0, -18.0 179.0))");
+        assertTrue(geofenceGeometry.boundsContain(-17.0, 179.5));
+        assertTrue(geofenceGeometry.boundsContain(-17.0, -179.5));
+        assertTrue(geofenceGeometry.containsPoint(-17.0, -179.5));
+    }
+
+    @Test
+    public void testIndex() throws ParseException {
+        GeofenceIndex index = new GeofenceIndex(0.1, 16);
+
+        index.put(1, new GeofenceCircle("CIRCLE (55.75414 37.6204, 100)"));
+        index.put(2, new GeofencePolygon("POLYGON ((55.0 37.0, 56.0 37.0, 56.0 38.0, 55.0 38.0))"));
+        index.put(3, new GeofencePolyline("LINESTRING (10.0 10.0, 10.0 10.05)", 100));
+
+        assertEquals(2, index.getCandidates(55.75414, 37.6204).size());
+        assertEquals(Collections.singletonList(2L), index.getCandidates(55.5, 37.5));
+        assertEquals(Collections.singletonList(3L), index.getCandidates(10.0005, 10.02));
+        assertTrue(index.getCandidates(0, 0).isEmpty());
+
+        index.remove(1);
+        assertEquals(Collections.singletonList(2L), index.getCandidates(55.75414, 37.6204));
+
+        index.put(2, new GeofenceCircle("CIRCLE (10.0 10.0, 1000)"));
+        assertTrue(index.getCandidates(55.75414, 37.6204).isEmpty());
+        assertEquals(2, index.getCandidates(10.0, 10.0).size());
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.traccar.geofence;
 
 import java.text.ParseException;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -49,4 +50,35 @@ public class GeofencePolygonTest {
 
     }
 
+    @Test
+    public void testContainsLargePolygon() throws ParseException {
+        int count = 2000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        Random random = new Random(1);
+        StringBuilder wkt = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            double radius = 0.5 + random.nextDouble() * 0.5;
+            lats[i] = 50 + radius * Math.sin(angle);
+            lons[i] = 10 + radius * Math.cos(angle);
+            wkt.append(i > 0 ? ", " : "").append(lats[i]).append(" ").append(lons[i]);
+        }
+        wkt.append("))");
+
+        GeofenceGeometry geofenceGeometry = new GeofencePolygon(wkt.toString());
+        for (int k = 0; k < 10000; k++) {
+            double latitude = 48.8 + random.nextDouble() * 2.4;
+            double longitude = 8.8 + random.nextDouble() * 2.4;
+            boolean expected = false;
+            for (int i = 0, j = count - 1; i < count; j = i++) {
+                if (lons[i] < longitude && lons[j] >= longitude || lons[j] < longitude && lons[i] >= longitude) {
+                    expected ^= lats[i] + (longitude - lons[i]) / (lons[j] - lons[i]) * (lats[j] - lats[i]) < latitude;
+                }
+            }
+            assertEquals(expected, geofenceGeometry.containsPoint(latitude, longitude));
+        }
+
+    }
+
 }
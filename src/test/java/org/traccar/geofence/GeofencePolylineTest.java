@@ -1,8 +1,10 @@
 package org.traccar.geofence;
 
 import java.text.ParseException;
+import java.util.Random;
 
 import org.junit.Test;
+import org.traccar.helper.DistanceCalculator;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -44,4 +46,35 @@ public class GeofencePolylineTest {
         assertTrue(!geofenceGeometry.containsPoint(66.96, 180.0));
         assertTrue(!geofenceGeometry.containsPoint(66.9509, -179.83));
     }
+
+    @Test
+    public void testContainsLongPolyline() throws ParseException {
+        int count = 1000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        Random random = new Random(1);
+        StringBuilder wkt = new StringBuilder("LINESTRING (");
+        for (int i = 0; i < count; i++) {
+            lats[i] = 56.8 + i * 0.0005 + random.nextDouble() * 0.0005;
+            lons[i] = 60.6 + Math.sin(i * 0.01) * 0.05;
+            wkt.append(i > 0 ? ", " : "").append(lats[i]).append(" ").append(lons[i]);
+        }
+        wkt.append(")");
+
+        GeofenceGeometry geofenceGeometry = new GeofencePolyline(wkt.toString(), 50);
+        for (int k = 0; k < 2000; k++) {
+            double latitude = 56.79 + random.nextDouble() * 0.52;
+            double longitude = 60.54 + random.nextDouble() * 0.12;
+            boolean expected = false;
+            for (int i = 1; i < count; i++) {
+                if (DistanceCalculator.distanceToLine(
+                        latitude, longitude, lats[i - 1], lons[i - 1], lats[i], lons[i]) <= 50) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals(expected, geofenceGeometry.containsPoint(latitude, longitude));
+        }
+    }
+
 }
@@ -53,6 +53,10 @@ public class ComputedAttributesTest {
         attribute.setExpression("math:pow(adc1, 2)");
         assertEquals(16384.0, handler.computeAttribute(attribute, position));
 
+        attribute.setExpression("temp = adc1 * 2");
+        assertEquals(256, handler.computeAttribute(attribute, position));
+        assertEquals(256, handler.computeAttribute(attribute, position));
+
         // modification tests
         attribute.setExpression("adc1 = 256");
         handler.computeAttribute(attribute, position);
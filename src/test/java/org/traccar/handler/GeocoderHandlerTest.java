@@ -0,0 +1,66 @@
+package org.traccar.handler;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.AttributeKey;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.config.Config;
+import org.traccar.geocoder.Geocoder;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeocoderHandlerTest extends BaseTest {
+
+    private static final AttributeKey<Map<Long, ?>> PENDING_MESSAGES = AttributeKey.valueOf("geocoderPendingMessages");
+
+    private static Position createPosition(long deviceId, boolean valid) {
+        Position position = new Position("test");
+        position.setDeviceId(deviceId);
+        position.setValid(valid);
+        return position;
+    }
+
+    @Test
+    public void testPendingMessages() {
+
+        List<Geocoder.ReverseGeocoderCallback> callbacks = new ArrayList<>();
+        Geocoder geocoder = (latitude, longitude, callback) -> {
+            callbacks.add(callback);
+            return null;
+        };
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GeocoderHandler(new Config(), geocoder, null, null));
+
+        Position first = createPosition(1, true);
+        Position second = createPosition(1, false);
+        Position other = createPosition(2, true);
+        channel.writeInbound(first, second, other);
+        assertNull(channel.readInbound());
+        assertEquals(2, channel.attr(PENDING_MESSAGES).get().size());
+
+        callbacks.get(1).onSuccess("other");
+        channel.runPendingTasks();
+        assertEquals(other, channel.readInbound());
+        assertEquals(1, channel.attr(PENDING_MESSAGES).get().size());
+
+        callbacks.get(0).onSuccess("first");
+        channel.runPendingTasks();
+        assertEquals(first, channel.readInbound());
+        assertEquals(second, channel.readInbound());
+        assertTrue(channel.attr(PENDING_MESSAGES).get().isEmpty());
+
+        Position direct = createPosition(3, false);
+        channel.writeInbound(direct);
+        assertEquals(direct, channel.readInbound());
+        assertTrue(channel.attr(PENDING_MESSAGES).get().isEmpty());
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.StripedExecutor;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedExecutionHandlerTest extends BaseTest {
+
+    @Test
+    public void testOrdering() {
+
+        StripedExecutor executor = new StripedExecutor("test", 4, 1000);
+
+        final Map<Long, List<Integer>> received = new HashMap<>();
+        final List<String> threads = new ArrayList<>();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new OrderedExecutionHandler(executor));
+        channel.pipeline().addLast(ImmediateEventExecutor.INSTANCE, null, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                Position position = (Position) msg;
+                synchronized (received) {
+                    received.computeIfAbsent(position.getDeviceId(), key -> new ArrayList<>())
+                            .add(position.getInteger(Position.KEY_INDEX));
+                    threads.add(Thread.currentThread().getName());
+                }
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            Position position = new Position();
+            position.setDeviceId(i % 10);
+            position.set(Position.KEY_INDEX, i);
+            channel.writeInbound(position);
+        }
+
+        executor.stop();
+
+        assertEquals(10, received.size());
+        for (Map.Entry<Long, List<Integer>> entry : received.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            assertEquals(10, indexes.size());
+            for (int i = 0; i < indexes.size(); i++) {
+                assertEquals(entry.getKey() + i * 10, (long) indexes.get(i));
+            }
+        }
+        for (String thread : threads) {
+            assertTrue(thread.startsWith("test-"));
+        }
+
+    }
+
+    private static void waitForSize(List<String> list, int size) throws InterruptedException {
+        synchronized (list) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (list.size() < size && System.currentTimeMillis() < deadline) {
+                list.wait(100);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncContinuation() throws Exception {
+
+        StripedExecutor executor = new StripedExecutor("test", 2, 1);
+
+        final List<String> threads = new ArrayList<>();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new OrderedExecutionHandler(executor));
+        channel.pipeline().addLast(ImmediateEventExecutor.INSTANCE, null, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                Thread callback = new Thread(() -> OrderedExecutionHandler.execute(
+                        ctx, msg, () -> ctx.fireChannelRead(msg)), "callback");
+                callback.start();
+            }
+        });
+        channel.pipeline().addLast(ImmediateEventExecutor.INSTANCE, null, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread().getName());
+                    threads.notifyAll();
+                }
+            }
+
+            @Override
+            public void channelInactive(ChannelHandlerContext ctx) {
+                OrderedExecutionHandler.execute(ctx, null, () -> {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread().getName());
+                        threads.notifyAll();
+                    }
+                });
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            Position position = new Position();
+            position.setDeviceId(i % 2);
+            channel.writeInbound(position);
+        }
+        waitForSize(threads, 10);
+        channel.close();
+        waitForSize(threads, 11);
+        executor.stop();
+
+        assertEquals(11, threads.size());
+        for (String thread : threads) {
+            assertTrue(thread.startsWith("test-"));
+        }
+
+    }
+
+    @Test
+    public void testInactiveWithFullQueue() throws Exception {
+
+        StripedExecutor executor = new StripedExecutor("test", 1, 1);
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> events = new ArrayList<>();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new OrderedExecutionHandler(executor));
+        channel.pipeline().addLast(ImmediateEventExecutor.INSTANCE, null, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                blocked.countDown();
+                release.await();
+                synchronized (events) {
+                    events.add("read");
+                    events.notifyAll();
+                }
+            }
+
+            @Override
+            public void channelInactive(ChannelHandlerContext ctx) {
+                OrderedExecutionHandler.execute(ctx, null, () -> {
+                    synchronized (events) {
+                        events.add("inactive");
+                        events.notifyAll();
+                    }
+                });
+            }
+        });
+
+        Position position = new Position();
+        position.setDeviceId(1);
+        channel.writeInbound(position);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        channel.writeInbound(position);
+
+        long start = System.currentTimeMillis();
+        channel.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (channel.isOpen() && System.currentTimeMillis() < deadline) {
+            channel.runPendingTasks();
+            Thread.sleep(10);
+        }
+        waitForSize(events, 3);
+        executor.stop();
+
+        assertEquals(Arrays.asList("read", "read", "inactive"), events);
+
+    }
+
+}
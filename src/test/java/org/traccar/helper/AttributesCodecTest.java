@@ -0,0 +1,57 @@
+package org.traccar.helper;
+
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttributesCodecTest {
+
+    @Test
+    public void testEncodeDecode() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(Position.KEY_IGNITION, true);
+        attributes.put(Position.KEY_SATELLITES, 12);
+        attributes.put(Position.KEY_ODOMETER, 123456789012L);
+        attributes.put(Position.KEY_POWER, 12.5);
+        attributes.put("temp1", -21.25f);
+        attributes.put("io42", -7);
+        attributes.put(Position.KEY_DRIVER_UNIQUE_ID, "abc");
+        attributes.put("empty", null);
+        attributes.put("nested", Collections.singletonMap(Position.KEY_RPM, 1500));
+        attributes.put("list", Arrays.asList(1, "two", false));
+
+        Map<String, Object> decoded = AttributesCodec.decode(AttributesCodec.encode(attributes));
+
+        assertEquals(attributes, decoded);
+        assertEquals(Arrays.asList(attributes.keySet().toArray()), Arrays.asList(decoded.keySet().toArray()));
+    }
+
+    @Test
+    public void testText() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(Position.KEY_BATTERY_LEVEL, 80);
+
+        String text = AttributesCodec.encodeText(attributes);
+
+        assertTrue(AttributesCodec.isEncodedText(text));
+        assertFalse(AttributesCodec.isEncodedText("{\"batteryLevel\":80}"));
+        assertEquals(attributes, AttributesCodec.decodeText(text));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("custom", "value");
+        byte[] data = AttributesCodec.encode(attributes);
+        AttributesCodec.decode(Arrays.copyOf(data, data.length - 2));
+    }
+
+}
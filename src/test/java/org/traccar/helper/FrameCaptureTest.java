@@ -0,0 +1,72 @@
+package org.traccar.helper;
+
+import org.junit.Test;
+import org.traccar.ProtocolTest;
+import org.traccar.protocol.H02ProtocolDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrameCaptureTest extends ProtocolTest {
+
+    @Test
+    public void testCaptureAndReplay() throws Exception {
+
+        byte[] data = "*HQ,4210209006,V1,054048,A,2828.2297,N,07733.4332,E,000.5,047,4,080918,EEE7FBDF,4261193,0#"
+                .getBytes(StandardCharsets.US_ASCII);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FrameCapture.Writer writer = new FrameCapture.Writer(output, true);
+        writer.write(new FrameCapture.Frame(
+                1000, "a1b2c3", "h02", false, new InetSocketAddress("127.0.0.1", 5013), data));
+        writer.write(new FrameCapture.Frame(
+                2000, null, "h02", true, null, new byte[] {0x01, 0x02}));
+        writer.flush();
+
+        byte[] capture = output.toByteArray();
+        FrameCapture.Reader reader = new FrameCapture.Reader(
+                new ByteArrayInputStream(capture, 0, capture.length - 1));
+
+        FrameCapture.Frame frame = reader.read();
+        assertEquals(1000, frame.getTime());
+        assertEquals("a1b2c3", frame.getChannelId());
+        assertEquals("h02", frame.getProtocol());
+        assertFalse(frame.getDownstream());
+        assertEquals("127.0.0.1", frame.getHost());
+        assertEquals(5013, frame.getPort());
+        assertArrayEquals(data, frame.getData());
+
+        verifyPosition(new H02ProtocolDecoder(null), frame.getBuffer());
+
+        assertNull(reader.read());
+
+        reader = new FrameCapture.Reader(new ByteArrayInputStream(capture));
+        reader.read();
+        frame = reader.read();
+        assertTrue(frame.getDownstream());
+        assertNull(frame.getChannelId());
+        assertNull(frame.getRemoteAddress());
+        assertArrayEquals(new byte[] {0x01, 0x02}, frame.getData());
+        assertNull(reader.read());
+
+    }
+
+    @Test
+    public void testFormat() {
+
+        FrameCapture.Frame frame = new FrameCapture.Frame(
+                0, "a1b2c3", "h02", true, new InetSocketAddress("127.0.0.1", 5013), new byte[] {0x0a, (byte) 0xff});
+
+        assertEquals("[a1b2c3: h02 > 127.0.0.1] HEX: 0aff", FrameLogger.format(frame));
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.traccar.helper;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(199, histogram.getMean());
+        assertEquals(10000, histogram.getMax());
+
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 100 && median < 200);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 100 && p99 < 200);
+        assertEquals(10000, histogram.getPercentile(100));
+    }
+
+}
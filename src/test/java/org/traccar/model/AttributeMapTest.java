@@ -0,0 +1,86 @@
+package org.traccar.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeMapTest {
+
+    @Test
+    public void testTypedValues() {
+        AttributeMap attributes = new AttributeMap();
+        attributes.putBoolean("ignition", true);
+        attributes.putInteger("sat", 7);
+        attributes.putLong("odometer", 1L << 40);
+        attributes.putDouble("power", 12.5);
+        attributes.put("name", "test");
+        attributes.put("temp", 1.5f);
+
+        assertTrue(attributes.getBoolean("ignition"));
+        assertEquals(7, attributes.getInteger("sat"));
+        assertEquals(7.0, attributes.getDouble("sat"), 0);
+        assertEquals(1L << 40, attributes.getLong("odometer"));
+        assertEquals(12, attributes.getInteger("power"));
+        assertEquals(1.5, attributes.getDouble("temp"), 0);
+        assertEquals(0, attributes.getInteger("missing"));
+
+        assertEquals(true, attributes.get("ignition"));
+        assertEquals(7, attributes.get("sat"));
+        assertEquals(1L << 40, attributes.get("odometer"));
+        assertEquals(12.5, attributes.get("power"));
+        assertEquals(1.5f, attributes.get("temp"));
+        assertEquals("test", attributes.get("name"));
+    }
+
+    @Test
+    public void testMapBehavior() {
+        AttributeMap attributes = new AttributeMap(4);
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            attributes.put("io" + i, i);
+            expected.put("io" + i, i);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            assertEquals(i, attributes.remove("io" + i));
+            expected.remove("io" + i);
+        }
+        attributes.put("io1", "replaced");
+        expected.put("io1", "replaced");
+        attributes.put("empty", null);
+        expected.put("empty", null);
+
+        assertEquals(expected, attributes);
+        assertEquals(expected.hashCode(), attributes.hashCode());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(attributes.keySet()));
+        assertTrue(attributes.containsKey("empty"));
+        assertNull(attributes.get("io0"));
+        assertFalse(attributes.containsKey("io0"));
+
+        Iterator<Map.Entry<String, Object>> iterator = attributes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            if (entry.getKey().equals("io1")) {
+                entry.setValue(1);
+            } else if (!entry.getKey().equals("io2")) {
+                iterator.remove();
+            }
+        }
+        assertEquals(Arrays.asList("io1", "io2"), new ArrayList<>(attributes.keySet()));
+        assertEquals(1, attributes.get("io1"));
+
+        attributes.clear();
+        assertTrue(attributes.isEmpty());
+        attributes.putInteger("io1", 5);
+        assertEquals(5, attributes.getInteger("io1"));
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.traccar.model;
+
+import org.junit.Test;
+import org.traccar.database.DailySummaryManager;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class PositionAggregateTest {
+
+    private Position createPosition(long id, long time, double speed) {
+        Position position = new Position();
+        position.setId(id);
+        position.setFixTime(new Date(time));
+        position.setSpeed(speed);
+        return position;
+    }
+
+    @Test
+    public void testAddAndMerge() {
+        PositionAggregate first = new PositionAggregate();
+        first.add(createPosition(2, 2000, 10));
+        first.add(createPosition(1, 1000, 30));
+
+        PositionAggregate second = new PositionAggregate();
+        second.add(createPosition(3, 3000, 20));
+
+        PositionAggregate result = new PositionAggregate();
+        result.merge(second);
+        result.merge(new PositionAggregate());
+        result.merge(null);
+        result.merge(first);
+
+        assertEquals(3, result.getPositionCount());
+        assertEquals(60, result.getSpeedSum(), 0);
+        assertEquals(30, result.getMaxSpeed(), 0);
+        assertEquals(1, result.getFirstPositionId());
+        assertEquals(1000, result.getFirstTime().getTime());
+        assertEquals(3, result.getLastPositionId());
+        assertEquals(3000, result.getLastTime().getTime());
+    }
+
+    @Test
+    public void testDayStart() {
+        assertEquals(0, DailySummaryManager.getDayStart(DailySummaryManager.DAY - 1));
+        assertEquals(DailySummaryManager.DAY, DailySummaryManager.getDayStart(DailySummaryManager.DAY));
+        assertEquals(-DailySummaryManager.DAY, DailySummaryManager.getDayStart(-1));
+    }
+
+}
@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -387,4 +388,74 @@ public class ReportUtilsTest extends BaseTest {
         assertEquals(1200000, itemStop.getDuration());
     }
 
+    @Test
+    public void testDetectTripsAndStopsIncrementally() throws ParseException {
+
+        List<Position> data = Arrays.asList(
+                position("2016-01-01 00:00:00.000", 0, 0),
+                position("2016-01-01 00:01:00.000", 0, 0),
+                position("2016-01-01 00:02:00.000", 10, 0),
+                position("2016-01-01 00:03:00.000", 10, 1000),
+                position("2016-01-01 00:04:00.000", 10, 2000),
+                position("2016-01-01 00:05:00.000", 0, 3000),
+                position("2016-01-01 00:10:00.000", 0, 3000),
+                position("2016-01-01 00:15:00.000", 20, 3000),
+                position("2016-01-01 00:16:00.000", 20, 4000),
+                position("2016-01-01 00:17:00.000", 0, 5000),
+                position("2016-01-01 00:18:00.000", 20, 5000),
+                position("2016-01-01 00:19:00.000", 20, 6000),
+                position("2016-01-01 00:20:00.000", 0, 7000),
+                position("2016-01-01 00:30:00.000", 0, 7000),
+                position("2016-01-01 00:31:00.000", 10, 7000),
+                position("2016-01-01 00:32:00.000", 10, 8000));
+
+        TripsConfig tripsConfig = new TripsConfig(500, 300000, 180000, 900000, false, false, 0.01);
+
+        Collection<TripReport> trips = ReportUtils.detectTripsAndStops(
+                new TestIdentityManager(), null, data, tripsConfig, false, TripReport.class);
+        Collection<StopReport> stops = ReportUtils.detectTripsAndStops(
+                new TestIdentityManager(), null, data, tripsConfig, false, StopReport.class);
+
+        TripsAndStopsDetector<TripReport> tripsDetector = new TripsAndStopsDetector<>(
+                new TestIdentityManager(), null, tripsConfig, false, TripReport.class);
+        TripsAndStopsDetector<StopReport> stopsDetector = new TripsAndStopsDetector<>(
+                new TestIdentityManager(), null, tripsConfig, false, StopReport.class);
+        List<TripReport> closedTrips = new ArrayList<>();
+        List<StopReport> closedStops = new ArrayList<>();
+        for (Position position : data) {
+            tripsDetector.accept(position);
+            closedTrips.addAll(tripsDetector.pollResult());
+            stopsDetector.accept(position);
+            closedStops.addAll(stopsDetector.pollResult());
+        }
+
+        assertEquals(2, trips.size());
+        assertEquals(2, closedTrips.size());
+        assertEquals(3, stops.size());
+        assertEquals(2, closedStops.size());
+
+        closedTrips.addAll(tripsDetector.getResult());
+        closedStops.addAll(stopsDetector.getResult());
+
+        Iterator<TripReport> tripIterator = trips.iterator();
+        for (TripReport trip : closedTrips) {
+            TripReport expected = tripIterator.next();
+            assertEquals(expected.getStartTime(), trip.getStartTime());
+            assertEquals(expected.getEndTime(), trip.getEndTime());
+            assertEquals(expected.getDistance(), trip.getDistance(), 0.01);
+            assertEquals(expected.getAverageSpeed(), trip.getAverageSpeed(), 0.01);
+        }
+        assertFalse(tripIterator.hasNext());
+
+        Iterator<StopReport> stopIterator = stops.iterator();
+        for (StopReport stop : closedStops) {
+            StopReport expected = stopIterator.next();
+            assertEquals(expected.getStartTime(), stop.getStartTime());
+            assertEquals(expected.getEndTime(), stop.getEndTime());
+            assertEquals(expected.getDuration(), stop.getDuration());
+        }
+        assertFalse(stopIterator.hasNext());
+
+    }
+
 }
@@ -0,0 +1,147 @@
+package org.traccar.reports;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.TestDataManager;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+import org.traccar.database.DeviceManager;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.reports.model.BaseReport;
+import org.traccar.reports.model.StopReport;
+import org.traccar.reports.model.TripReport;
+import org.traccar.reports.model.TripsConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TripsAndStopsRecorderTest extends BaseTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final TripsConfig tripsConfig = new TripsConfig(500, 300000, 180000, 900000, false, false, 0.01);
+
+    private DataManager dataManager;
+    private DeviceManager deviceManager;
+    private long deviceId;
+    private long time;
+    private double distance;
+
+    private void setUp() throws Exception {
+        dataManager = TestDataManager.create();
+        Device device = new Device();
+        device.setName("test");
+        device.setUniqueId("123456789012345");
+        dataManager.addObject(device);
+        deviceId = device.getId();
+        deviceManager = new DeviceManager(dataManager);
+        time = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3);
+        time -= time % MINUTE;
+    }
+
+    private void add(List<Position> positions, int minutes, int interval, double speed) throws Exception {
+        for (int i = 0; i < minutes; i += interval) {
+            Position position = new Position("test");
+            position.setDeviceId(deviceId);
+            position.setTime(new Date(time));
+            position.setValid(true);
+            position.setSpeed(speed);
+            position.set(Position.KEY_TOTAL_DISTANCE, distance);
+            dataManager.addObject(position);
+            positions.add(position);
+            time += interval * MINUTE;
+            if (speed > 0) {
+                distance += interval * 1000;
+            }
+        }
+    }
+
+    private List<Position> createPositions() throws Exception {
+        List<Position> positions = new ArrayList<>();
+        add(positions, 10, 1, 10);
+        add(positions, 40 * 60, 10, 0);
+        add(positions, 10, 1, 10);
+        add(positions, 30, 5, 0);
+        add(positions, 10, 1, 10);
+        add(positions, 20, 5, 0);
+        return positions;
+    }
+
+    private TripsAndStopsRecorder createRecorder(Config config) {
+        return new TripsAndStopsRecorder(config, dataManager, deviceManager, deviceManager, tripsConfig);
+    }
+
+    private <T extends BaseReport> void assertSegments(
+            Collection<T> expected, Collection<T> actual, Function<T, Date> startTime, Function<T, Date> endTime) {
+        Iterator<T> iterator = expected.iterator();
+        for (T item : actual) {
+            T expectedItem = iterator.next();
+            assertEquals(startTime.apply(expectedItem), startTime.apply(item));
+            assertEquals(endTime.apply(expectedItem), endTime.apply(item));
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    private void verify(List<Position> positions, TripsAndStopsRecorder recorder) throws Exception {
+        Date from = positions.get(0).getFixTime();
+        Date to = new Date(time);
+        assertSegments(
+                ReportUtils.detectTripsAndStops(
+                        deviceManager, deviceManager, positions, tripsConfig, false, TripReport.class),
+                recorder.getTrips(deviceId, from, to), TripReport::getStartTime, TripReport::getEndTime);
+        assertSegments(
+                ReportUtils.detectTripsAndStops(
+                        deviceManager, deviceManager, positions, tripsConfig, false, StopReport.class),
+                recorder.getStops(deviceId, from, to), StopReport::getStartTime, StopReport::getEndTime);
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        setUp();
+        List<Position> positions = createPositions();
+        int restart = positions.size() - 40;
+
+        TripsAndStopsRecorder recorder = createRecorder(new Config());
+        for (Position position : positions.subList(0, restart)) {
+            recorder.update(position);
+        }
+        recorder.stop();
+
+        recorder = createRecorder(new Config());
+        for (Position position : positions.subList(restart, positions.size())) {
+            recorder.update(position);
+        }
+        recorder.stop();
+
+        verify(positions, recorder);
+    }
+
+    @Test
+    public void testBackfill() throws Exception {
+        setUp();
+        List<Position> positions = createPositions();
+        int enabled = positions.size() - 40;
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_TRIPS_AND_STOPS_BACKFILL_DAYS, "5");
+        TripsAndStopsRecorder recorder = createRecorder(config);
+        for (Position position : positions.subList(enabled, positions.size())) {
+            recorder.update(position);
+        }
+        recorder.stop();
+
+        verify(positions, recorder);
+        assertFalse(dataManager.getTrips(deviceId, positions.get(0).getFixTime(), new Date(time)).isEmpty());
+    }
+
+}